@@ -24,8 +24,10 @@ import lombok.extern.slf4j.Slf4j;
 import nl.knaw.dans.vaultcatalog.client.ApiClient;
 import nl.knaw.dans.vaultcatalog.client.OcflObjectVersionApi;
 import nl.knaw.dans.vaultingest.client.BagValidator;
+import nl.knaw.dans.vaultingest.client.ConcurrencyLimiter;
 import nl.knaw.dans.vaultingest.client.MigrationBagValidator;
 import nl.knaw.dans.vaultingest.client.VaultCatalogClient;
+import nl.knaw.dans.vaultingest.config.BagOutputFormat;
 import nl.knaw.dans.vaultingest.core.DepositToBagProcess;
 import nl.knaw.dans.vaultingest.core.IdMinter;
 import nl.knaw.dans.vaultingest.core.deposit.CsvLanguageResolver;
@@ -35,14 +37,25 @@ import nl.knaw.dans.vaultingest.core.deposit.FileCountryResolver;
 import nl.knaw.dans.vaultingest.core.deposit.MigrationDepositManager;
 import nl.knaw.dans.vaultingest.core.inbox.AutoIngestArea;
 import nl.knaw.dans.vaultingest.core.inbox.IngestAreaDirectoryWatcher;
+import nl.knaw.dans.vaultingest.core.inbox.IngestAreaScheduler;
+import nl.knaw.dans.vaultingest.core.inbox.IngestAreaWatchServiceWatcher;
+import nl.knaw.dans.vaultingest.core.inbox.IngestAreaWatchStrategy;
+import nl.knaw.dans.vaultingest.core.inbox.IngestAreaWatcher;
 import nl.knaw.dans.vaultingest.core.inbox.MigrationIngestArea;
 import nl.knaw.dans.vaultingest.core.rdabag.DefaultRdaBagWriterFactory;
+import nl.knaw.dans.vaultingest.core.rdabag.PayloadReader;
+import nl.knaw.dans.vaultingest.core.rdabag.output.BagOutputWriterFactory;
+import nl.knaw.dans.vaultingest.core.rdabag.output.DirectoryBagOutputWriterFactory;
+import nl.knaw.dans.vaultingest.core.rdabag.output.TarBagOutputWriterFactory;
 import nl.knaw.dans.vaultingest.core.rdabag.output.ZipBagOutputWriterFactory;
+import nl.knaw.dans.vaultingest.core.rdabag.output.ZipCompressionPolicy;
 import nl.knaw.dans.vaultingest.core.xml.XmlReader;
 import nl.knaw.dans.vaultingest.health.DansBagValidatorHealthCheck;
 import org.glassfish.jersey.media.multipart.MultiPartFeature;
 
 import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.SynchronousQueue;
 
 @Slf4j
 public class DdVaultIngestFlowApplication extends Application<DdVaultIngestFlowConfiguration> {
@@ -77,19 +90,27 @@ public class DdVaultIngestFlowApplication extends Application<DdVaultIngestFlowC
             configuration.getIngestFlow().getSpatialCoverageCountryTermsPath()
         );
         var xmlReader = new XmlReader();
-        var depositValidator = new BagValidator(dansBagValidatorClient, configuration.getValidateDansBag().getValidateUrl());
-        var depositManager = new DepositManager(xmlReader);
+        // shared by the validators of both ingest areas, as they call the same service
+        var validatorLimiter = new ConcurrencyLimiter("validate-dans-bag", configuration.getValidateDansBag().getMaxConcurrentRequests(), environment.metrics());
+        var depositValidator = new BagValidator(dansBagValidatorClient, configuration.getValidateDansBag().getValidateUrl(), validatorLimiter);
+        var depositFilesConfig = configuration.getIngestFlow().getDepositFiles();
+        var depositManager = new DepositManager(xmlReader, depositFilesConfig.getOffHeapThreshold(), depositFilesConfig.getOffHeapDirectory());
 
         var rdaBagWriterFactory = new DefaultRdaBagWriterFactory(
             environment.getObjectMapper(),
             languageResolver,
-            countryResolver
+            countryResolver,
+            configuration.getIngestFlow().getPayloadChecksumVerification(),
+            createPayloadReader(configuration, environment),
+            configuration.getIngestFlow().getRdaBagOutput().getOaiOreStreamingThreshold(),
+            createMetadataExecutor(configuration, environment)
         );
 
-        var outputWriterFactory = new ZipBagOutputWriterFactory(configuration.getIngestFlow().getRdaBagOutputDir());
+        var outputWriterFactory = createBagOutputWriterFactory(configuration, environment);
 
         var ocflObjectVersionApi = createOcflObjectVersionApi(configuration, environment);
-        var vaultCatalogRepository = new VaultCatalogClient(ocflObjectVersionApi);
+        var vaultCatalogLimiter = new ConcurrencyLimiter("vault-catalog", configuration.getVaultCatalog().getMaxConcurrentRequests(), environment.metrics());
+        var vaultCatalogRepository = new VaultCatalogClient(ocflObjectVersionApi, vaultCatalogLimiter);
         var idMinter = new IdMinter();
 
         var depositToBagProcess = new DepositToBagProcess(
@@ -103,21 +124,20 @@ public class DdVaultIngestFlowApplication extends Application<DdVaultIngestFlowC
 
         var taskQueue = configuration.getIngestFlow().getTaskQueue().build(environment);
 
-        var ingestAreaDirectoryWatcher = new IngestAreaDirectoryWatcher(
-            500,
-            configuration.getIngestFlow().getAutoIngest().getInbox()
-        );
+        var ingestAreaWatcher = createIngestAreaWatcher(configuration, environment);
 
         var autoIngestOutbox = new DepositOutbox(configuration.getIngestFlow().getAutoIngest().getOutbox());
+        var schedulerConfig = configuration.getIngestFlow().getAutoIngestScheduler();
+        var autoIngestScheduler = new IngestAreaScheduler(taskQueue, schedulerConfig.getMaxInFlight(), schedulerConfig.getRetryDelay(), environment.metrics());
         var inboxListener = new AutoIngestArea(
-            taskQueue,
-            ingestAreaDirectoryWatcher,
+            autoIngestScheduler,
+            ingestAreaWatcher,
             depositToBagProcess,
             autoIngestOutbox
         );
 
-        var migrationDepositValidator = new MigrationBagValidator(dansBagValidatorClient, configuration.getValidateDansBag().getValidateUrl());
-        var migrationDepositManager = new MigrationDepositManager(xmlReader);
+        var migrationDepositValidator = new MigrationBagValidator(dansBagValidatorClient, configuration.getValidateDansBag().getValidateUrl(), validatorLimiter);
+        var migrationDepositManager = new MigrationDepositManager(xmlReader, depositFilesConfig.getOffHeapThreshold(), depositFilesConfig.getOffHeapDirectory());
 
         var migrationDepositToBagProcess = new DepositToBagProcess(
             rdaBagWriterFactory,
@@ -145,6 +165,81 @@ public class DdVaultIngestFlowApplication extends Application<DdVaultIngestFlowC
         );
     }
 
+    PayloadReader createPayloadReader(DdVaultIngestFlowConfiguration configuration, Environment environment) {
+        var payloadReadConfig = configuration.getIngestFlow().getPayloadRead();
+        ExecutorService readAheadExecutor = null;
+
+        if (payloadReadConfig.getReadAheadBuffers() >= 2 || payloadReadConfig.getPrefetchSize() > 0) {
+            // one thread per payload file that is being read, so a reader never waits for another deposit
+            readAheadExecutor = environment.lifecycle().executorService("payload-read-ahead-%d")
+                .minThreads(0)
+                .maxThreads(Integer.MAX_VALUE)
+                .workQueue(new SynchronousQueue<>())
+                .build();
+        }
+
+        return new PayloadReader(
+            payloadReadConfig.getReadStrategy(),
+            payloadReadConfig.getBufferSize(),
+            readAheadExecutor,
+            payloadReadConfig.getReadAheadBuffers(),
+            payloadReadConfig.getPrefetchSize(),
+            environment.metrics()
+        );
+    }
+
+    IngestAreaWatcher createIngestAreaWatcher(DdVaultIngestFlowConfiguration configuration, Environment environment) {
+        var inbox = configuration.getIngestFlow().getAutoIngest().getInbox();
+        var watchConfig = configuration.getIngestFlow().getAutoIngestWatch();
+        var pollingWatcher = new IngestAreaDirectoryWatcher(watchConfig.getPollingInterval(), inbox, watchConfig.getQuietPeriod(), environment.metrics());
+
+        if (watchConfig.getStrategy() == IngestAreaWatchStrategy.POLLING) {
+            return pollingWatcher;
+        }
+
+        return new IngestAreaWatchServiceWatcher(inbox, watchConfig.getQuietPeriod(), pollingWatcher, environment.metrics());
+    }
+
+    ExecutorService createMetadataExecutor(DdVaultIngestFlowConfiguration configuration, Environment environment) {
+        var metadataThreads = configuration.getIngestFlow().getRdaBagOutput().getMetadataThreads();
+
+        // with a single thread the metadata files are serialized on the worker thread of the deposit
+        if (metadataThreads <= 1) {
+            return null;
+        }
+
+        return environment.lifecycle().executorService("bag-metadata-%d")
+            .minThreads(metadataThreads)
+            .maxThreads(metadataThreads)
+            .build();
+    }
+
+    BagOutputWriterFactory createBagOutputWriterFactory(DdVaultIngestFlowConfiguration configuration, Environment environment) {
+        var outputDir = configuration.getIngestFlow().getRdaBagOutputDir();
+        var bagOutputConfig = configuration.getIngestFlow().getRdaBagOutput();
+
+        if (bagOutputConfig.getFormat() == BagOutputFormat.DIRECTORY) {
+            return new DirectoryBagOutputWriterFactory(outputDir, bagOutputConfig.isLinkPayloadFiles());
+        }
+
+        var compressionThreads = bagOutputConfig.getCompressionThreads();
+        // with a single thread the data is compressed on the worker thread of the deposit
+        var compressionExecutor = compressionThreads <= 1 ? null : environment.lifecycle().executorService("bag-compression-%d")
+            .minThreads(compressionThreads)
+            .maxThreads(compressionThreads)
+            .build();
+
+        if (bagOutputConfig.getFormat() == BagOutputFormat.TAR) {
+            return new TarBagOutputWriterFactory(outputDir, bagOutputConfig.getTarCompression(), compressionExecutor, compressionThreads);
+        }
+
+        var compressionPolicy = bagOutputConfig.isStoreIncompressible()
+            ? new ZipCompressionPolicy(bagOutputConfig.getStoredExtensions(), bagOutputConfig.getMaxCompressionRatio())
+            : ZipCompressionPolicy.DEFLATE_ALL;
+
+        return new ZipBagOutputWriterFactory(outputDir, compressionExecutor, compressionThreads, compressionPolicy);
+    }
+
     OcflObjectVersionApi createOcflObjectVersionApi(DdVaultIngestFlowConfiguration configuration, Environment environment) {
         var client = new JerseyClientBuilder(environment)
             .using(configuration.getVaultCatalog().getHttpClient())
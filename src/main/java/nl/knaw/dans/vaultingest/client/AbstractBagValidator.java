@@ -34,10 +34,16 @@ import java.util.stream.Collectors;
 public abstract class AbstractBagValidator implements BagValidator {
     private final Client httpClient;
     private final URI serviceUri;
+    private final ConcurrencyLimiter concurrencyLimiter;
 
     public AbstractBagValidator(Client httpClient, URI serviceUri) {
+        this(httpClient, serviceUri, new ConcurrencyLimiter(0));
+    }
+
+    public AbstractBagValidator(Client httpClient, URI serviceUri, ConcurrencyLimiter concurrencyLimiter) {
         this.httpClient = httpClient;
         this.serviceUri = serviceUri;
+        this.concurrencyLimiter = concurrencyLimiter;
     }
 
     @Override
@@ -55,14 +61,10 @@ public abstract class AbstractBagValidator implements BagValidator {
         try (var multipart = new FormDataMultiPart()
             .field("command", command, MediaType.APPLICATION_JSON_TYPE)) {
 
-            try (var response = httpClient.target(serviceUri)
-                .request()
-                .post(Entity.entity(multipart, multipart.getMediaType()))) {
+            var result = concurrencyLimiter.call(() -> post(multipart));
 
-                log.debug("Validate bag response: {}", response);
-                if (response.getStatus() == 200) {
-                    throw formatValidationError(response.readEntity(ValidateOkDto.class));
-                }
+            if (result != null) {
+                throw formatValidationError(result);
             }
         }
         catch (IOException e) {
@@ -70,6 +72,21 @@ public abstract class AbstractBagValidator implements BagValidator {
         }
     }
 
+    // the result, or null if the service did not return 200
+    private ValidateOkDto post(FormDataMultiPart multipart) {
+        try (var response = httpClient.target(serviceUri)
+            .request()
+            .post(Entity.entity(multipart, multipart.getMediaType()))) {
+
+            log.debug("Validate bag response: {}", response);
+            if (response.getStatus() == 200) {
+                return response.readEntity(ValidateOkDto.class);
+            }
+
+            return null;
+        }
+    }
+
     private InvalidDepositException formatValidationError(ValidateOkDto result) {
         var violations = result.getRuleViolations().stream()
             .map(r -> String.format("- [%s] %s", r.getRule(), r.getViolation()))
@@ -26,6 +26,10 @@ public class BagValidator extends AbstractBagValidator {
         super(httpClient, serviceUri);
     }
 
+    public BagValidator(Client httpClient, URI serviceUri, ConcurrencyLimiter concurrencyLimiter) {
+        super(httpClient, serviceUri, concurrencyLimiter);
+    }
+
     @Override
     protected ValidateCommandDto.PackageTypeEnum getPackageType() {
         return ValidateCommandDto.PackageTypeEnum.DEPOSIT;
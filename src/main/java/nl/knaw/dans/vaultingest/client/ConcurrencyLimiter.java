@@ -0,0 +1,84 @@
+/*
+ * Copyright (C) 2023 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.vaultingest.client;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+// Limits the number of calls to an external service that are made at the same time, so that the number of workers of the task
+// queue can be raised for the time deposits spend on disk I/O without overloading the service. A call that finds no free slot waits
+// until another one has finished.
+public class ConcurrencyLimiter {
+    private final Semaphore semaphore;
+    private final Timer waitTimer;
+
+    @FunctionalInterface
+    public interface Call<T, E extends Exception> {
+        T call() throws E;
+    }
+
+    // maxConcurrentCalls: 0 for no limit
+    public ConcurrencyLimiter(int maxConcurrentCalls) {
+        this.semaphore = maxConcurrentCalls > 0 ? new Semaphore(maxConcurrentCalls, true) : null;
+        this.waitTimer = null;
+    }
+
+    // registers the timer <name>.wait and the gauge <name>.waiting
+    public ConcurrencyLimiter(String name, int maxConcurrentCalls, MetricRegistry metricRegistry) {
+        this.semaphore = maxConcurrentCalls > 0 ? new Semaphore(maxConcurrentCalls, true) : null;
+        this.waitTimer = metricRegistry.timer(MetricRegistry.name(ConcurrencyLimiter.class, name, "wait"));
+        metricRegistry.gauge(MetricRegistry.name(ConcurrencyLimiter.class, name, "waiting"), () -> (Gauge<Integer>) this::getWaiting);
+    }
+
+    public <T, E extends Exception> T call(Call<T, E> call) throws E {
+        if (semaphore == null) {
+            return call.call();
+        }
+
+        acquire();
+
+        try {
+            return call.call();
+        }
+        finally {
+            semaphore.release();
+        }
+    }
+
+    public int getWaiting() {
+        return semaphore != null ? semaphore.getQueueLength() : 0;
+    }
+
+    private void acquire() {
+        var start = System.nanoTime();
+
+        try {
+            semaphore.acquire();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for a free slot", e);
+        }
+
+        if (waitTimer != null) {
+            waitTimer.update(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+}
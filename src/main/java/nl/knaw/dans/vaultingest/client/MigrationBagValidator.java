@@ -26,6 +26,10 @@ public class MigrationBagValidator extends AbstractBagValidator {
         super(httpClient, serviceUri);
     }
 
+    public MigrationBagValidator(Client httpClient, URI serviceUri, ConcurrencyLimiter concurrencyLimiter) {
+        super(httpClient, serviceUri, concurrencyLimiter);
+    }
+
     @Override
     protected ValidateCommandDto.PackageTypeEnum getPackageType() {
         return ValidateCommandDto.PackageTypeEnum.MIGRATION;
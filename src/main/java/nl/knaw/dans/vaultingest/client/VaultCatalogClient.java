@@ -31,9 +31,15 @@ import java.util.Optional;
 @Slf4j
 public class VaultCatalogClient implements VaultCatalogRepository {
     private final OcflObjectVersionApi ocflObjectVersionApi;
+    private final ConcurrencyLimiter concurrencyLimiter;
 
     public VaultCatalogClient(OcflObjectVersionApi ocflObjectVersionApi) {
+        this(ocflObjectVersionApi, new ConcurrencyLimiter(0));
+    }
+
+    public VaultCatalogClient(OcflObjectVersionApi ocflObjectVersionApi, ConcurrencyLimiter concurrencyLimiter) {
         this.ocflObjectVersionApi = ocflObjectVersionApi;
+        this.concurrencyLimiter = concurrencyLimiter;
     }
 
     @Override
@@ -55,7 +61,7 @@ public class VaultCatalogClient implements VaultCatalogRepository {
                 .swordToken(deposit.getSwordToken());
 
             var newVersion = highestVersion + 1;
-            var response = ocflObjectVersionApi.createOcflObjectVersion(bagId, (int)newVersion, parameters);
+            var response = concurrencyLimiter.call(() -> ocflObjectVersionApi.createOcflObjectVersion(bagId, (int) newVersion, parameters));
 
             log.debug("Registered deposit, response: {}", response);
 
@@ -79,7 +85,7 @@ public class VaultCatalogClient implements VaultCatalogRepository {
         }
 
         try {
-            var latestVersion = ocflObjectVersionApi.getOcflObjectsBySwordToken(swordToken)
+            var latestVersion = concurrencyLimiter.call(() -> ocflObjectVersionApi.getOcflObjectsBySwordToken(swordToken))
                 .stream()
                 .max(Comparator.comparingInt(OcflObjectVersionDto::getObjectVersion));
 
@@ -106,7 +112,7 @@ public class VaultCatalogClient implements VaultCatalogRepository {
 
     long findHighestVersion(String bagId) {
         try {
-            var versions = ocflObjectVersionApi.getOcflObjectsByBagId(bagId);
+            var versions = concurrencyLimiter.call(() -> ocflObjectVersionApi.getOcflObjectsByBagId(bagId));
 
             // find the highest version
             // note that in the vault ingest flow, currently there should never be an existing version
@@ -0,0 +1,64 @@
+/*
+ * Copyright (C) 2023 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.vaultingest.config;
+
+import lombok.Getter;
+import nl.knaw.dans.vaultingest.core.rdabag.output.TarCompression;
+
+import javax.validation.constraints.DecimalMax;
+import javax.validation.constraints.DecimalMin;
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+import java.util.List;
+
+@Getter
+public class BagOutputConfig {
+    @NotNull
+    private BagOutputFormat format = BagOutputFormat.ZIP;
+
+    // for the DIRECTORY format: hard link payload files that are on the same file system instead of copying them
+    private boolean linkPayloadFiles = false;
+
+    // for the TAR format
+    @NotNull
+    private TarCompression tarCompression = TarCompression.NONE;
+
+    // number of threads compressing the zip entries or tar streams of all bags together; 1 compresses on the worker thread of the deposit
+    @Min(1)
+    private int compressionThreads = 1;
+
+    // store payload files that are already compressed instead of deflating them
+    private boolean storeIncompressible = false;
+
+    // extensions (without the dot) of payload files that are always stored
+    @NotNull
+    private List<String> storedExtensions = List.of();
+
+    // payload files whose first 64 KB does not deflate below this fraction of its size are stored; 1.0 disables sampling
+    @DecimalMin("0.0")
+    @DecimalMax("1.0")
+    private double maxCompressionRatio = 1.0;
+
+    // number of payload files from which the OAI-ORE is written while its aggregated resources are converted, instead of from a model
+    // of the whole document; 0 disables this
+    @Min(0)
+    private int oaiOreStreamingThreshold = 0;
+
+    // number of threads serializing the metadata files (datacite.xml, oai-ore.rdf, oai-ore.jsonld and pid-mapping.txt) of all bags
+    // together; 1 serializes them one by one on the worker thread of the deposit
+    @Min(1)
+    private int metadataThreads = 1;
+}
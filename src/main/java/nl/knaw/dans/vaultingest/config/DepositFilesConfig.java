@@ -0,0 +1,31 @@
+/*
+ * Copyright (C) 2023 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.vaultingest.config;
+
+import lombok.Getter;
+
+import javax.validation.constraints.Min;
+import java.nio.file.Path;
+
+@Getter
+public class DepositFilesConfig {
+    // number of payload files after which their checksums are kept in memory-mapped temporary files instead of on the heap; 0 disables this
+    @Min(0)
+    private int offHeapThreshold = 0;
+
+    // directory for the memory-mapped files; the default temporary directory if not set
+    private Path offHeapDirectory;
+}
@@ -0,0 +1,37 @@
+/*
+ * Copyright (C) 2023 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.vaultingest.config;
+
+import lombok.Getter;
+import nl.knaw.dans.vaultingest.core.inbox.IngestAreaWatchStrategy;
+
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+
+@Getter
+public class InboxWatchConfig {
+    @NotNull
+    private IngestAreaWatchStrategy strategy = IngestAreaWatchStrategy.POLLING;
+
+    // milliseconds between two listings of the inbox when polling
+    @Min(1)
+    private long pollingInterval = 500;
+
+    // milliseconds all files of a new deposit directory must be left unchanged, and it must have a deposit.properties with a state,
+    // before it is processed; 0 processes every new directory right away
+    @Min(0)
+    private long quietPeriod = 0;
+}
@@ -0,0 +1,32 @@
+/*
+ * Copyright (C) 2023 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.vaultingest.config;
+
+import lombok.Getter;
+
+import javax.validation.constraints.Min;
+
+@Getter
+public class IngestAreaSchedulerConfig {
+    // maximum number of deposits in the task queue (running or waiting) at the same time; the others wait in a backlog. 0 uses the
+    // maxThreads of the task queue
+    @Min(0)
+    private int maxInFlight = 0;
+
+    // milliseconds after which a deposit that the task queue rejected is offered again
+    @Min(1)
+    private long retryDelay = 1000;
+}
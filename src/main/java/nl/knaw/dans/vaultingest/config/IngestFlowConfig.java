@@ -17,6 +17,7 @@ package nl.knaw.dans.vaultingest.config;
 
 import lombok.Getter;
 import nl.knaw.dans.lib.util.ExecutorServiceFactory;
+import nl.knaw.dans.vaultingest.core.rdabag.ChecksumVerificationPolicy;
 
 import javax.validation.Valid;
 import javax.validation.constraints.NotNull;
@@ -27,6 +28,14 @@ public class IngestFlowConfig {
     @NotNull
     @Valid
     private InboxConfig autoIngest;
+    // how the inbox of autoIngest is watched for new deposits
+    @NotNull
+    @Valid
+    private InboxWatchConfig autoIngestWatch = new InboxWatchConfig();
+    // how the deposits of autoIngest are handed to the task queue
+    @NotNull
+    @Valid
+    private IngestAreaSchedulerConfig autoIngestScheduler = new IngestAreaSchedulerConfig();
     @NotNull
     @Valid
     private InboxConfig migration;
@@ -37,6 +46,17 @@ public class IngestFlowConfig {
     private Path rdaBagOutputDir;
     @NotNull
     @Valid
+    private BagOutputConfig rdaBagOutput = new BagOutputConfig();
+    @NotNull
+    private ChecksumVerificationPolicy payloadChecksumVerification = ChecksumVerificationPolicy.VERIFY_CHEAPEST;
+    @NotNull
+    @Valid
+    private PayloadReadConfig payloadRead = new PayloadReadConfig();
+    @NotNull
+    @Valid
+    private DepositFilesConfig depositFiles = new DepositFilesConfig();
+    @NotNull
+    @Valid
     private LanguageConfig languages;
     @NotNull
     @Valid
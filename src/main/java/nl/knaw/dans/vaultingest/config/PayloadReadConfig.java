@@ -0,0 +1,40 @@
+/*
+ * Copyright (C) 2023 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.vaultingest.config;
+
+import lombok.Getter;
+import nl.knaw.dans.vaultingest.core.rdabag.PayloadReadStrategy;
+
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+
+@Getter
+public class PayloadReadConfig {
+    @NotNull
+    private PayloadReadStrategy readStrategy = PayloadReadStrategy.BUFFERED;
+
+    // size of every read from the file system
+    @Min(4096)
+    private int bufferSize = 1024 * 1024;
+
+    // number of buffers a payload file is read ahead on a separate thread while it is written to the bag; 0 or 1 disables read-ahead
+    @Min(0)
+    private int readAheadBuffers = 0;
+
+    // number of bytes at the start of the next payload file that are read into the page cache while the current one is written
+    @Min(0)
+    private long prefetchSize = 0;
+}
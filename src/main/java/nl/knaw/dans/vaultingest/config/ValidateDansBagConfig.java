@@ -19,6 +19,7 @@ import io.dropwizard.client.JerseyClientConfiguration;
 import lombok.Data;
 
 import javax.validation.Valid;
+import javax.validation.constraints.Min;
 import javax.validation.constraints.NotNull;
 import java.net.URI;
 
@@ -35,4 +36,8 @@ public class ValidateDansBagConfig {
     @Valid
     @NotNull
     private JerseyClientConfiguration httpClient = new JerseyClientConfiguration();
+
+    // maximum number of bags that are validated at the same time, 0 for no limit
+    @Min(0)
+    private int maxConcurrentRequests = 0;
 }
@@ -19,6 +19,7 @@ import io.dropwizard.client.JerseyClientConfiguration;
 import lombok.Getter;
 
 import javax.validation.Valid;
+import javax.validation.constraints.Min;
 import javax.validation.constraints.NotNull;
 import java.net.URL;
 
@@ -31,4 +32,8 @@ public class VaultCatalogConfig {
     @Valid
     @NotNull
     private JerseyClientConfiguration httpClient;
+
+    // maximum number of requests to the vault catalog at the same time, 0 for no limit
+    @Min(0)
+    private int maxConcurrentRequests = 0;
 }
@@ -19,8 +19,8 @@ import lombok.extern.slf4j.Slf4j;
 import nl.knaw.dans.vaultingest.core.deposit.Deposit;
 import nl.knaw.dans.vaultingest.core.deposit.DepositManager;
 import nl.knaw.dans.vaultingest.core.deposit.Outbox;
-import nl.knaw.dans.vaultingest.core.rdabag.RdaBagWriter;
 import nl.knaw.dans.vaultingest.core.rdabag.RdaBagWriterFactory;
+import nl.knaw.dans.vaultingest.core.rdabag.output.BagOutputWriter;
 import nl.knaw.dans.vaultingest.core.rdabag.output.BagOutputWriterFactory;
 import nl.knaw.dans.vaultingest.core.validator.BagValidator;
 import nl.knaw.dans.vaultingest.core.validator.InvalidDepositException;
@@ -34,7 +34,7 @@ import java.nio.file.Path;
 @Slf4j
 public class DepositToBagProcess {
 
-    private final RdaBagWriter rdaBagWriter;
+    private final RdaBagWriterFactory rdaBagWriterFactory;
     private final BagOutputWriterFactory bagOutputWriterFactory;
     private final VaultCatalogRepository vaultCatalogService;
     private final BagValidator bagValidator;
@@ -48,7 +48,7 @@ public class DepositToBagProcess {
         BagValidator bagValidator,
         IdMinter idMinter,
         DepositManager depositManager) {
-        this.rdaBagWriter = rdaBagWriterFactory.createRdaBagWriter();
+        this.rdaBagWriterFactory = rdaBagWriterFactory;
         this.bagOutputWriterFactory = bagOutputWriterFactory;
         this.vaultCatalogService = vaultCatalogService;
         this.bagValidator = bagValidator;
@@ -106,18 +106,42 @@ public class DepositToBagProcess {
 
         // send rda bag to vault
         try {
-            try (var writer = bagOutputWriterFactory.createBagOutputWriter(deposit)) {
+            // RdaBagWriter keeps checksums for the deposit it is writing, so every deposit gets its own instance
+            var rdaBagWriter = rdaBagWriterFactory.createRdaBagWriter();
+
+            var writer = bagOutputWriterFactory.createBagOutputWriter(deposit);
+
+            try {
                 rdaBagWriter.write(deposit, writer);
             }
+            catch (Throwable e) {
+                // e.g. a checksum mismatch halfway through the payload, or running out of memory; the partial bag must not be published
+                discard(writer, e);
+                throw e;
+            }
+
+            writer.close();
 
             deposit.setState(Deposit.State.ACCEPTED, "Deposit accepted");
         }
+        catch (InvalidDepositException e) {
+            throw e;
+        }
         catch (Exception e) {
             throw new IllegalStateException("Error writing bag: " + e.getMessage(), e);
         }
 
     }
 
+    private void discard(BagOutputWriter writer, Throwable cause) {
+        try {
+            writer.discard();
+        }
+        catch (IOException e) {
+            cause.addSuppressed(e);
+        }
+    }
+
     void handleFailedDeposit(Path path, Outbox outbox, Deposit.State state, Throwable error) {
         log.error("Deposit on path {} failed with state {}", path, state, error);
 
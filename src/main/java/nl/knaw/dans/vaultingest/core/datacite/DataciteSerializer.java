@@ -18,22 +18,76 @@ package nl.knaw.dans.vaultingest.core.datacite;
 import nl.knaw.dans.vaultingest.domain.Resource;
 
 import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBException;
 import javax.xml.bind.Marshaller;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.io.StringWriter;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 
 public class DataciteSerializer {
+    // idle marshallers kept for reuse; more may be in use at the same time
+    private static final int MAX_IDLE_MARSHALLERS = 16;
+
+    // a marshaller is not thread-safe, so it is used by one thread at a time and returned when it is done
+    private final BlockingQueue<Marshaller> marshallers = new ArrayBlockingQueue<>(MAX_IDLE_MARSHALLERS);
+
     public String serialize(Resource resource) {
-        try {
-            var context = JAXBContext.newInstance(Resource.class);
-            var marshaller = context.createMarshaller();
-            marshaller.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, Boolean.TRUE);
+        var writer = new StringWriter();
 
-            var writer = new StringWriter();
+        try {
+            var marshaller = borrowMarshaller();
             marshaller.marshal(resource, writer);
-            return writer.toString();
+            marshallers.offer(marshaller);
         }
         catch (Exception e) {
             throw new RuntimeException(String.format("Error converting resource to XML string: %s", e.getMessage()), e);
         }
+
+        return writer.toString();
+    }
+
+    // Writes the XML (in UTF-8) to the output stream, without building it in memory first. The stream is not closed.
+    public void serialize(Resource resource, OutputStream outputStream) throws IOException {
+        try {
+            var marshaller = borrowMarshaller();
+            marshaller.marshal(resource, outputStream);
+            marshallers.offer(marshaller);
+        }
+        catch (JAXBException e) {
+            // the marshaller wraps errors of the output stream
+            if (e.getLinkedException() instanceof IOException) {
+                throw (IOException) e.getLinkedException();
+            }
+
+            throw new RuntimeException(String.format("Error converting resource to XML: %s", e.getMessage()), e);
+        }
+    }
+
+    private Marshaller borrowMarshaller() throws JAXBException {
+        var marshaller = marshallers.poll();
+
+        if (marshaller == null) {
+            marshaller = ContextHolder.context.createMarshaller();
+            marshaller.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, Boolean.TRUE);
+        }
+
+        return marshaller;
+    }
+
+    // Creating the context reflects over the whole DataCite model, so it is done once, when it is first needed. A JAXBContext
+    // is thread-safe.
+    private static class ContextHolder {
+        private static final JAXBContext context = createContext();
+
+        private static JAXBContext createContext() {
+            try {
+                return JAXBContext.newInstance(Resource.class);
+            }
+            catch (JAXBException e) {
+                throw new IllegalStateException("Unable to create JAXB context for DataCite resources", e);
+            }
+        }
     }
 }
@@ -18,10 +18,11 @@ package nl.knaw.dans.vaultingest.core.deposit;
 import gov.loc.repository.bagit.hash.SupportedAlgorithm;
 import lombok.Builder;
 import lombok.ToString;
-import nl.knaw.dans.vaultingest.core.xml.XPathEvaluator;
+import nl.knaw.dans.vaultingest.core.xml.DdmIndex;
 import nl.knaw.dans.vaultingest.core.xml.XmlNamespaces;
 import org.apache.commons.lang3.StringUtils;
 import org.w3c.dom.Document;
+import org.w3c.dom.Node;
 
 import java.io.IOException;
 import java.io.InputStream;
@@ -36,7 +37,6 @@ import java.util.stream.Collectors;
 public class Deposit {
     private final String id;
     private final Document ddm;
-    private final Document filesXml;
     private final List<DepositFile> depositFiles;
     private final Path path;
     private final DepositProperties properties;
@@ -69,10 +69,6 @@ public class Deposit {
         return ddm;
     }
 
-    public Document getFilesXml() {
-        return filesXml;
-    }
-
     public State getState() {
         return State.valueOf(properties.getStateLabel());
     }
@@ -127,13 +123,11 @@ public class Deposit {
     }
 
     public String getDoi() {
-        var prefix = ddm.lookupPrefix(XmlNamespaces.NAMESPACE_ID_TYPE);
-        var expr = new String[] {
-            String.format("/ddm:DDM/ddm:dcmiMetadata/dcterms:identifier[@xsi:type='%s:DOI']", prefix),
-            String.format("/ddm:DDM/ddm:dcmiMetadata/dc:identifier[@xsi:type='%s:DOI']", prefix)
-        };
-
-        var dois = XPathEvaluator.strings(ddm, expr).collect(Collectors.toList());
+        var type = String.format("%s:DOI", ddm.lookupPrefix(XmlNamespaces.NAMESPACE_ID_TYPE));
+        var dois = DdmIndex.of(ddm).dcmiMetadata("dcterms:identifier", "dc:identifier")
+            .filter(element -> type.equals(element.getAttributeNS(XmlNamespaces.NAMESPACE_XSI, "type")))
+            .map(Node::getTextContent)
+            .collect(Collectors.toList());
 
         if (dois.size() != 1) {
             throw new IllegalStateException("There should be exactly one DOI in the DDM, but found " + dois.size() + " DOIs");
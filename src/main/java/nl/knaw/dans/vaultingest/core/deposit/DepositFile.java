@@ -19,12 +19,12 @@ import gov.loc.repository.bagit.hash.SupportedAlgorithm;
 import lombok.Builder;
 import lombok.EqualsAndHashCode;
 import lombok.ToString;
-import org.w3c.dom.Node;
 
 import java.io.BufferedInputStream;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.Collections;
 import java.util.Map;
@@ -34,17 +34,20 @@ import java.util.Map;
 @Builder
 public class DepositFile {
     private final String id;
-    private final Node filesXmlNode;
-    private final Node ddmNode;
+    private final String filepath;
+    private final String description;
+    private final String accessibleToRights;
     private final Path physicalPath;
     private final Map<SupportedAlgorithm, String> checksums;
 
-    public Node getDdmNode() {
-        return ddmNode;
+    // files:file/dcterms:description
+    public String getDescription() {
+        return description;
     }
 
-    public Node getFilesXmlNode() {
-        return filesXmlNode;
+    // files:file/files:accessibleToRights
+    public String getAccessibleToRights() {
+        return accessibleToRights;
     }
 
     public String getId() {
@@ -69,16 +72,24 @@ public class DepositFile {
         return getFilename();
     }
 
+    public Path getPhysicalPath() {
+        return physicalPath;
+    }
+
     public InputStream openInputStream() throws IOException {
         return new BufferedInputStream(new FileInputStream(physicalPath.toFile()));
     }
 
-    private String getFilePathAttribute() {
-        return filesXmlNode.getAttributes().getNamedItem("filepath").getTextContent();
+    public InputStream openInputStream(int bufferSize) throws IOException {
+        return new BufferedInputStream(new FileInputStream(physicalPath.toFile()), bufferSize);
+    }
+
+    public long getSize() throws IOException {
+        return Files.size(physicalPath);
     }
 
     private Path getFilePath() {
-        return Path.of(getFilePathAttribute());//.substring("data/".length()));
+        return Path.of(filepath);//.substring("data/".length()));
     }
 
     public Map<SupportedAlgorithm, String> getChecksums() {
@@ -0,0 +1,378 @@
+/*
+ * Copyright (C) 2023 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.vaultingest.core.deposit;
+
+import gov.loc.repository.bagit.hash.SupportedAlgorithm;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.UUID;
+
+// The payload files of a deposit, stored column by column instead of as one object (with a UUID string, a Path and a map
+// of hex strings) per file. Identifiers are kept as two longs, directories are stored once, and checksums are stored as
+// raw digest bytes. The DepositFile objects are created when the list is read, so code iterating over the files does not
+// notice the difference. For very large deposits the checksums can be kept in a memory-mapped temporary file instead of
+// on the heap.
+public final class DepositFileTable extends AbstractList<DepositFile> implements RandomAccess {
+    // rows per block of checksum storage
+    private static final int BLOCK_SHIFT = 16;
+    private static final int BLOCK_SIZE = 1 << BLOCK_SHIFT;
+
+    private final int size;
+    private final long[] idMostSignificantBits;
+    private final long[] idLeastSignificantBits;
+    private final String[] directories;
+    private final int[] directoryIndexes;
+    private final String[] filenames;
+    private final String[] descriptions;
+    private final String[] accessibleToRightsValues;
+    private final int[] accessibleToRightsIndexes;
+    private final Path bagDir;
+    private final Path[] otherPhysicalPaths;
+    private final List<ChecksumColumn> checksumColumns;
+
+    private DepositFileTable(Builder builder) {
+        this.size = builder.size;
+        this.idMostSignificantBits = Arrays.copyOf(builder.idMostSignificantBits, size);
+        this.idLeastSignificantBits = Arrays.copyOf(builder.idLeastSignificantBits, size);
+        this.directories = builder.directories.toArray(new String[0]);
+        this.directoryIndexes = Arrays.copyOf(builder.directoryIndexes, size);
+        this.filenames = Arrays.copyOf(builder.filenames, size);
+        this.descriptions = Arrays.copyOf(builder.descriptions, size);
+        this.accessibleToRightsValues = builder.accessibleToRightsValues.toArray(new String[0]);
+        this.accessibleToRightsIndexes = Arrays.copyOf(builder.accessibleToRightsIndexes, size);
+        this.bagDir = builder.bagDir;
+        this.otherPhysicalPaths = Arrays.copyOf(builder.otherPhysicalPaths, size);
+        this.checksumColumns = List.copyOf(builder.checksumColumns.values());
+    }
+
+    // Checksum blocks that are started after offHeapThreshold files have been added (0 means never) are stored in a
+    // memory-mapped temporary file in offHeapDirectory (null means java.io.tmpdir) instead of on the heap
+    public static Builder builder(Path bagDir, int offHeapThreshold, Path offHeapDirectory) {
+        return new Builder(bagDir, new Storage(offHeapThreshold, offHeapDirectory));
+    }
+
+    public static Builder builder(Path bagDir) {
+        return builder(bagDir, 0, null);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public DepositFile get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException(String.format("Index %d out of bounds for size %d", index, size));
+        }
+
+        var filepath = getFilepath(index);
+        var physicalPath = otherPhysicalPaths[index] != null ? otherPhysicalPaths[index] : bagDir.resolve(filepath);
+        var accessibleToRightsIndex = accessibleToRightsIndexes[index];
+
+        return DepositFile.builder()
+            .id(new UUID(idMostSignificantBits[index], idLeastSignificantBits[index]).toString())
+            .filepath(filepath)
+            .description(descriptions[index])
+            .accessibleToRights(accessibleToRightsIndex >= 0 ? accessibleToRightsValues[accessibleToRightsIndex] : null)
+            .physicalPath(physicalPath)
+            .checksums(getChecksums(index))
+            .build();
+    }
+
+    private String getFilepath(int index) {
+        var directoryIndex = directoryIndexes[index];
+
+        if (directoryIndex < 0) {
+            return filenames[index];
+        }
+
+        return directories[directoryIndex] + "/" + filenames[index];
+    }
+
+    private Map<SupportedAlgorithm, String> getChecksums(int index) {
+        Map<SupportedAlgorithm, String> result = null;
+
+        for (var column : checksumColumns) {
+            var checksum = column.get(index);
+
+            if (checksum != null) {
+                if (result == null) {
+                    result = new HashMap<>();
+                }
+
+                result.put(column.algorithm, checksum);
+            }
+        }
+
+        return result;
+    }
+
+    // Closing a builder that has not been built removes its temporary file, e.g. when reading files.xml fails
+    public static final class Builder implements Closeable {
+        private final Path bagDir;
+        private final Storage storage;
+        private final List<String> directories = new ArrayList<>();
+        private final Map<String, Integer> directoryIndexesByName = new HashMap<>();
+        private final List<String> accessibleToRightsValues = new ArrayList<>();
+        private final Map<SupportedAlgorithm, ChecksumColumn> checksumColumns = new HashMap<>();
+
+        private int size;
+        private long[] idMostSignificantBits = new long[16];
+        private long[] idLeastSignificantBits = new long[16];
+        private int[] directoryIndexes = new int[16];
+        private String[] filenames = new String[16];
+        private String[] descriptions = new String[16];
+        private int[] accessibleToRightsIndexes = new int[16];
+        private Path[] otherPhysicalPaths = new Path[16];
+
+        private Builder(Path bagDir, Storage storage) {
+            this.bagDir = bagDir;
+            this.storage = storage;
+        }
+
+        public Builder add(String filepath, String description, String accessibleToRights, Path physicalPath, Map<SupportedAlgorithm, String> checksums) {
+            if (size == filenames.length) {
+                grow();
+            }
+
+            var id = UUID.randomUUID();
+            idMostSignificantBits[size] = id.getMostSignificantBits();
+            idLeastSignificantBits[size] = id.getLeastSignificantBits();
+
+            // the files of a deposit are usually spread over a limited number of directories
+            var separator = filepath.lastIndexOf('/');
+            directoryIndexes[size] = separator >= 0 ? indexOf(directories, directoryIndexesByName, filepath.substring(0, separator)) : -1;
+            filenames[size] = filepath.substring(separator + 1);
+
+            descriptions[size] = description;
+            accessibleToRightsIndexes[size] = accessibleToRights != null ? accessibleToRightsValues.indexOf(accessibleToRights) : -1;
+
+            if (accessibleToRights != null && accessibleToRightsIndexes[size] < 0) {
+                accessibleToRightsValues.add(accessibleToRights);
+                accessibleToRightsIndexes[size] = accessibleToRightsValues.size() - 1;
+            }
+
+            // only files that were renamed (see original-filepaths.txt) need their physical path stored
+            otherPhysicalPaths[size] = physicalPath.equals(bagDir.resolve(filepath)) ? null : physicalPath;
+
+            if (checksums != null) {
+                for (var entry : checksums.entrySet()) {
+                    checksumColumns.computeIfAbsent(entry.getKey(), ChecksumColumn::new)
+                        .set(size, entry.getValue(), storage);
+                }
+            }
+
+            size++;
+            return this;
+        }
+
+        public DepositFileTable build() {
+            // memory that is already mapped remains valid after the temporary file is closed and removed
+            storage.close();
+            return new DepositFileTable(this);
+        }
+
+        @Override
+        public void close() {
+            storage.close();
+        }
+
+        boolean isOffHeapStorageOpen() {
+            return storage.channel != null;
+        }
+
+        private void grow() {
+            var capacity = filenames.length * 2;
+            idMostSignificantBits = Arrays.copyOf(idMostSignificantBits, capacity);
+            idLeastSignificantBits = Arrays.copyOf(idLeastSignificantBits, capacity);
+            directoryIndexes = Arrays.copyOf(directoryIndexes, capacity);
+            filenames = Arrays.copyOf(filenames, capacity);
+            descriptions = Arrays.copyOf(descriptions, capacity);
+            accessibleToRightsIndexes = Arrays.copyOf(accessibleToRightsIndexes, capacity);
+            otherPhysicalPaths = Arrays.copyOf(otherPhysicalPaths, capacity);
+        }
+
+        private static int indexOf(List<String> values, Map<String, Integer> indexes, String value) {
+            return indexes.computeIfAbsent(value, k -> {
+                values.add(k);
+                return values.size() - 1;
+            });
+        }
+    }
+
+    // The checksums of one algorithm. Lowercase hex checksums of the expected length are stored as raw bytes in blocks;
+    // anything else is kept as it is, so every checksum is returned exactly as it was added.
+    private static final class ChecksumColumn {
+        private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+        private final SupportedAlgorithm algorithm;
+        private final int length;
+        private final List<ByteBuffer> blocks = new ArrayList<>();
+        private final BitSet present = new BitSet();
+        private final Map<Integer, String> otherValues = new HashMap<>();
+
+        private ChecksumColumn(SupportedAlgorithm algorithm) {
+            this.algorithm = algorithm;
+            this.length = getDigestLength(algorithm);
+        }
+
+        private void set(int index, String checksum, Storage storage) {
+            if (checksum == null) {
+                return;
+            }
+
+            if (length == 0 || !isLowercaseHex(checksum, length)) {
+                otherValues.put(index, checksum);
+                return;
+            }
+
+            var blockIndex = index >>> BLOCK_SHIFT;
+
+            while (blocks.size() <= blockIndex) {
+                blocks.add(null);
+            }
+
+            var block = blocks.get(blockIndex);
+
+            if (block == null) {
+                block = storage.allocate(index, BLOCK_SIZE * length);
+                blocks.set(blockIndex, block);
+            }
+
+            var offset = (index & (BLOCK_SIZE - 1)) * length;
+
+            for (var i = 0; i < length; ++i) {
+                block.put(offset + i, (byte) (Character.digit(checksum.charAt(2 * i), 16) << 4 | Character.digit(checksum.charAt(2 * i + 1), 16)));
+            }
+
+            present.set(index);
+        }
+
+        private String get(int index) {
+            if (!present.get(index)) {
+                return otherValues.get(index);
+            }
+
+            var block = blocks.get(index >>> BLOCK_SHIFT);
+            var offset = (index & (BLOCK_SIZE - 1)) * length;
+            var result = new char[2 * length];
+
+            // absolute reads do not change the buffer, so the table can be read from several threads
+            for (var i = 0; i < length; ++i) {
+                var value = block.get(offset + i);
+                result[2 * i] = HEX_DIGITS[(value >> 4) & 0xf];
+                result[2 * i + 1] = HEX_DIGITS[value & 0xf];
+            }
+
+            return new String(result);
+        }
+
+        private static int getDigestLength(SupportedAlgorithm algorithm) {
+            try {
+                return MessageDigest.getInstance(algorithm.getMessageDigestName()).getDigestLength();
+            }
+            catch (NoSuchAlgorithmException e) {
+                return 0;
+            }
+        }
+
+        private static boolean isLowercaseHex(String value, int length) {
+            if (value.length() != 2 * length) {
+                return false;
+            }
+
+            for (var i = 0; i < value.length(); ++i) {
+                var c = value.charAt(i);
+
+                if (!(c >= '0' && c <= '9' || c >= 'a' && c <= 'f')) {
+                    return false;
+                }
+            }
+
+            return true;
+        }
+    }
+
+    // Allocates the checksum blocks, on the heap or in a temporary file once the threshold has been reached
+    private static final class Storage {
+        private final int offHeapThreshold;
+        private final Path offHeapDirectory;
+        private FileChannel channel;
+        private long position;
+
+        private Storage(int offHeapThreshold, Path offHeapDirectory) {
+            this.offHeapThreshold = offHeapThreshold;
+            this.offHeapDirectory = offHeapDirectory;
+        }
+
+        private ByteBuffer allocate(int index, int capacity) {
+            if (offHeapThreshold <= 0 || index < offHeapThreshold) {
+                return ByteBuffer.allocate(capacity);
+            }
+
+            try {
+                if (channel == null) {
+                    var file = offHeapDirectory != null
+                        ? Files.createTempFile(offHeapDirectory, "deposit-files-", ".bin")
+                        : Files.createTempFile("deposit-files-", ".bin");
+
+                    channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.DELETE_ON_CLOSE);
+                }
+
+                var buffer = channel.map(FileChannel.MapMode.READ_WRITE, position, capacity);
+                position += capacity;
+                return buffer;
+            }
+            catch (IOException e) {
+                throw new UncheckedIOException("Unable to allocate off-heap storage for deposit files", e);
+            }
+        }
+
+        private void close() {
+            if (channel == null) {
+                return;
+            }
+
+            try {
+                channel.close();
+            }
+            catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            finally {
+                channel = null;
+            }
+        }
+    }
+}
@@ -18,33 +18,43 @@ package nl.knaw.dans.vaultingest.core.deposit;
 import gov.loc.repository.bagit.domain.Bag;
 import gov.loc.repository.bagit.hash.SupportedAlgorithm;
 import gov.loc.repository.bagit.reader.BagReader;
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import nl.knaw.dans.vaultingest.core.xml.XPathEvaluator;
+import nl.knaw.dans.vaultingest.core.xml.FilesXmlReader;
 import nl.knaw.dans.vaultingest.core.xml.XmlReader;
 import org.apache.commons.configuration2.FileBasedConfiguration;
 import org.apache.commons.configuration2.PropertiesConfiguration;
 import org.apache.commons.configuration2.builder.FileBasedConfigurationBuilder;
 import org.apache.commons.configuration2.builder.fluent.Parameters;
 import org.apache.commons.configuration2.ex.ConfigurationException;
-import org.apache.commons.lang3.StringUtils;
 import org.w3c.dom.Document;
 import org.xml.sax.SAXException;
 
 import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLStreamException;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.UUID;
-import java.util.stream.Collectors;
 
 @Slf4j
-@RequiredArgsConstructor
 public class DepositManager {
     private final XmlReader xmlReader;
+    private final FilesXmlReader filesXmlReader = new FilesXmlReader();
+    private final int offHeapThreshold;
+    private final Path offHeapDirectory;
+
+    public DepositManager(XmlReader xmlReader) {
+        this(xmlReader, 0, null);
+    }
+
+    // offHeapThreshold and offHeapDirectory: see DepositFileTable.builder
+    public DepositManager(XmlReader xmlReader, int offHeapThreshold, Path offHeapDirectory) {
+        this.xmlReader = xmlReader;
+        this.offHeapThreshold = offHeapThreshold;
+        this.offHeapDirectory = offHeapDirectory;
+    }
 
     public Deposit loadDeposit(Path path) {
         try {
@@ -56,24 +66,20 @@ public class DepositManager {
             log.info("Reading metadata/dataset.xml from path {}", bagDir);
             var ddm = readXmlFile(bagDir.resolve(Path.of("metadata", "dataset.xml")));
 
-            log.info("Reading metadata/files.xml from path {}", bagDir);
-            var filesXml = readXmlFile(bagDir.resolve(Path.of("metadata", "files.xml")));
-
             log.info("Generating original file paths if file exists");
             var originalFilePaths = getOriginalFilepaths(bagDir);
 
             log.info("Reading deposit.properties on path {}", path);
             var depositProperties = getDepositProperties(path);
 
-            log.info("Generating payload file list on path {}", path);
-            var depositFiles = getDepositFiles(bagDir, bag, ddm, filesXml, originalFilePaths);
+            log.info("Reading metadata/files.xml and generating payload file list on path {}", path);
+            var depositFiles = getDepositFiles(bagDir, bag, bagDir.resolve(Path.of("metadata", "files.xml")), originalFilePaths);
 
             var builder = Deposit.builder()
                 .id(path.getFileName().toString())
                 .path(path)
                 .ddm(ddm)
                 .bag(new DepositBag(bag))
-                .filesXml(filesXml)
                 .depositFiles(depositFiles)
                 .properties(depositProperties);
 
@@ -145,19 +151,12 @@ public class DepositManager {
 
     private OriginalFilepaths getOriginalFilepaths(Path bagDir) throws IOException {
         var originalFilepathsFile = bagDir.resolve("original-filepaths.txt");
-        var result = new OriginalFilepaths();
 
         if (Files.exists(originalFilepathsFile)) {
-            try (var lines = Files.lines(originalFilepathsFile)) {
-                lines.filter(StringUtils::isNotBlank)
-                    .map(line -> line.split("\\s+", 2))
-                    .forEach(line -> result.addMapping(
-                        Path.of(line[1]), Path.of(line[0]))
-                    );
-            }
+            return OriginalFilepaths.read(originalFilepathsFile);
         }
 
-        return result;
+        return new OriginalFilepaths();
     }
 
     private Map<Path, Map<SupportedAlgorithm, String>> getPrecomputedChecksums(Path bagDir, Bag bag) {
@@ -178,24 +177,20 @@ public class DepositManager {
         return manifests;
     }
 
-    private List<DepositFile> getDepositFiles(Path bagDir, Bag bag, Document ddm, Document filesXml, OriginalFilepaths originalFilepaths) {
+    private List<DepositFile> getDepositFiles(Path bagDir, Bag bag, Path filesXml, OriginalFilepaths originalFilepaths) throws IOException, XMLStreamException {
         var manifests = getPrecomputedChecksums(bagDir, bag);
-
-        return XPathEvaluator.nodes(filesXml, "/files:files/files:file")
-            .map(node -> {
-                var filePath = node.getAttributes().getNamedItem("filepath").getTextContent();
-                var physicalPath = bagDir.resolve(originalFilepaths.getPhysicalPath(Path.of(filePath)));
+        // closing the builder removes its temporary file if files.xml cannot be read completely
+        try (var depositFiles = DepositFileTable.builder(bagDir, offHeapThreshold, offHeapDirectory)) {
+            // files.xml is streamed, so only the values kept in the DepositFileTable stay on the heap
+            filesXmlReader.readFiles(filesXml, file -> {
+                var physicalPath = bagDir.resolve(originalFilepaths.getPhysicalPath(Path.of(file.getFilepath())));
                 var checksums = manifests.get(bagDir.relativize(physicalPath));
 
-                return DepositFile.builder()
-                    .id(UUID.randomUUID().toString())
-                    .physicalPath(physicalPath)
-                    .filesXmlNode(node)
-                    .ddmNode(ddm)
-                    .checksums(checksums)
-                    .build();
-            })
-            .collect(Collectors.toList());
+                depositFiles.add(file.getFilepath(), file.getDescription(), file.getAccessibleToRights(), physicalPath, checksums);
+            });
+
+            return depositFiles.build();
+        }
     }
 
 }
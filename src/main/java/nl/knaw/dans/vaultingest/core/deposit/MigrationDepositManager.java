@@ -17,11 +17,17 @@ package nl.knaw.dans.vaultingest.core.deposit;
 
 import nl.knaw.dans.vaultingest.core.xml.XmlReader;
 
+import java.nio.file.Path;
+
 public class MigrationDepositManager extends DepositManager {
     public MigrationDepositManager(XmlReader xmlReader) {
         super(xmlReader);
     }
 
+    public MigrationDepositManager(XmlReader xmlReader, int offHeapThreshold, Path offHeapDirectory) {
+        super(xmlReader, offHeapThreshold, offHeapDirectory);
+    }
+
     @Override
     Deposit.DepositBuilder customizeDeposit(Deposit.DepositBuilder builder, DepositProperties depositProperties) {
         return builder.
@@ -15,59 +15,92 @@
  */
 package nl.knaw.dans.vaultingest.core.deposit;
 
-import lombok.AllArgsConstructor;
 import lombok.ToString;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.HashMap;
+import java.util.Map;
 
-@AllArgsConstructor
+// The mappings of original-filepaths.txt, indexed both ways, so looking up the path of every payload file takes constant time
 @ToString
 public class OriginalFilepaths {
-    private final List<Mapping> mappings = new ArrayList<>();
+    private final Map<Path, Path> logicalPaths = new HashMap<>();
+    private final Map<Path, Path> physicalPaths = new HashMap<>();
+
+    // Reads original-filepaths.txt one line at a time; every line has the physical path, whitespace and the logical path
+    public static OriginalFilepaths read(Path file) throws IOException {
+        try (var reader = Files.newBufferedReader(file)) {
+            return read(reader, file.toString());
+        }
+    }
+
+    static OriginalFilepaths read(BufferedReader reader, String name) throws IOException {
+        var result = new OriginalFilepaths();
+        var lineNumber = 0;
+        String line;
+
+        while ((line = reader.readLine()) != null) {
+            ++lineNumber;
+
+            // the line is split by hand, as split("\\s+") would compile a pattern for every line
+            var start = skipWhitespace(line, 0);
+
+            if (start == line.length()) {
+                continue;
+            }
+
+            var end = start;
+
+            while (end < line.length() && !isWhitespace(line.charAt(end))) {
+                ++end;
+            }
+
+            var logicalStart = skipWhitespace(line, end);
+
+            if (logicalStart == line.length()) {
+                throw new IllegalArgumentException(String.format("Line %d of %s does not contain a logical path: %s", lineNumber, name, line));
+            }
+
+            result.addMapping(Path.of(line.substring(logicalStart)), Path.of(line.substring(start, end)));
+        }
+
+        return result;
+    }
 
     public Path getLogicalPath(Path physicalPath) {
         // return the logical path if there is a mapping for the given path
         // otherwise, just the path
-        return mappings.stream()
-            .filter(mapping -> mapping.getPhysicalPath().equals(physicalPath))
-            .map(Mapping::getLogicalPath)
-            .findFirst()
-            .orElse(physicalPath);
+        return logicalPaths.getOrDefault(physicalPath, physicalPath);
     }
 
     public Path getPhysicalPath(Path logicalPath) {
         // return the physical path if there is a mapping for the given path
         // otherwise, just the path
         // note this does not check if paths exist
-        return mappings.stream()
-            .filter(mapping -> mapping.getLogicalPath().equals(logicalPath))
-            .map(Mapping::getPhysicalPath)
-            .findFirst()
-            .orElse(logicalPath);
+        return physicalPaths.getOrDefault(logicalPath, logicalPath);
     }
 
     public void addMapping(Path logicalPath, Path physicalPath) {
-        mappings.add(new Mapping(logicalPath, physicalPath));
-    }
+        var physical = physicalPath != null ? physicalPath : logicalPath;
 
-    @AllArgsConstructor
-    @ToString
-    static class Mapping {
-        private final Path logicalPath;
-        private final Path physicalPath;
+        // like a search through the lines of the file, the first mapping of a path wins
+        physicalPaths.putIfAbsent(logicalPath, physical);
+        logicalPaths.putIfAbsent(physical, logicalPath);
+    }
 
-        public Path getLogicalPath() {
-            return logicalPath;
+    private static int skipWhitespace(String line, int index) {
+        while (index < line.length() && isWhitespace(line.charAt(index))) {
+            ++index;
         }
 
-        public Path getPhysicalPath() {
-            if (physicalPath != null) {
-                return physicalPath;
-            }
+        return index;
+    }
 
-            return logicalPath;
-        }
+    // the characters of \s in a regular expression
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
     }
 }
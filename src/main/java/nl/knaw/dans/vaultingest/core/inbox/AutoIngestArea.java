@@ -15,6 +15,7 @@
  */
 package nl.knaw.dans.vaultingest.core.inbox;
 
+import com.codahale.metrics.MetricRegistry;
 import lombok.extern.slf4j.Slf4j;
 import nl.knaw.dans.vaultingest.core.DepositToBagProcess;
 import nl.knaw.dans.vaultingest.core.deposit.Outbox;
@@ -24,7 +25,7 @@ import java.util.concurrent.Executor;
 
 @Slf4j
 public class AutoIngestArea {
-    private final Executor executor;
+    private final IngestAreaScheduler scheduler;
     private final IngestAreaWatcher ingestAreaWatcher;
     private final DepositToBagProcess depositToBagProcess;
     private final Outbox outbox;
@@ -34,7 +35,15 @@ public class AutoIngestArea {
         IngestAreaWatcher ingestAreaWatcher,
         DepositToBagProcess depositToBagProcess,
         Outbox outbox) {
-        this.executor = executor;
+        this(new IngestAreaScheduler(executor, 0, 1000, new MetricRegistry()), ingestAreaWatcher, depositToBagProcess, outbox);
+    }
+
+    public AutoIngestArea(
+        IngestAreaScheduler scheduler,
+        IngestAreaWatcher ingestAreaWatcher,
+        DepositToBagProcess depositToBagProcess,
+        Outbox outbox) {
+        this.scheduler = scheduler;
         this.ingestAreaWatcher = ingestAreaWatcher;
         this.depositToBagProcess = depositToBagProcess;
         this.outbox = outbox;
@@ -47,7 +56,7 @@ public class AutoIngestArea {
             ingestAreaWatcher.start((path) -> {
                 log.info("New item in inbox; path = {}", path);
 
-                executor.execute(() -> depositToBagProcess.process(path, outbox));
+                scheduler.schedule(path, () -> depositToBagProcess.process(path, outbox));
             });
         }
         catch (IOException e) {
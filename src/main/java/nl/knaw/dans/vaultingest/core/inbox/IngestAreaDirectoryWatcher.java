@@ -15,6 +15,7 @@
  */
 package nl.knaw.dans.vaultingest.core.inbox;
 
+import com.codahale.metrics.MetricRegistry;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.io.filefilter.FileFilterUtils;
 import org.apache.commons.io.monitor.FileAlterationListenerAdaptor;
@@ -26,32 +27,55 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 
+// Watches the ingest area by listing it every polling interval
 @Slf4j
 public class IngestAreaDirectoryWatcher implements IngestAreaWatcher {
     private final long pollingInterval;
     private final Path directory;
+    private final long quietPeriod;
+    private final IngestAreaWatcherMetrics metrics;
 
     public IngestAreaDirectoryWatcher(long pollingIntervalMilliseconds, Path directory) {
+        this(pollingIntervalMilliseconds, directory, 0, new MetricRegistry());
+    }
+
+    // quietPeriod: the time in milliseconds a new directory must be left unchanged before it is reported; 0 reports it right away
+    public IngestAreaDirectoryWatcher(long pollingIntervalMilliseconds, Path directory, long quietPeriodMilliseconds, MetricRegistry metricRegistry) {
         this.pollingInterval = pollingIntervalMilliseconds;
         this.directory = directory;
+        this.quietPeriod = quietPeriodMilliseconds;
+        this.metrics = new IngestAreaWatcherMetrics(metricRegistry);
     }
 
     @Override
     public void start(IngestAreaItemCreated callback) {
+        if (!Files.isDirectory(directory)) {
+            throw new IllegalStateException(String.format("Could not watch %s, it is not a directory", directory));
+        }
+
         log.debug("Starting listener; path = {}", directory);
         var filter = FileFilterUtils.and(
             FileFilterUtils.directoryFileFilter(),
             FileFilterUtils.asFileFilter(f -> f.getParentFile().equals(directory.toFile()))
         );
 
-        var observer = new FileAlterationObserver(directory.toFile(), filter);
-        observer.addListener(new EventHandler(callback));
+        var gate = new IngestAreaItemGate(quietPeriod, callback, metrics);
+        var observer = new FileAlterationObserver(directory.toFile(), filter) {
+            @Override
+            public void checkAndNotify() {
+                var context = metrics.startRescan();
+                try {
+                    super.checkAndNotify();
+                }
+                finally {
+                    context.stop();
+                }
+            }
+        };
+        observer.addListener(new EventHandler(gate));
         var monitor = new FileAlterationMonitor(pollingInterval);
         monitor.addObserver(observer);
 
-        log.debug("Processing existing items in {}", directory);
-        processExistingItems(callback);
-
         try {
             log.debug("Starting FileAlterationMonitor for directory {}", directory);
             monitor.start();
@@ -59,35 +83,49 @@ public class IngestAreaDirectoryWatcher implements IngestAreaWatcher {
         catch (Exception e) {
             throw new IllegalStateException(String.format("Could not start monitoring %s", directory), e);
         }
+
+        // the monitor only reports items created after it has started, so the existing items are listed after that; an item that
+        // is created in between is seen by both, and reported once by the gate
+        log.debug("Processing existing items in {}", directory);
+        processExistingItems(gate);
     }
 
-    private void processExistingItems(IngestAreaItemCreated callback) {
-        try {
-            try (var files = Files.list(directory)) {
-                files.filter(Files::isDirectory).forEach(dir -> callback.onItemCreated(dir.toAbsolutePath()));
-            }
+    private void processExistingItems(IngestAreaItemGate gate) {
+        var context = metrics.startRescan();
+        try (var files = Files.list(directory)) {
+            files.filter(Files::isDirectory).forEach(dir -> gate.onEvent(dir.toAbsolutePath()));
         }
         catch (IOException e) {
             throw new IllegalStateException(String.format("Could not list %s", directory), e);
         }
+        finally {
+            context.stop();
+        }
     }
 
     private static class EventHandler extends FileAlterationListenerAdaptor {
-        private final IngestAreaItemCreated callback;
+        private final IngestAreaItemGate gate;
 
-        private EventHandler(IngestAreaItemCreated callback) {
-            this.callback = callback;
+        private EventHandler(IngestAreaItemGate gate) {
+            this.gate = gate;
         }
 
         @Override
-        public void onStart(FileAlterationObserver observer) {
-            // TODO implement the duplicate logic?
+        public void onDirectoryCreate(File directory) {
+            log.trace("Directory created: {}", directory);
+            gate.onEvent(directory.toPath().toAbsolutePath());
         }
 
         @Override
-        public void onDirectoryCreate(File directory) {
-            log.trace("Directory created: {}", directory);
-            callback.onItemCreated(directory.toPath().toAbsolutePath());
+        public void onDirectoryChange(File directory) {
+            log.trace("Directory changed: {}", directory);
+            gate.onEvent(directory.toPath().toAbsolutePath());
+        }
+
+        @Override
+        public void onDirectoryDelete(File directory) {
+            log.trace("Directory deleted: {}", directory);
+            gate.onRemoved(directory.toPath().toAbsolutePath());
         }
     }
 }
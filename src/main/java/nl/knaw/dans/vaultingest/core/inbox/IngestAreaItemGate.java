@@ -0,0 +1,198 @@
+/*
+ * Copyright (C) 2023 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.vaultingest.core.inbox;
+
+import lombok.EqualsAndHashCode;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// Decides when a new item of an ingest area is reported to the callback of a watcher:
+// - with a quiet period, only once it is a complete deposit: it has a deposit.properties with a state, and the number, sizes
+//   and modification times of all its files have stayed the same for the quiet period. A deposit that is still being copied
+//   into the inbox is therefore not picked up (and failed) yet.
+// - only once while it is in the ingest area, however often the watcher sees it; e.g. both when listing the existing items and
+//   in the first events after that. It may be reported again after it has been removed.
+@Slf4j
+class IngestAreaItemGate {
+    private static final String DEPOSIT_PROPERTIES = "deposit.properties";
+    private static final String STATE_LABEL = "state.label";
+
+    private final long quietPeriod;
+    private final IngestAreaItemCreated callback;
+    private final IngestAreaWatcherMetrics metrics;
+    private final ScheduledExecutorService scheduler;
+    private final Map<Path, Boolean> waiting = new ConcurrentHashMap<>();
+    private final Set<Path> reported = ConcurrentHashMap.newKeySet();
+
+    // quietPeriod in milliseconds; with 0 every item is reported right away on the thread that sees it
+    IngestAreaItemGate(long quietPeriod, IngestAreaItemCreated callback, IngestAreaWatcherMetrics metrics) {
+        this.quietPeriod = quietPeriod;
+        this.callback = callback;
+        this.metrics = metrics;
+        this.scheduler = quietPeriod <= 0 ? null : Executors.newSingleThreadScheduledExecutor(runnable -> {
+            var thread = new Thread(runnable, "ingest-area-item-gate");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    // the item has been created or changed
+    void onEvent(Path path) {
+        if (reported.contains(path)) {
+            log.trace("Item {} has already been reported", path);
+            return;
+        }
+
+        try {
+            if (scheduler == null) {
+                report(path, getLastModified(path));
+            }
+            else if (waiting.putIfAbsent(path, Boolean.TRUE) == null) {
+                log.debug("Waiting for {} to be left unchanged for {} ms", path, quietPeriod);
+                schedule(path, getContents(path));
+            }
+        }
+        catch (NoSuchFileException e) {
+            waiting.remove(path);
+            log.debug("Item {} was removed before it was reported", path);
+        }
+        catch (IOException e) {
+            waiting.remove(path);
+            log.error("Unable to read {}", path, e);
+        }
+    }
+
+    // the item has been removed from the ingest area, e.g. moved to the outbox
+    void onRemoved(Path path) {
+        reported.remove(path);
+    }
+
+    // the items that are no longer in the ingest area are forgotten, for when a watcher may have missed their removal
+    void retainExisting() {
+        reported.removeIf(path -> !Files.exists(path));
+    }
+
+    private void schedule(Path path, Contents contents) {
+        scheduler.schedule(() -> check(path, contents), quietPeriod, TimeUnit.MILLISECONDS);
+    }
+
+    private void check(Path path, Contents previousContents) {
+        try {
+            var contents = getContents(path);
+
+            if (!contents.equals(previousContents)) {
+                log.debug("{} has been changed, waiting another {} ms", path, quietPeriod);
+                schedule(path, contents);
+                return;
+            }
+
+            if (!hasDepositState(path)) {
+                log.debug("{} has no {} with a state yet, waiting another {} ms", path, DEPOSIT_PROPERTIES, quietPeriod);
+                schedule(path, contents);
+                return;
+            }
+
+            waiting.remove(path);
+            report(path, contents.lastModified);
+        }
+        catch (NoSuchFileException e) {
+            waiting.remove(path);
+            log.debug("Item {} was removed before it was reported", path);
+        }
+        catch (IOException | RuntimeException e) {
+            // an exception would otherwise disappear in the scheduler
+            waiting.remove(path);
+            log.error("Unable to report new item {}", path, e);
+        }
+    }
+
+    private void report(Path path, long lastModified) {
+        if (!reported.add(path)) {
+            return;
+        }
+
+        metrics.pickedUp(lastModified);
+        callback.onItemCreated(path);
+    }
+
+    private boolean hasDepositState(Path path) throws IOException {
+        var depositProperties = path.resolve(DEPOSIT_PROPERTIES);
+
+        if (!Files.isRegularFile(depositProperties)) {
+            return false;
+        }
+
+        var properties = new Properties();
+
+        try (var reader = Files.newBufferedReader(depositProperties)) {
+            properties.load(reader);
+        }
+
+        return properties.getProperty(STATE_LABEL) != null;
+    }
+
+    private long getLastModified(Path path) throws IOException {
+        return Files.getLastModifiedTime(path).toMillis();
+    }
+
+    private Contents getContents(Path path) throws IOException {
+        var contents = new Contents();
+
+        Files.walkFileTree(path, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                contents.add(attrs);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                contents.add(attrs);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+
+        return contents;
+    }
+
+    // what is compared to see if an item is still being changed
+    @EqualsAndHashCode
+    private static class Contents {
+        private long count;
+        private long size;
+        private long lastModified;
+
+        private void add(BasicFileAttributes attributes) {
+            count++;
+            size += attributes.isDirectory() ? 0 : attributes.size();
+            lastModified = Math.max(lastModified, attributes.lastModifiedTime().toMillis());
+        }
+    }
+}
@@ -0,0 +1,165 @@
+/*
+ * Copyright (C) 2023 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.vaultingest.core.inbox;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+// Hands the items of an ingest area to the task queue no faster than it can run them. At most maxInFlight of them are in the task
+// queue (running or waiting) at the same time; the others wait in a backlog, in the order they were found, until a task finishes.
+// When the task queue rejects an item anyway (e.g. because other ingest areas have filled it), it is offered again after the retry
+// delay, before the rest of the backlog. An item that is in the backlog or in the task queue is not scheduled a second time.
+//
+// The backlog is only kept in memory: the items stay in the ingest area until they have been processed, so after a restart the
+// watcher finds them again.
+@Slf4j
+public class IngestAreaScheduler {
+    private final Executor executor;
+    private final int maxInFlight;
+    private final long retryDelay;
+    private final ScheduledExecutorService retryScheduler;
+
+    private final Map<Path, Runnable> backlog = new LinkedHashMap<>();
+    private final Set<Path> inFlight = new HashSet<>();
+    private Map.Entry<Path, Runnable> rejected;
+
+    // maxInFlight: 0 uses the maximum pool size of the executor if it is a ThreadPoolExecutor, and no limit otherwise;
+    // retryDelay in milliseconds
+    public IngestAreaScheduler(Executor executor, int maxInFlight, long retryDelayMilliseconds, MetricRegistry metricRegistry) {
+        this.executor = executor;
+        this.maxInFlight = maxInFlight > 0 ? maxInFlight : getMaximumPoolSize(executor);
+        this.retryDelay = retryDelayMilliseconds;
+        this.retryScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            var thread = new Thread(runnable, "ingest-area-scheduler");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        metricRegistry.gauge(MetricRegistry.name(IngestAreaScheduler.class, "backlog"), () -> (Gauge<Integer>) this::getBacklogSize);
+        metricRegistry.gauge(MetricRegistry.name(IngestAreaScheduler.class, "in-flight"), () -> (Gauge<Integer>) this::getInFlightSize);
+    }
+
+    public void schedule(Path path, Runnable task) {
+        synchronized (this) {
+            if (inFlight.contains(path) || backlog.containsKey(path) || rejected != null && rejected.getKey().equals(path)) {
+                log.debug("{} has already been scheduled", path);
+                return;
+            }
+
+            backlog.put(path, task);
+        }
+
+        admit();
+    }
+
+    public synchronized int getBacklogSize() {
+        return backlog.size() + (rejected != null ? 1 : 0);
+    }
+
+    public synchronized int getInFlightSize() {
+        return inFlight.size();
+    }
+
+    private void admit() {
+        while (true) {
+            Map.Entry<Path, Runnable> next;
+
+            synchronized (this) {
+                if (rejected != null || inFlight.size() >= maxInFlight || backlog.isEmpty()) {
+                    return;
+                }
+
+                var iterator = backlog.entrySet().iterator();
+                next = iterator.next();
+                iterator.remove();
+                inFlight.add(next.getKey());
+            }
+
+            if (!submit(next)) {
+                return;
+            }
+        }
+    }
+
+    private boolean submit(Map.Entry<Path, Runnable> item) {
+        try {
+            executor.execute(() -> run(item));
+            return true;
+        }
+        catch (RejectedExecutionException e) {
+            log.warn("Task queue rejected {}, offering it again in {} ms", item.getKey(), retryDelay);
+
+            synchronized (this) {
+                inFlight.remove(item.getKey());
+                rejected = item;
+            }
+
+            retryScheduler.schedule(this::retry, retryDelay, TimeUnit.MILLISECONDS);
+            return false;
+        }
+    }
+
+    private void retry() {
+        Map.Entry<Path, Runnable> item;
+
+        synchronized (this) {
+            item = rejected;
+            rejected = null;
+            inFlight.add(item.getKey());
+        }
+
+        if (submit(item)) {
+            admit();
+        }
+    }
+
+    private void run(Map.Entry<Path, Runnable> item) {
+        try {
+            item.getValue().run();
+        }
+        catch (RuntimeException e) {
+            log.error("Error while processing {}", item.getKey(), e);
+        }
+        finally {
+            synchronized (this) {
+                inFlight.remove(item.getKey());
+            }
+
+            admit();
+        }
+    }
+
+    private static int getMaximumPoolSize(Executor executor) {
+        if (executor instanceof ThreadPoolExecutor) {
+            return ((ThreadPoolExecutor) executor).getMaximumPoolSize();
+        }
+
+        return Integer.MAX_VALUE;
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright (C) 2023 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.vaultingest.core.inbox;
+
+import com.codahale.metrics.MetricRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchService;
+
+// Watches the ingest area with a WatchService (inotify on Linux), so new items are seen right away without listing the
+// directory over and over. The directory is only listed at the start and when the operating system has dropped events.
+// Items created by other hosts on a network file system are not seen, so there the fallback (polling) watcher is to be used.
+@Slf4j
+public class IngestAreaWatchServiceWatcher implements IngestAreaWatcher {
+    private final Path directory;
+    private final long quietPeriod;
+    private final IngestAreaWatcher fallback;
+    private final IngestAreaWatcherMetrics metrics;
+
+    // quietPeriod: see IngestAreaDirectoryWatcher; fallback is started instead if the directory cannot be watched
+    public IngestAreaWatchServiceWatcher(Path directory, long quietPeriodMilliseconds, IngestAreaWatcher fallback, MetricRegistry metricRegistry) {
+        this.directory = directory;
+        this.quietPeriod = quietPeriodMilliseconds;
+        this.fallback = fallback;
+        this.metrics = new IngestAreaWatcherMetrics(metricRegistry);
+    }
+
+    @Override
+    public void start(IngestAreaItemCreated callback) {
+        if (!Files.isDirectory(directory)) {
+            throw new IllegalStateException(String.format("Could not watch %s, it is not a directory", directory));
+        }
+
+        WatchService watchService;
+
+        try {
+            watchService = directory.getFileSystem().newWatchService();
+            directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+        }
+        catch (IOException | UnsupportedOperationException e) {
+            log.warn("Unable to watch {} for changes, polling it instead", directory, e);
+            fallback.start(callback);
+            return;
+        }
+
+        var gate = new IngestAreaItemGate(quietPeriod, callback, metrics);
+
+        // the directory is registered first, so an item that is created while it is listed is not missed; if it is seen twice, the
+        // gate reports it once
+        log.debug("Processing existing items in {}", directory);
+        processExistingItems(gate);
+
+        var thread = new Thread(() -> watch(watchService, gate), "ingest-area-watcher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void watch(WatchService watchService, IngestAreaItemGate gate) {
+        log.debug("Watching {} for new items", directory);
+
+        try {
+            while (true) {
+                var key = watchService.take();
+
+                for (var event : key.pollEvents()) {
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                        log.warn("Events for {} were lost, listing the directory again", directory);
+                        gate.retainExisting();
+                        processExistingItems(gate);
+                        continue;
+                    }
+
+                    var path = directory.resolve((Path) event.context()).toAbsolutePath();
+
+                    if (event.kind() == StandardWatchEventKinds.ENTRY_DELETE) {
+                        gate.onRemoved(path);
+                    }
+                    else if (Files.isDirectory(path)) {
+                        log.trace("Directory {}: {}", event.kind(), path);
+                        gate.onEvent(path);
+                    }
+                }
+
+                if (!key.reset()) {
+                    log.error("{} can no longer be watched; no more items will be picked up", directory);
+                    return;
+                }
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        catch (ClosedWatchServiceException e) {
+            log.debug("Stopped watching {}", directory);
+        }
+        catch (RuntimeException e) {
+            log.error("Error while watching {}; no more items will be picked up", directory, e);
+        }
+    }
+
+    private void processExistingItems(IngestAreaItemGate gate) {
+        var context = metrics.startRescan();
+        try (var files = Files.list(directory)) {
+            files.filter(Files::isDirectory).forEach(dir -> gate.onEvent(dir.toAbsolutePath()));
+        }
+        catch (IOException e) {
+            throw new IllegalStateException(String.format("Could not list %s", directory), e);
+        }
+        finally {
+            context.stop();
+        }
+    }
+}
@@ -0,0 +1,23 @@
+/*
+ * Copyright (C) 2023 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.vaultingest.core.inbox;
+
+public enum IngestAreaWatchStrategy {
+    // the operating system reports new items; falls back to POLLING if the file system cannot be watched
+    WATCH_SERVICE,
+    // the directory is listed at a fixed interval, which also sees items created by other hosts on a network file system
+    POLLING
+}
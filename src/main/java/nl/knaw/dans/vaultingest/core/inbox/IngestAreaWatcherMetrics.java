@@ -0,0 +1,42 @@
+/*
+ * Copyright (C) 2023 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.vaultingest.core.inbox;
+
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+
+import java.util.concurrent.TimeUnit;
+
+// The metrics of the watchers: the time a full listing of the ingest area takes, and the time between the last change of
+// a new item and the moment it is reported
+class IngestAreaWatcherMetrics {
+    private final Timer rescans;
+    private final Timer pickupLatency;
+
+    IngestAreaWatcherMetrics(MetricRegistry metricRegistry) {
+        this.rescans = metricRegistry.timer(MetricRegistry.name(IngestAreaWatcher.class, "rescan"));
+        this.pickupLatency = metricRegistry.timer(MetricRegistry.name(IngestAreaWatcher.class, "pickup-latency"));
+    }
+
+    Timer.Context startRescan() {
+        return rescans.time();
+    }
+
+    void pickedUp(long lastModifiedMillis) {
+        // the modification time may come from the clock of a file server
+        pickupLatency.update(Math.max(0, System.currentTimeMillis() - lastModifiedMillis), TimeUnit.MILLISECONDS);
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright (C) 2023 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.vaultingest.core.mappings;
+
+import nl.knaw.dans.vaultingest.core.deposit.Deposit;
+import nl.knaw.dans.vaultingest.core.deposit.DepositFile;
+import nl.knaw.dans.vaultingest.core.xml.DdmIndex;
+import org.w3c.dom.Node;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+// The access rights of a deposit and a summary of those of its files, resolved once so that the dataset terms and the
+// per-file mappings do not have to query the DDM and go through all files again
+public final class AccessRights {
+    private static final Set<String> KNOWN_OR_RESTRICTED_REQUEST = Set.of("RESTRICTED_REQUEST", "KNOWN");
+
+    private final String datasetAccessRights;
+    private final String termsOfAccess;
+    private boolean containsNone;
+    private boolean containsKnownOrRestrictedRequest;
+
+    AccessRights(Node ddm, Collection<DepositFile> files) {
+        var index = DdmIndex.of(ddm);
+
+        this.datasetAccessRights = DataFile.getAccessRights(ddm);
+        this.termsOfAccess = index.dcmiMetadata("dcterms:accessRights")
+            .map(Node::getTextContent)
+            .map(String::trim)
+            .findFirst()
+            .orElse(null);
+
+        for (var file : files) {
+            var value = file.getAccessibleToRights();
+
+            if (value != null) {
+                containsNone |= "NONE".equals(value);
+                containsKnownOrRestrictedRequest |= KNOWN_OR_RESTRICTED_REQUEST.contains(value);
+            }
+        }
+    }
+
+    public static AccessRights of(Deposit deposit) {
+        var files = deposit.getPayloadFiles();
+        return new AccessRights(deposit.getDdm(), files != null ? files : List.of());
+    }
+
+    // ddm:profile/ddm:accessRights
+    public String getDatasetAccessRights() {
+        return datasetAccessRights;
+    }
+
+    // ddm:dcmiMetadata/dcterms:accessRights
+    public String getTermsOfAccess() {
+        return termsOfAccess;
+    }
+
+    public boolean isRestricted(DepositFile file) {
+        return DataFile.isRestricted(file.getAccessibleToRights(), datasetAccessRights);
+    }
+
+    // true if any file has accessibleToRights NONE
+    public boolean containsNone() {
+        return containsNone;
+    }
+
+    // true if any file has accessibleToRights RESTRICTED_REQUEST or KNOWN
+    public boolean containsKnownOrRestrictedRequest() {
+        return containsKnownOrRestrictedRequest;
+    }
+}
@@ -16,11 +16,12 @@
 package nl.knaw.dans.vaultingest.core.mappings;
 
 import nl.knaw.dans.vaultingest.core.deposit.Deposit;
-import nl.knaw.dans.vaultingest.core.xml.XPathEvaluator;
+import nl.knaw.dans.vaultingest.core.xml.DdmIndex;
 import org.apache.jena.rdf.model.Resource;
 import org.apache.jena.rdf.model.Statement;
 import org.apache.jena.vocabulary.DCTerms;
 import org.w3c.dom.Document;
+import org.w3c.dom.Node;
 
 import java.util.Collection;
 import java.util.List;
@@ -34,10 +35,8 @@ public class AlternativeTitles {
     }
 
     static List<String> getAlternativeTitles(Document ddm) {
-        return XPathEvaluator.strings(ddm,
-                "/ddm:DDM/ddm:dcmiMetadata/dcterms:title",
-                "/ddm:DDM/ddm:dcmiMetadata/dc:title",
-                "/ddm:DDM/ddm:dcmiMetadata/dcterms:alternative")
+        return DdmIndex.of(ddm).dcmiMetadata("dcterms:title", "dc:title", "dcterms:alternative")
+            .map(Node::getTextContent)
             .map(String::trim)
             .collect(Collectors.toList());
     }
@@ -17,10 +17,11 @@ package nl.knaw.dans.vaultingest.core.mappings;
 
 import nl.knaw.dans.vaultingest.core.deposit.Deposit;
 import nl.knaw.dans.vaultingest.core.mappings.vocabulary.DansRel;
-import nl.knaw.dans.vaultingest.core.xml.XPathEvaluator;
+import nl.knaw.dans.vaultingest.core.xml.DdmIndex;
 import org.apache.jena.rdf.model.Resource;
 import org.apache.jena.rdf.model.Statement;
 import org.w3c.dom.Document;
+import org.w3c.dom.Node;
 
 import java.util.Collection;
 import java.util.List;
@@ -34,8 +35,8 @@ public class Audiences extends Base {
     }
 
     static List<String> getAudiences(Document document) {
-        var results = XPathEvaluator.strings(document,
-                "/ddm:DDM/ddm:profile/ddm:audience")
+        var results = DdmIndex.of(document).profile("ddm:audience")
+            .map(Node::getTextContent)
             .map(String::trim)
             .collect(Collectors.toSet());
 
@@ -22,6 +22,7 @@ import nl.knaw.dans.vaultingest.core.mappings.metadata.DatasetOrganization;
 import nl.knaw.dans.vaultingest.core.mappings.metadata.DatasetRelation;
 import nl.knaw.dans.vaultingest.core.mappings.vocabulary.DVCitation;
 import nl.knaw.dans.vaultingest.core.mappings.vocabulary.Datacite;
+import nl.knaw.dans.vaultingest.core.xml.DdmIndex;
 import nl.knaw.dans.vaultingest.core.xml.XPathEvaluator;
 import org.apache.jena.rdf.model.Resource;
 import org.apache.jena.rdf.model.Statement;
@@ -73,8 +74,8 @@ public class Authors extends Base {
     }
 
     static List<DatasetAuthor> getAuthors(Document ddm) {
-        return XPathEvaluator.nodes(ddm,
-                "/ddm:DDM/ddm:profile/dcx-dai:creatorDetails/dcx-dai:author")
+        return DdmIndex.of(ddm).profile("dcx-dai:creatorDetails")
+            .flatMap(details -> XPathEvaluator.nodes(details, "dcx-dai:author"))
             .map(Authors::parseAuthor)
             .collect(Collectors.toList());
     }
@@ -94,7 +95,8 @@ public class Authors extends Base {
     }
 
     static List<DatasetCreator> getCreators(Document ddm) {
-        return XPathEvaluator.strings(ddm, "/ddm:DDM/ddm:profile/dc:creator")
+        return DdmIndex.of(ddm).profile("dc:creator")
+            .map(Node::getTextContent)
             .map(String::trim)
             .map(author -> DatasetCreator.builder()
                 .name(author)
@@ -104,8 +106,8 @@ public class Authors extends Base {
     }
 
     static List<DatasetOrganization> getOrganizations(Document ddm) {
-        return XPathEvaluator.nodes(ddm,
-                "/ddm:DDM/ddm:profile/dcx-dai:creatorDetails/dcx-dai:organization")
+        return DdmIndex.of(ddm).profile("dcx-dai:creatorDetails")
+            .flatMap(details -> XPathEvaluator.nodes(details, "dcx-dai:organization"))
             .map(node -> DatasetOrganization.builder()
                 .name(getFirstValue(node, "dcx-dai:name"))
                 .isni(getISNI(node))
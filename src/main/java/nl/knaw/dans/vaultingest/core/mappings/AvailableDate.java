@@ -16,11 +16,12 @@
 package nl.knaw.dans.vaultingest.core.mappings;
 
 import nl.knaw.dans.vaultingest.core.deposit.Deposit;
-import nl.knaw.dans.vaultingest.core.xml.XPathEvaluator;
+import nl.knaw.dans.vaultingest.core.xml.DdmIndex;
 import org.apache.jena.rdf.model.Resource;
 import org.apache.jena.rdf.model.Statement;
 import org.apache.jena.vocabulary.DCTerms;
 import org.w3c.dom.Document;
+import org.w3c.dom.Node;
 
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
@@ -40,7 +41,8 @@ public class AvailableDate extends Base {
     }
 
     static LocalDate getAvailableDate(Document document) {
-        return XPathEvaluator.strings(document, "/ddm:DDM/ddm:profile/ddm:available")
+        return DdmIndex.of(document).profile("ddm:available")
+            .map(Node::getTextContent)
             .findFirst()
             .map(AvailableDate::toYearMonthDayFormat)
             .orElse(null);
@@ -25,6 +25,7 @@ import org.apache.jena.rdf.model.Property;
 import org.apache.jena.rdf.model.Resource;
 import org.apache.jena.rdf.model.Statement;
 import org.w3c.dom.Document;
+import org.w3c.dom.Element;
 import org.w3c.dom.Node;
 
 import java.util.ArrayList;
@@ -57,6 +58,17 @@ public class Base {
             .map(VIAF::new).findFirst().orElse(null);
     }
 
+    // value of an attribute without a namespace, or null when it is absent, like @name in an XPath expression
+    static String getAttribute(Element element, String name) {
+        return element.hasAttributeNS(null, name) ? element.getAttributeNS(null, name) : null;
+    }
+
+    static String getXsiType(Element element) {
+        return element.hasAttributeNS(XmlNamespaces.NAMESPACE_XSI, "type")
+            ? element.getAttributeNS(XmlNamespaces.NAMESPACE_XSI, "type")
+            : null;
+    }
+
     static String getIdTypeNamespace(Document document) {
         return document.lookupPrefix(XmlNamespaces.NAMESPACE_ID_TYPE);
     }
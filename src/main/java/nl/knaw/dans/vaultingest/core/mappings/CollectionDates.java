@@ -18,10 +18,11 @@ package nl.knaw.dans.vaultingest.core.mappings;
 import nl.knaw.dans.vaultingest.core.deposit.Deposit;
 import nl.knaw.dans.vaultingest.core.mappings.metadata.CollectionDate;
 import nl.knaw.dans.vaultingest.core.mappings.vocabulary.DVCitation;
-import nl.knaw.dans.vaultingest.core.xml.XPathEvaluator;
+import nl.knaw.dans.vaultingest.core.xml.DdmIndex;
 import org.apache.jena.rdf.model.Resource;
 import org.apache.jena.rdf.model.Statement;
 import org.w3c.dom.Document;
+import org.w3c.dom.Node;
 
 import java.util.Collection;
 import java.util.List;
@@ -38,7 +39,8 @@ public class CollectionDates extends Base {
     }
 
     static List<CollectionDate> getCollectionDates(Document document) {
-        return XPathEvaluator.strings(document, "/ddm:DDM/ddm:dcmiMetadata/ddm:datesOfCollection")
+        return DdmIndex.of(document).dcmiMetadata("ddm:datesOfCollection")
+            .map(Node::getTextContent)
             .map(value -> {
                 var matches = DATES_OF_COLLECTION_PATTERN.matcher(value.trim());
 
@@ -18,6 +18,7 @@ package nl.knaw.dans.vaultingest.core.mappings;
 import nl.knaw.dans.vaultingest.core.deposit.Deposit;
 import nl.knaw.dans.vaultingest.core.mappings.metadata.Contributor;
 import nl.knaw.dans.vaultingest.core.mappings.vocabulary.DVCitation;
+import nl.knaw.dans.vaultingest.core.xml.DdmIndex;
 import nl.knaw.dans.vaultingest.core.xml.XPathEvaluator;
 import org.apache.jena.rdf.model.Resource;
 import org.apache.jena.rdf.model.Statement;
@@ -37,9 +38,8 @@ public class Contributors extends Base {
 
     static List<Contributor> getContributors(Document document) {
         // CIT020
-        var authors = XPathEvaluator.nodes(document,
-                "/ddm:DDM/ddm:dcmiMetadata/dcx-dai:contributorDetails/" +
-                    "dcx-dai:author[dcx-dai:role != 'RightsHolder']")
+        var authors = DdmIndex.of(document).dcmiMetadata("dcx-dai:contributorDetails")
+            .flatMap(details -> XPathEvaluator.nodes(details, "dcx-dai:author[dcx-dai:role != 'RightsHolder']"))
             .map(item -> {
                 var author = Authors.parseAuthor(item);
                 var name = author.getContributorName();
@@ -51,9 +51,9 @@ public class Contributors extends Base {
             });
 
         // CIT021
-        var organizations = XPathEvaluator.nodes(document,
-                "/ddm:DDM/ddm:dcmiMetadata/dcx-dai:contributorDetails/" +
-                    "dcx-dai:organization[dcx-dai:role != 'RightsHolder' and dcx-dai:role != 'Funder']")
+        var organizations = DdmIndex.of(document).dcmiMetadata("dcx-dai:contributorDetails")
+            .flatMap(details -> XPathEvaluator.nodes(details,
+                "dcx-dai:organization[dcx-dai:role != 'RightsHolder' and dcx-dai:role != 'Funder']"))
             .map(item -> {
                 var role = getFirstValue(item, "dcx-dai:role");
                 var name = getFirstValue(item, "dcx-dai:name");
@@ -18,6 +18,7 @@ package nl.knaw.dans.vaultingest.core.mappings;
 import nl.knaw.dans.vaultingest.core.deposit.Deposit;
 import nl.knaw.dans.vaultingest.core.mappings.metadata.DansRelation;
 import nl.knaw.dans.vaultingest.core.mappings.vocabulary.DansRel;
+import nl.knaw.dans.vaultingest.core.xml.DdmIndex;
 import nl.knaw.dans.vaultingest.core.xml.XPathEvaluator;
 import org.apache.jena.rdf.model.Resource;
 import org.apache.jena.rdf.model.Statement;
@@ -55,11 +56,11 @@ public class DansRelations extends Base {
     }
 
     static List<DansRelation> getDansRelations(Document document) {
-        var queries = labelToType.keySet().stream()
-            .map(name -> "/ddm:DDM/ddm:dcmiMetadata/ddm:" + name)
+        var names = labelToType.keySet().stream()
+            .map(name -> "ddm:" + name)
             .toArray(String[]::new);
 
-        return XPathEvaluator.nodes(document.getDocumentElement(), queries)
+        return DdmIndex.of(document).dcmiMetadata(names)
             .map(item -> {
                 var label = labelToType.get(item.getLocalName());
                 var text = item.getTextContent();
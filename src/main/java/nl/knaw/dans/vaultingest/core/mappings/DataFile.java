@@ -17,7 +17,7 @@ package nl.knaw.dans.vaultingest.core.mappings;
 
 import nl.knaw.dans.vaultingest.core.deposit.DepositFile;
 import nl.knaw.dans.vaultingest.core.mappings.vocabulary.DVCore;
-import nl.knaw.dans.vaultingest.core.xml.XPathEvaluator;
+import nl.knaw.dans.vaultingest.core.xml.DdmIndex;
 import org.apache.jena.rdf.model.Resource;
 import org.apache.jena.rdf.model.Statement;
 import org.apache.jena.vocabulary.SchemaDO;
@@ -29,11 +29,15 @@ import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
 public class DataFile extends Base {
     private static final DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd");
 
-    public static List<Statement> toRDF(Resource resource, DepositFile depositFile) {
+    // the namespaces of the properties of toRDF; every file has a name and is restricted or not, so all of them are used
+    public static final Set<String> NAMESPACES = Set.of(SchemaDO.NS, DVCore.NS);
+
+    public static List<Statement> toRDF(Resource resource, DepositFile depositFile, AccessRights accessRights) {
         var result = new ArrayList<Statement>();
 
         // FIL001A
@@ -49,29 +53,17 @@ public class DataFile extends Base {
             .ifPresent(result::add);
 
         // FIL004A
-        toBasicTerm(resource, SchemaDO.description, getDescription(depositFile.getFilesXmlNode()))
+        toBasicTerm(resource, SchemaDO.description, depositFile.getDescription())
             .ifPresent(result::add);
 
         // FIL005, FIL006
-        toBasicTerm(resource, DVCore.restricted, getRestricted(depositFile.getFilesXmlNode(), depositFile.getDdmNode()))
+        toBasicTerm(resource, DVCore.restricted, Boolean.toString(accessRights.isRestricted(depositFile)))
             .ifPresent(result::add);
 
         return result;
     }
 
-    static String getDescription(Node filesXmlNode) {
-        return XPathEvaluator.strings(filesXmlNode, "dcterms:description")
-            .findFirst().orElse(null);
-    }
-
-    static String getRestricted(Node filesXmlNode, Node ddm) {
-        return Boolean.toString(isRestricted(filesXmlNode, ddm));
-    }
-
-    static boolean isRestricted(Node filesXmlNode, Node ddm) {
-        var accessibleToRights = getAccessibleToRights(filesXmlNode);
-        var accessRights = getAccessRights(ddm);
-
+    static boolean isRestricted(String accessibleToRights, String accessRights) {
         if (accessibleToRights != null) {
             // if ANONYMOUS then false else true
             return !"ANONYMOUS".equals(accessibleToRights);
@@ -85,14 +77,9 @@ public class DataFile extends Base {
         return false;
     }
 
-    static String getAccessibleToRights(Node filesXmlNode) {
-        return XPathEvaluator.strings(filesXmlNode, "files:accessibleToRights")
-            .findFirst()
-            .orElse(null);
-    }
-
     static String getAccessRights(Node ddm) {
-        return XPathEvaluator.strings(ddm, "/ddm:DDM/ddm:profile/ddm:accessRights")
+        return DdmIndex.of(ddm).profile("ddm:accessRights")
+            .map(Node::getTextContent)
             .map(String::trim)
             .findFirst()
             .orElse(null);
@@ -100,7 +87,8 @@ public class DataFile extends Base {
 
     // TODO add mapping if FIL008 is mapped in the document (see Ingest Flow Mapping Rules)
     static String getEmbargo(Node ddm) {
-        var value = XPathEvaluator.strings(ddm, "/ddm:DDM/ddm:profile/ddm:available")
+        var value = DdmIndex.of(ddm).profile("ddm:available")
+            .map(Node::getTextContent)
             .findFirst()
             .map(String::trim)
             .map(formatter::parse)
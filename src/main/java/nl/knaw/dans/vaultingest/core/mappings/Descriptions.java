@@ -18,10 +18,11 @@ package nl.knaw.dans.vaultingest.core.mappings;
 import nl.knaw.dans.vaultingest.core.deposit.Deposit;
 import nl.knaw.dans.vaultingest.core.mappings.metadata.Description;
 import nl.knaw.dans.vaultingest.core.mappings.vocabulary.DVCitation;
-import nl.knaw.dans.vaultingest.core.xml.XPathEvaluator;
+import nl.knaw.dans.vaultingest.core.xml.DdmIndex;
 import org.apache.jena.rdf.model.Resource;
 import org.apache.jena.rdf.model.Statement;
 import org.w3c.dom.Document;
+import org.w3c.dom.Node;
 
 import java.util.Collection;
 import java.util.List;
@@ -48,16 +49,16 @@ public class Descriptions extends Base {
             .collect(Collectors.toList());
 
         // CIT011, dcmiMetadata / [tags]
-        var dcmiDescriptions = XPathEvaluator.nodes(document,
-                "/ddm:DDM/ddm:dcmiMetadata/dcterms:date",
-                "/ddm:DDM/ddm:dcmiMetadata/dc:date",
-                "/ddm:DDM/ddm:dcmiMetadata/dcterms:dateAccepted",
-                "/ddm:DDM/ddm:dcmiMetadata/dcterms:dateCopyrighted",
-                "/ddm:DDM/ddm:dcmiMetadata/dcterms:dateSubmitted",
-                "/ddm:DDM/ddm:dcmiMetadata/dcterms:modified",
-                "/ddm:DDM/ddm:dcmiMetadata/dcterms:issued",
-                "/ddm:DDM/ddm:dcmiMetadata/dcterms:valid",
-                "/ddm:DDM/ddm:dcmiMetadata/dcterms:coverage")
+        var dcmiDescriptions = DdmIndex.of(document).dcmiMetadata(
+                "dcterms:date",
+                "dc:date",
+                "dcterms:dateAccepted",
+                "dcterms:dateCopyrighted",
+                "dcterms:dateSubmitted",
+                "dcterms:modified",
+                "dcterms:issued",
+                "dcterms:valid",
+                "dcterms:coverage")
             .map(node -> Description.builder()
                 .type(node.getLocalName())
                 .value(node.getTextContent().trim())
@@ -65,8 +66,8 @@ public class Descriptions extends Base {
             );
 
         // CIT012, dcmiMetadata / description
-        var dcmiDescription = XPathEvaluator.strings(document,
-                "/ddm:DDM/ddm:dcmiMetadata/dcterms:description")
+        var dcmiDescription = DdmIndex.of(document).dcmiMetadata("dcterms:description")
+            .map(Node::getTextContent)
             .map(value -> Description.builder()
                 .value(value.trim())
                 .build()
@@ -82,10 +83,10 @@ public class Descriptions extends Base {
     }
 
     static Stream<Description> getAllProfileDescriptions(Document document) {
-        return XPathEvaluator.strings(document,
-            "/ddm:DDM/ddm:profile/dc:description",
-            "/ddm:DDM/ddm:profile/dcterms:description"
-        ).map(value -> Description.builder()
+        return DdmIndex.of(document).profile(
+            "dc:description",
+            "dcterms:description"
+        ).map(Node::getTextContent).map(value -> Description.builder()
             .value(value.trim())
             .build()
         );
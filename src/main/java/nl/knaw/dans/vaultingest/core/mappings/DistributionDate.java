@@ -17,13 +17,14 @@ package nl.knaw.dans.vaultingest.core.mappings;
 
 import nl.knaw.dans.vaultingest.core.deposit.Deposit;
 import nl.knaw.dans.vaultingest.core.mappings.vocabulary.DVCitation;
-import nl.knaw.dans.vaultingest.core.xml.XPathEvaluator;
+import nl.knaw.dans.vaultingest.core.xml.DdmIndex;
 import org.apache.jena.rdf.model.Resource;
 import org.apache.jena.rdf.model.Statement;
 import org.joda.time.DateTime;
 import org.joda.time.format.DateTimeFormat;
 import org.joda.time.format.DateTimeFormatter;
 import org.w3c.dom.Document;
+import org.w3c.dom.Node;
 
 import java.util.Optional;
 
@@ -35,7 +36,8 @@ public class DistributionDate extends Base {
     }
 
     static String getDistributionDate(Document document) {
-        return XPathEvaluator.strings(document, "/ddm:DDM/ddm:profile/ddm:available")
+        return DdmIndex.of(document).profile("ddm:available")
+            .map(Node::getTextContent)
             .findFirst()
             .map(DistributionDate::toYearMonthDayFormat)
             .orElse(null);
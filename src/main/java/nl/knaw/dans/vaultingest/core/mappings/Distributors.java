@@ -18,14 +18,18 @@ package nl.knaw.dans.vaultingest.core.mappings;
 import nl.knaw.dans.vaultingest.core.deposit.Deposit;
 import nl.knaw.dans.vaultingest.core.mappings.metadata.Distributor;
 import nl.knaw.dans.vaultingest.core.mappings.vocabulary.DVCitation;
-import nl.knaw.dans.vaultingest.core.xml.XPathEvaluator;
+import nl.knaw.dans.vaultingest.core.xml.DdmIndex;
 import org.apache.jena.rdf.model.Resource;
 import org.apache.jena.rdf.model.Statement;
 import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 public class Distributors extends Base {
 
@@ -35,17 +39,29 @@ public class Distributors extends Base {
     }
 
     static List<Distributor> getDistributors(Document document) {
-        var filter = "[text() != 'DANS' and text() != 'DANS/KNAW' and text() != 'DANS-KNAW']";
-
-        return XPathEvaluator.strings(document,
-                "/ddm:DDM/ddm:dcmiMetadata/dcterms:publisher" + filter,
-                "/ddm:DDM/ddm:dcmiMetadata/dc:publisher" + filter)
+        return DdmIndex.of(document).dcmiMetadata("dcterms:publisher", "dc:publisher")
+            .filter(Distributors::isNotDans)
+            .map(Node::getTextContent)
             .map(value -> Distributor.builder()
                 .name(value)
                 .build())
             .collect(Collectors.toList());
     }
 
+    // same as the XPath predicate [text() != 'DANS' and text() != 'DANS/KNAW' and text() != 'DANS-KNAW']
+    private static boolean isNotDans(Element element) {
+        var texts = new ArrayList<String>();
+
+        for (var child = element.getFirstChild(); child != null; child = child.getNextSibling()) {
+            if (child.getNodeType() == Node.TEXT_NODE || child.getNodeType() == Node.CDATA_SECTION_NODE) {
+                texts.add(child.getNodeValue());
+            }
+        }
+
+        return Stream.of("DANS", "DANS/KNAW", "DANS-KNAW")
+            .allMatch(name -> texts.stream().anyMatch(text -> !text.equals(name)));
+    }
+
     static List<Statement> toDistributors(Resource resource, Collection<Distributor> distributors) {
         return toComplexTerms(resource, DVCitation.distributor, distributors, (element, distributor) -> {
             if (distributor.getName() != null) {
@@ -20,11 +20,12 @@ import nl.knaw.dans.vaultingest.core.mappings.metadata.Funder;
 import nl.knaw.dans.vaultingest.core.mappings.metadata.GrantNumber;
 import nl.knaw.dans.vaultingest.core.mappings.metadata.NWOGrantNumber;
 import nl.knaw.dans.vaultingest.core.mappings.vocabulary.DVCitation;
-import nl.knaw.dans.vaultingest.core.xml.XPathEvaluator;
+import nl.knaw.dans.vaultingest.core.xml.DdmIndex;
 import org.apache.jena.rdf.model.Resource;
 import org.apache.jena.rdf.model.Statement;
 import org.apache.jena.vocabulary.SchemaDO;
 import org.w3c.dom.Document;
+import org.w3c.dom.Node;
 
 import java.util.ArrayList;
 import java.util.Collection;
@@ -43,7 +44,7 @@ public class GrantNumbers extends Base {
 
     // CIT022
     static List<GrantNumber> getFunders(Document document) {
-        return XPathEvaluator.nodes(document, "/ddm:DDM/ddm:dcmiMetadata/ddm:funding")
+        return DdmIndex.of(document).dcmiMetadata("ddm:funding")
             .map(node -> Funder.builder()
                 .funderName(getFirstValue(node, "ddm:funderName"))
                 .fundingProgramme(getFirstValue(node, "ddm:fundingProgramme"))
@@ -56,12 +57,10 @@ public class GrantNumbers extends Base {
 
     // CIT023
     static List<GrantNumber> getGrantNumbers(Document document) {
-        var idType = getIdTypeNamespace(document);
-
-        return XPathEvaluator.strings(document,
-                String.format(
-                    "/ddm:DDM/ddm:dcmiMetadata/dcterms:identifier[@xsi:type = '%s:NWO-PROJECTNR']", idType)
-            )
+        var type = String.format("%s:NWO-PROJECTNR", getIdTypeNamespace(document));
+        return DdmIndex.of(document).dcmiMetadata("dcterms:identifier")
+            .filter(element -> type.equals(getXsiType(element)))
+            .map(Node::getTextContent)
             .map(value -> NWOGrantNumber.builder()
                 .value(value)
                 .build())
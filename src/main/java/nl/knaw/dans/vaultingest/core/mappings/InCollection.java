@@ -17,13 +17,14 @@ package nl.knaw.dans.vaultingest.core.mappings;
 
 import nl.knaw.dans.vaultingest.core.deposit.Deposit;
 import nl.knaw.dans.vaultingest.core.mappings.vocabulary.DansRel;
-import nl.knaw.dans.vaultingest.core.xml.XPathEvaluator;
+import nl.knaw.dans.vaultingest.core.xml.DdmIndex;
 import org.apache.jena.rdf.model.Resource;
 import org.apache.jena.rdf.model.Statement;
 import org.w3c.dom.Document;
 
 import java.util.Collection;
 import java.util.List;
+import java.util.Objects;
 import java.util.stream.Collectors;
 
 public class InCollection extends Base {
@@ -32,10 +33,11 @@ public class InCollection extends Base {
     }
 
     static List<String> getInCollections(Document document) {
-        var results = XPathEvaluator.strings(document,
-                "/ddm:DDM/ddm:dcmiMetadata/ddm:inCollection" +
-                    "[@subjectScheme = 'DANS Collection' and @schemeURI = 'https://vocabularies.dans.knaw.nl/collections']" +
-                    "/@valueURI")
+        var results = DdmIndex.of(document).dcmiMetadata("ddm:inCollection")
+            .filter(element -> "DANS Collection".equals(getAttribute(element, "subjectScheme"))
+                && "https://vocabularies.dans.knaw.nl/collections".equals(getAttribute(element, "schemeURI")))
+            .map(element -> getAttribute(element, "valueURI"))
+            .filter(Objects::nonNull)
             .map(String::trim)
             .distinct()
             .collect(Collectors.toList());
@@ -18,10 +18,12 @@ package nl.knaw.dans.vaultingest.core.mappings;
 import nl.knaw.dans.vaultingest.core.deposit.Deposit;
 import nl.knaw.dans.vaultingest.core.mappings.metadata.Keyword;
 import nl.knaw.dans.vaultingest.core.mappings.vocabulary.DVCitation;
-import nl.knaw.dans.vaultingest.core.xml.XPathEvaluator;
+import nl.knaw.dans.vaultingest.core.xml.DdmIndex;
 import org.apache.jena.rdf.model.Resource;
 import org.apache.jena.rdf.model.Statement;
 import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
 
 import java.util.ArrayList;
 import java.util.Collection;
@@ -52,23 +54,17 @@ public class Keywords extends Base {
     // CIT014
     static List<Keyword> getKeywordsWithoutScheme(Document document) {
         // CIT014
-        return XPathEvaluator.nodes(document,
-                "/ddm:DDM/ddm:dcmiMetadata/dcterms:subject[not(@schemeURI) and not(@subjectScheme)]",
-                "/ddm:DDM/ddm:dcmiMetadata/dc:subject[not(@schemeURI) and not(@subjectScheme)]")
+        return DdmIndex.of(document).dcmiMetadata("dcterms:subject", "dc:subject")
+            .filter(element -> getAttribute(element, "schemeURI") == null && getAttribute(element, "subjectScheme") == null)
             .map(node -> Keyword.builder().text(node.getTextContent().trim()).build())
             .collect(Collectors.toList());
     }
 
     // CIT015
     static List<Keyword> getPanAndAatKeywords(Document document) {
-        var expr = "/ddm:DDM/ddm:dcmiMetadata/ddm:subject[" +
-            String.format("(@schemeURI = '%s' and @subjectScheme = '%s')", SCHEME_URI_PAN, SCHEME_PAN) +
-            " or " +
-            String.format("(@schemeURI = '%s' and @subjectScheme = '%s')", SCHEME_URI_AAT, SCHEME_AAT) +
-            "]";
-
         // CIT014
-        return XPathEvaluator.nodes(document, expr)
+        return DdmIndex.of(document).dcmiMetadata("ddm:subject")
+            .filter(element -> isScheme(element, SCHEME_URI_PAN, SCHEME_PAN) || isScheme(element, SCHEME_URI_AAT, SCHEME_AAT))
             .map(node -> Keyword.builder()
                 .text(node.getTextContent().trim())
                 .vocabulary(node.getAttributes().getNamedItem("subjectScheme").getTextContent())
@@ -79,14 +75,18 @@ public class Keywords extends Base {
 
     // CIT016
     static List<Keyword> getLanguageKeywords(Document document) {
-        return XPathEvaluator.strings(document,
-            "/ddm:DDM/ddm:dcmiMetadata/dcterms:language"
-        ).map(value -> Keyword.builder()
+        return DdmIndex.of(document).dcmiMetadata(
+            "dcterms:language"
+        ).map(Node::getTextContent).map(value -> Keyword.builder()
             .text(value.trim())
             .build()
         ).collect(Collectors.toList());
     }
 
+    private static boolean isScheme(Element element, String schemeUri, String subjectScheme) {
+        return schemeUri.equals(getAttribute(element, "schemeURI")) && subjectScheme.equals(getAttribute(element, "subjectScheme"));
+    }
+
     static List<Statement> toKeywords(Resource resource, Collection<Keyword> keywords) {
         return toComplexTerms(resource, DVCitation.keyword, keywords, (element, keyword) -> {
             element.addProperty(DVCitation.keywordValue, keyword.getText());
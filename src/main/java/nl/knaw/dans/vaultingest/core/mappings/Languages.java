@@ -17,7 +17,7 @@ package nl.knaw.dans.vaultingest.core.mappings;
 
 import nl.knaw.dans.vaultingest.core.deposit.Deposit;
 import nl.knaw.dans.vaultingest.core.deposit.LanguageResolver;
-import nl.knaw.dans.vaultingest.core.xml.XPathEvaluator;
+import nl.knaw.dans.vaultingest.core.xml.DdmIndex;
 import org.apache.jena.rdf.model.Resource;
 import org.apache.jena.rdf.model.Statement;
 import org.apache.jena.vocabulary.DCTerms;
@@ -36,11 +36,11 @@ public class Languages extends Base {
 
     static List<String> getLanguages(Document document, LanguageResolver languageResolver) {
         // CIT018, ddm:language / @code
-        return XPathEvaluator.strings(document,
-                "/ddm:DDM/ddm:dcmiMetadata/ddm:language[" +
-                    "@encodingScheme='ISO639-1' or " +
-                    "@encodingScheme='ISO639-2']/@code"
-            )
+        return DdmIndex.of(document).dcmiMetadata("ddm:language")
+            .filter(element -> "ISO639-1".equals(getAttribute(element, "encodingScheme"))
+                || "ISO639-2".equals(getAttribute(element, "encodingScheme")))
+            .map(element -> getAttribute(element, "code"))
+            .filter(Objects::nonNull)
             .map(languageResolver::resolve)
             .filter(Objects::nonNull)
             .collect(Collectors.toList());
@@ -16,12 +16,13 @@
 package nl.knaw.dans.vaultingest.core.mappings;
 
 import nl.knaw.dans.vaultingest.core.deposit.Deposit;
-import nl.knaw.dans.vaultingest.core.xml.XPathEvaluator;
+import nl.knaw.dans.vaultingest.core.xml.DdmIndex;
 import nl.knaw.dans.vaultingest.core.xml.XmlNamespaces;
 import org.apache.jena.rdf.model.Resource;
 import org.apache.jena.rdf.model.Statement;
 import org.apache.jena.vocabulary.SchemaDO;
 import org.w3c.dom.Document;
+import org.w3c.dom.Node;
 
 import java.util.Optional;
 
@@ -32,11 +33,10 @@ public class License extends Base {
     }
 
     static String getLicense(Document document) {
-        var dctermsNamespace = document.lookupPrefix(XmlNamespaces.NAMESPACE_DCTERMS);
-
-        return XPathEvaluator.strings(document,
-                String.format("/ddm:DDM/ddm:dcmiMetadata/dcterms:license[@xsi:type='%s:URI']", dctermsNamespace)
-            )
+        var type = String.format("%s:URI", document.lookupPrefix(XmlNamespaces.NAMESPACE_DCTERMS));
+        return DdmIndex.of(document).dcmiMetadata("dcterms:license")
+            .filter(element -> type.equals(getXsiType(element)))
+            .map(Node::getTextContent)
             .map(String::trim)
             .findFirst()
             .orElse(null);
@@ -18,7 +18,7 @@ package nl.knaw.dans.vaultingest.core.mappings;
 import nl.knaw.dans.vaultingest.core.deposit.Deposit;
 import nl.knaw.dans.vaultingest.core.deposit.LanguageResolver;
 import nl.knaw.dans.vaultingest.core.mappings.vocabulary.DansRights;
-import nl.knaw.dans.vaultingest.core.xml.XPathEvaluator;
+import nl.knaw.dans.vaultingest.core.xml.DdmIndex;
 import org.apache.jena.rdf.model.Resource;
 import org.apache.jena.rdf.model.Statement;
 import org.w3c.dom.Document;
@@ -36,8 +36,7 @@ public class MetadataLanguages extends Base {
 
     static List<String> getMetadataLanguages(Document document, LanguageResolver languageResolver) {
         // RIG003
-        return XPathEvaluator.strings(document, "//@xml:lang")
-            .distinct()
+        return DdmIndex.of(document).xmlLangs()
             .map(languageResolver::resolve)
             .filter(Objects::nonNull)
             .collect(Collectors.toList());
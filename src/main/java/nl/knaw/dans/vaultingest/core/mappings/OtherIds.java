@@ -18,11 +18,12 @@ package nl.knaw.dans.vaultingest.core.mappings;
 import nl.knaw.dans.vaultingest.core.deposit.Deposit;
 import nl.knaw.dans.vaultingest.core.mappings.metadata.OtherId;
 import nl.knaw.dans.vaultingest.core.mappings.vocabulary.DVCitation;
-import nl.knaw.dans.vaultingest.core.xml.XPathEvaluator;
+import nl.knaw.dans.vaultingest.core.xml.DdmIndex;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.jena.rdf.model.Resource;
 import org.apache.jena.rdf.model.Statement;
 import org.w3c.dom.Document;
+import org.w3c.dom.Node;
 
 import java.util.ArrayList;
 import java.util.Collection;
@@ -56,9 +57,9 @@ public class OtherIds extends Base {
             .ifPresent(results::add);
 
         // CIT004, data from ddm
-        XPathEvaluator.strings(document,
-                "/ddm:DDM/ddm:dcmiMetadata/ddm:identifier[not(@xsi:type)]",
-                "/ddm:DDM/ddm:dcmiMetadata/dcterms:identifier[not(@xsi:type)]")
+        DdmIndex.of(document).dcmiMetadata("ddm:identifier", "dcterms:identifier")
+            .filter(element -> getXsiType(element) == null)
+            .map(Node::getTextContent)
             .map(identifier -> OtherId.builder()
                 .value(identifier)
                 .build()
@@ -17,7 +17,7 @@ package nl.knaw.dans.vaultingest.core.mappings;
 
 import nl.knaw.dans.vaultingest.core.deposit.Deposit;
 import nl.knaw.dans.vaultingest.core.mappings.vocabulary.DansRights;
-import nl.knaw.dans.vaultingest.core.xml.XPathEvaluator;
+import nl.knaw.dans.vaultingest.core.xml.DdmIndex;
 import org.apache.jena.rdf.model.Resource;
 import org.apache.jena.rdf.model.Statement;
 import org.w3c.dom.Document;
@@ -29,8 +29,8 @@ public class PersonalData extends Base {
     }
 
     static boolean isPersonalDataPresent(Document document) {
-        return XPathEvaluator.nodes(document, "/ddm:DDM/ddm:profile/ddm:personalData[@present = 'Yes']")
-            .findAny().isPresent();
+        return DdmIndex.of(document).profile("ddm:personalData")
+            .anyMatch(element -> "Yes".equals(getAttribute(element, "present")));
     }
 
     static Statement toDansPersonalDataPresent(Resource resource, boolean isPersonalDataPresent) {
@@ -18,7 +18,7 @@ package nl.knaw.dans.vaultingest.core.mappings;
 import nl.knaw.dans.vaultingest.core.deposit.Deposit;
 import nl.knaw.dans.vaultingest.core.mappings.metadata.Publication;
 import nl.knaw.dans.vaultingest.core.mappings.vocabulary.Datacite;
-import nl.knaw.dans.vaultingest.core.xml.XPathEvaluator;
+import nl.knaw.dans.vaultingest.core.xml.DdmIndex;
 import org.apache.jena.rdf.model.Resource;
 import org.apache.jena.rdf.model.Statement;
 import org.apache.jena.vocabulary.DCTerms;
@@ -26,7 +26,6 @@ import org.w3c.dom.Document;
 
 import java.util.Collection;
 import java.util.List;
-import java.util.Set;
 import java.util.stream.Collectors;
 
 public class Publications extends Base {
@@ -38,15 +37,12 @@ public class Publications extends Base {
     static List<Publication> getPublications(Document document) {
         // CIT017
         var idType = getIdTypeNamespace(document);
+        var issn = idType + ":ISSN";
+        var isbn = idType + ":ISBN";
 
         // identifier might have dcterms or dc as prefix, query both
-        var queries = Set.of("dcterms", "dc").stream().map(prefix ->
-                String.format("/ddm:DDM/ddm:dcmiMetadata/%s:identifier[" +
-                    "@xsi:type = '%s:ISSN' or @xsi:type = '%s:ISBN'" +
-                    "]", prefix, idType, idType))
-            .toArray(String[]::new);
-
-        return XPathEvaluator.nodes(document, queries)
+        return DdmIndex.of(document).dcmiMetadata("dcterms:identifier", "dc:identifier")
+            .filter(element -> issn.equals(getXsiType(element)) || isbn.equals(getXsiType(element)))
             .map(node -> {
                 var idTypeValue = node.getAttributes()
                     .getNamedItem("xsi:type").getTextContent()
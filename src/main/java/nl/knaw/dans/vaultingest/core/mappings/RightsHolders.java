@@ -17,10 +17,11 @@ package nl.knaw.dans.vaultingest.core.mappings;
 
 import nl.knaw.dans.vaultingest.core.deposit.Deposit;
 import nl.knaw.dans.vaultingest.core.mappings.vocabulary.DansRights;
-import nl.knaw.dans.vaultingest.core.xml.XPathEvaluator;
+import nl.knaw.dans.vaultingest.core.xml.DdmIndex;
 import org.apache.jena.rdf.model.Resource;
 import org.apache.jena.rdf.model.Statement;
 import org.w3c.dom.Document;
+import org.w3c.dom.Node;
 
 import java.util.Collection;
 import java.util.List;
@@ -34,7 +35,8 @@ public class RightsHolders extends Base {
 
     static List<String> getOtherIds(Document document) {
         // RIG001
-        return XPathEvaluator.strings(document, "/ddm:DDM/ddm:dcmiMetadata/dcterms:rightsHolder")
+        return DdmIndex.of(document).dcmiMetadata("dcterms:rightsHolder")
+            .map(Node::getTextContent)
             .collect(Collectors.toList());
     }
 
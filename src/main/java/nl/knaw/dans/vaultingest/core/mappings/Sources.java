@@ -17,10 +17,11 @@ package nl.knaw.dans.vaultingest.core.mappings;
 
 import nl.knaw.dans.vaultingest.core.deposit.Deposit;
 import nl.knaw.dans.vaultingest.core.mappings.vocabulary.PROV;
-import nl.knaw.dans.vaultingest.core.xml.XPathEvaluator;
+import nl.knaw.dans.vaultingest.core.xml.DdmIndex;
 import org.apache.jena.rdf.model.Resource;
 import org.apache.jena.rdf.model.Statement;
 import org.w3c.dom.Document;
+import org.w3c.dom.Node;
 
 import java.util.Collection;
 import java.util.List;
@@ -33,8 +34,8 @@ public class Sources extends Base {
     }
 
     static List<String> getSources(Document document) {
-        return XPathEvaluator.strings(document,
-                "/ddm:DDM/ddm:dcmiMetadata/dcterms:source")
+        return DdmIndex.of(document).dcmiMetadata("dcterms:source")
+            .map(Node::getTextContent)
             .map(String::trim)
             .collect(Collectors.toList());
     }
@@ -18,10 +18,11 @@ package nl.knaw.dans.vaultingest.core.mappings;
 import nl.knaw.dans.vaultingest.core.deposit.CountryResolver;
 import nl.knaw.dans.vaultingest.core.deposit.Deposit;
 import nl.knaw.dans.vaultingest.core.mappings.vocabulary.DansTS;
-import nl.knaw.dans.vaultingest.core.xml.XPathEvaluator;
+import nl.knaw.dans.vaultingest.core.xml.DdmIndex;
 import org.apache.jena.rdf.model.Resource;
 import org.apache.jena.rdf.model.Statement;
 import org.w3c.dom.Document;
+import org.w3c.dom.Node;
 
 import java.util.ArrayList;
 import java.util.Collection;
@@ -39,7 +40,8 @@ public class SpatialCoverage extends Base {
     }
 
     static List<String> getSpatialCoveragesControlled(Document ddm, CountryResolver countryResolver) {
-        return XPathEvaluator.strings(ddm, "/ddm:DDM/ddm:dcmiMetadata/dcterms:spatial")
+        return DdmIndex.of(ddm).dcmiMetadata("dcterms:spatial")
+            .map(Node::getTextContent)
             .map(String::trim)
             .distinct()
             .filter(countryResolver::isControlledValue)
@@ -47,7 +49,8 @@ public class SpatialCoverage extends Base {
     }
 
     static List<String> getSpatialCoveragesText(Document ddm, CountryResolver countryResolver) {
-        return XPathEvaluator.strings(ddm, "/ddm:DDM/ddm:dcmiMetadata/dcterms:spatial")
+        return DdmIndex.of(ddm).dcmiMetadata("dcterms:spatial")
+            .map(Node::getTextContent)
             .map(String::trim)
             .distinct()
             .filter(c -> !countryResolver.isControlledValue(c))
@@ -17,11 +17,12 @@ package nl.knaw.dans.vaultingest.core.mappings;
 
 import com.google.common.collect.Comparators;
 import nl.knaw.dans.vaultingest.core.deposit.Deposit;
-import nl.knaw.dans.vaultingest.core.xml.XPathEvaluator;
+import nl.knaw.dans.vaultingest.core.xml.DdmIndex;
 import org.apache.jena.rdf.model.Resource;
 import org.apache.jena.rdf.model.Statement;
 import org.apache.jena.vocabulary.DCTerms;
 import org.w3c.dom.Document;
+import org.w3c.dom.Node;
 
 import java.util.Collection;
 import java.util.HashMap;
@@ -60,8 +61,8 @@ public class Subjects extends Base {
 
     // CIT013
     static List<String> getSubjects(Document document) {
-        var results = XPathEvaluator.strings(document,
-                "/ddm:DDM/ddm:profile/ddm:audience")
+        var results = DdmIndex.of(document).profile("ddm:audience")
+            .map(Node::getTextContent)
             .map(Subjects::getSubject)
             .collect(Collectors.toSet());
 
@@ -17,10 +17,11 @@ package nl.knaw.dans.vaultingest.core.mappings;
 
 import nl.knaw.dans.vaultingest.core.deposit.Deposit;
 import nl.knaw.dans.vaultingest.core.mappings.vocabulary.DansTS;
-import nl.knaw.dans.vaultingest.core.xml.XPathEvaluator;
+import nl.knaw.dans.vaultingest.core.xml.DdmIndex;
 import org.apache.jena.rdf.model.Resource;
 import org.apache.jena.rdf.model.Statement;
 import org.w3c.dom.Document;
+import org.w3c.dom.Node;
 
 import java.util.Collection;
 import java.util.List;
@@ -32,7 +33,8 @@ public class TemporalCoverage extends Base {
     }
 
     static List<String> getTemporalCoverages(Document ddm) {
-        return XPathEvaluator.strings(ddm, "/ddm:DDM/ddm:dcmiMetadata/dcterms:temporal")
+        return DdmIndex.of(ddm).dcmiMetadata("dcterms:temporal")
+            .map(Node::getTextContent)
             .map(String::trim)
             .distinct()
             .collect(Collectors.toList());
@@ -18,92 +18,63 @@ package nl.knaw.dans.vaultingest.core.mappings;
 import nl.knaw.dans.vaultingest.core.deposit.Deposit;
 import nl.knaw.dans.vaultingest.core.deposit.DepositFile;
 import nl.knaw.dans.vaultingest.core.mappings.vocabulary.DVCore;
-import nl.knaw.dans.vaultingest.core.xml.XPathEvaluator;
 import org.apache.jena.rdf.model.Resource;
 import org.apache.jena.rdf.model.Statement;
 import org.w3c.dom.Document;
 
 import java.util.Collection;
 import java.util.List;
-import java.util.Objects;
-import java.util.Set;
 
 public class Terms extends Base {
 
-    public static List<Statement> toRDF(Resource resource, Deposit deposit) {
+    public static List<Statement> toRDF(Resource resource, Deposit deposit, AccessRights accessRights) {
 
         return toComplexTerms(resource, DVCore.fileTermsOfAccess, List.of(deposit), (element, value) -> {
-            var requestAccess = isRequestAccess(deposit.getDdm(), deposit.getPayloadFiles()) ? "Yes" : "No";
+            var requestAccess = isRequestAccess(accessRights) ? "Yes" : "No";
             element.addProperty(DVCore.fileRequestAccess, requestAccess);
 
             if ("No".equals(requestAccess)) {
-                var terms = getTermsOfAccess(deposit.getDdm(), deposit.getPayloadFiles());
+                var terms = getTermsOfAccess(accessRights);
 
                 if (terms != null) {
-                    element.addProperty(DVCore.termsOfAccess, getTermsOfAccess(deposit.getDdm(), deposit.getPayloadFiles()));
+                    element.addProperty(DVCore.termsOfAccess, terms);
                 }
             }
         });
     }
 
-    // false = no, true = yes
     static boolean isRequestAccess(Document ddm, Collection<DepositFile> files) {
-        // TRM002
-        var containsNone = false;
-
-        for (var file : files) {
-            var accessibleToRights = DataFile.getAccessibleToRights(file.getFilesXmlNode());
-
-            if ("NONE".equals(accessibleToRights)) {
-                containsNone = true;
-                break;
-            }
-        }
+        return isRequestAccess(new AccessRights(ddm, files));
+    }
 
-        if (containsNone) {
+    // false = no, true = yes
+    static boolean isRequestAccess(AccessRights accessRights) {
+        // TRM002
+        if (accessRights.containsNone()) {
             return false;
         }
 
         // TRM003
-        var accessRights = DataFile.getAccessRights(ddm);
-
-        return !"NO_ACCESS".equals(accessRights);
+        return !"NO_ACCESS".equals(accessRights.getDatasetAccessRights());
 
         // TRM004
     }
 
     static String getTermsOfAccess(Document ddm, Collection<DepositFile> files) {
-        // TRM005
-        var containsNone = false;
-
-        for (var file : files) {
-            var accessRights = DataFile.getAccessibleToRights(file.getFilesXmlNode());
-
-            if ("NONE".equals(accessRights)) {
-                containsNone = true;
-                break;
-            }
-        }
+        return getTermsOfAccess(new AccessRights(ddm, files));
+    }
 
-        var accessRights = XPathEvaluator.strings(ddm, "/ddm:DDM/ddm:dcmiMetadata/dcterms:accessRights")
-            .map(String::trim)
-            .findFirst()
-            .orElse(null);
+    static String getTermsOfAccess(AccessRights accessRights) {
+        var termsOfAccess = accessRights.getTermsOfAccess();
 
-        if (containsNone) {
-            return accessRights != null ? accessRights : "N/a";
+        // TRM005
+        if (accessRights.containsNone()) {
+            return termsOfAccess != null ? termsOfAccess : "N/a";
         }
 
         // TRM006
-        var knownOrRestrictive = Set.of("RESTRICTED_REQUEST", "KNOWN");
-
-        var accessibleToRights = files.stream()
-            .map(f -> DataFile.getAccessibleToRights(f.getFilesXmlNode()))
-            .filter(Objects::nonNull)
-            .anyMatch(knownOrRestrictive::contains);
-
-        if (accessibleToRights) {
-            return accessRights != null ? accessRights : "";
+        if (accessRights.containsKnownOrRestrictedRequest()) {
+            return termsOfAccess != null ? termsOfAccess : "";
         }
 
         return null;
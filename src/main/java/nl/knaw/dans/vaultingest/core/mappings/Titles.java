@@ -16,12 +16,13 @@
 package nl.knaw.dans.vaultingest.core.mappings;
 
 import nl.knaw.dans.vaultingest.core.deposit.Deposit;
-import nl.knaw.dans.vaultingest.core.xml.XPathEvaluator;
+import nl.knaw.dans.vaultingest.core.xml.DdmIndex;
 import org.apache.jena.rdf.model.Resource;
 import org.apache.jena.rdf.model.Statement;
 import org.apache.jena.vocabulary.DCTerms;
 import org.apache.jena.vocabulary.SchemaDO;
 import org.w3c.dom.Document;
+import org.w3c.dom.Node;
 
 import java.util.List;
 
@@ -32,7 +33,8 @@ public class Titles {
     }
 
     static String getTitle(Document ddm) {
-        return XPathEvaluator.strings(ddm, "/ddm:DDM/ddm:profile/dc:title")
+        return DdmIndex.of(ddm).profile("dc:title")
+            .map(Node::getTextContent)
             .map(String::trim)
             .findFirst()
             .orElse(null);
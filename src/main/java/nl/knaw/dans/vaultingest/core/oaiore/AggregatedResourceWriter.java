@@ -0,0 +1,80 @@
+/*
+ * Copyright (C) 2023 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.vaultingest.core.oaiore;
+
+import nl.knaw.dans.vaultingest.core.mappings.vocabulary.ORE;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.riot.system.StreamRDFBase;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+// Receives the aggregated resources from StreamingOaiOre and writes them one at a time; only the (distinct) triples of the
+// current resource are kept until its ore:aggregates triple arrives.
+abstract class AggregatedResourceWriter extends StreamRDFBase {
+    private final Node aggregation;
+    private final Set<Triple> triples = new LinkedHashSet<>();
+    private Node resource;
+
+    AggregatedResourceWriter(Node aggregation) {
+        // the aggregated resources are written next to the metadata written by Jena, which labels blank nodes as it likes
+        if (!aggregation.isURI()) {
+            throw new IllegalArgumentException(String.format("Aggregation must have a URI to be streamed: %s", aggregation));
+        }
+
+        this.aggregation = aggregation;
+    }
+
+    @Override
+    public void triple(Triple triple) {
+        if (triple.getSubject().equals(aggregation)) {
+            if (!triple.getPredicate().equals(ORE.aggregates.asNode()) || (resource != null && !resource.equals(triple.getObject()))) {
+                throw new IllegalArgumentException(String.format("Unexpected triple of the aggregation: %s", triple));
+            }
+
+            try {
+                writeAggregatedResource(triple.getObject(), triples);
+            }
+            catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+
+            triples.clear();
+            resource = null;
+        }
+        else {
+            if (resource != null && !resource.equals(triple.getSubject())) {
+                throw new IllegalArgumentException(String.format("The triples of %s are not followed by its ore:aggregates triple", resource));
+            }
+
+            resource = triple.getSubject();
+            triples.add(triple);
+        }
+    }
+
+    @Override
+    public void finish() {
+        if (resource != null) {
+            throw new IllegalStateException(String.format("The triples of %s are not followed by its ore:aggregates triple", resource));
+        }
+    }
+
+    protected abstract void writeAggregatedResource(Node resource, Collection<Triple> triples) throws IOException;
+}
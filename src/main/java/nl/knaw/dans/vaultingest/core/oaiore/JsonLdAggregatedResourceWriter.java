@@ -0,0 +1,212 @@
+/*
+ * Copyright (C) 2023 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.vaultingest.core.oaiore;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import nl.knaw.dans.vaultingest.core.mappings.vocabulary.ORE;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+// Writes the aggregated resources as the JSON-LD array of the aggregates of the aggregation (or null if there are none, like
+// Jena); the name of the field has already been written. Instead of framing all resources
+// at once, every object is filled in from a template: the JSON-LD that Jena writes for a resource with the same predicates,
+// types and datatypes, but with placeholder values. The files of a deposit have only a handful of such shapes, so Jena
+// frames a few tiny models instead of the whole aggregation.
+class JsonLdAggregatedResourceWriter extends AggregatedResourceWriter {
+    private final ObjectMapper objectMapper;
+    private final JsonGenerator generator;
+    private final Node aggregation;
+    private final Model templateModel;
+    private final Function<Model, JsonNode> frame;
+    private final String placeholder = UUID.randomUUID().toString();
+    private final Map<List<String>, Template> templates = new HashMap<>();
+    private boolean started;
+
+    // templateModel: the resource map and the aggregation without metadata; frame: writes a model like the document
+    JsonLdAggregatedResourceWriter(ObjectMapper objectMapper, JsonGenerator generator, Node aggregation, Model templateModel, Function<Model, JsonNode> frame) {
+        super(aggregation);
+        this.objectMapper = objectMapper;
+        this.generator = generator;
+        this.aggregation = aggregation;
+        this.templateModel = templateModel;
+        this.frame = frame;
+    }
+
+    @Override
+    protected void writeAggregatedResource(Node resource, Collection<Triple> triples) throws IOException {
+        var sorted = triples.stream()
+            .sorted(Comparator.comparing(JsonLdAggregatedResourceWriter::getShape))
+            .collect(Collectors.toList());
+
+        var shape = sorted.stream()
+            .map(JsonLdAggregatedResourceWriter::getShape)
+            .collect(Collectors.toList());
+
+        var template = templates.computeIfAbsent(shape, s -> createTemplate(sorted));
+
+        // the values in the order of the placeholders: the resource and then the literals
+        var values = new ArrayList<String>();
+        values.add(uri(resource));
+
+        for (var triple : sorted) {
+            if (triple.getObject().isLiteral()) {
+                values.add(triple.getObject().getLiteralLexicalForm());
+            }
+        }
+
+        if (!started) {
+            generator.writeStartArray();
+            started = true;
+        }
+
+        write(template.node, template.placeholders, values);
+    }
+
+    @Override
+    public void finish() {
+        super.finish();
+
+        try {
+            if (started) {
+                generator.writeEndArray();
+            }
+            else {
+                generator.writeNull();
+            }
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private Template createTemplate(List<Triple> triples) {
+        var placeholders = new HashMap<String, Integer>();
+        var resource = NodeFactory.createURI("urn:uuid:" + placeholder);
+        placeholders.put(resource.getURI(), 0);
+
+        var model = ModelFactory.createDefaultModel()
+            .setNsPrefixes(templateModel)
+            .add(templateModel);
+
+        var graph = model.getGraph();
+        graph.add(Triple.create(aggregation, ORE.aggregates.asNode(), resource));
+
+        for (var triple : triples) {
+            var object = triple.getObject();
+
+            if (object.isLiteral()) {
+                var value = placeholder + "-" + placeholders.size();
+                placeholders.put(value, placeholders.size());
+                object = NodeFactory.createLiteral(value, object.getLiteralLanguage(), object.getLiteralDatatype());
+            }
+
+            graph.add(Triple.create(resource, triple.getPredicate(), object));
+        }
+
+        var document = frame.apply(model);
+        var aggregationNode = OaiOreSerializer.findNode(document, aggregation.getURI());
+
+        if (aggregationNode != null) {
+            var aggregates = aggregationNode.path(OaiOreSerializer.AGGREGATES);
+            var node = aggregates.isArray() && aggregates.size() == 1 ? aggregates.get(0) : aggregates;
+
+            if (resource.getURI().equals(node.path("@id").asText(null))) {
+                return new Template(node, placeholders);
+            }
+        }
+
+        throw new IllegalStateException(String.format("The aggregated resource is not embedded in the aggregation: %s", document));
+    }
+
+    private void write(JsonNode node, Map<String, Integer> placeholders, List<String> values) throws IOException {
+        if (node.isObject()) {
+            generator.writeStartObject();
+
+            for (var fields = node.fields(); fields.hasNext(); ) {
+                var field = fields.next();
+                generator.writeFieldName(field.getKey());
+                write(field.getValue(), placeholders, values);
+            }
+
+            generator.writeEndObject();
+        }
+        else if (node.isArray()) {
+            generator.writeStartArray();
+
+            for (var element : node) {
+                write(element, placeholders, values);
+            }
+
+            generator.writeEndArray();
+        }
+        else if (node.isTextual() && placeholders.containsKey(node.textValue())) {
+            generator.writeString(values.get(placeholders.get(node.textValue())));
+        }
+        else {
+            objectMapper.writeTree(generator, node);
+        }
+    }
+
+    // the predicate and everything of the object that is not replaced by a placeholder
+    private static String getShape(Triple triple) {
+        var object = triple.getObject();
+
+        if (object.isURI()) {
+            return triple.getPredicate().getURI() + " <" + object.getURI() + ">";
+        }
+        else if (object.isLiteral()) {
+            return triple.getPredicate().getURI() + " \"@" + object.getLiteralLanguage() + "^^" + object.getLiteralDatatypeURI();
+        }
+
+        throw new IllegalArgumentException(String.format("Blank nodes are not supported in aggregated resources: %s", triple));
+    }
+
+    private static String uri(Node node) {
+        if (!node.isURI()) {
+            throw new IllegalArgumentException(String.format("Aggregated resources must be URIs: %s", node));
+        }
+
+        return node.getURI();
+    }
+
+    private static class Template {
+        private final JsonNode node;
+        // placeholder -> index of its value
+        private final Map<String, Integer> placeholders;
+
+        private Template(JsonNode node, Map<String, Integer> placeholders) {
+            this.node = node;
+            this.placeholders = placeholders;
+        }
+    }
+}
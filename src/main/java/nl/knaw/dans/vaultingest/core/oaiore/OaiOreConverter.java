@@ -19,6 +19,7 @@ import nl.knaw.dans.vaultingest.core.deposit.CountryResolver;
 import nl.knaw.dans.vaultingest.core.deposit.Deposit;
 import nl.knaw.dans.vaultingest.core.deposit.DepositFile;
 import nl.knaw.dans.vaultingest.core.deposit.LanguageResolver;
+import nl.knaw.dans.vaultingest.core.mappings.AccessRights;
 import nl.knaw.dans.vaultingest.core.mappings.AlternativeTitles;
 import nl.knaw.dans.vaultingest.core.mappings.Audiences;
 import nl.knaw.dans.vaultingest.core.mappings.Authors;
@@ -48,15 +49,19 @@ import nl.knaw.dans.vaultingest.core.mappings.Terms;
 import nl.knaw.dans.vaultingest.core.mappings.Titles;
 import nl.knaw.dans.vaultingest.core.mappings.VaultMetadata;
 import nl.knaw.dans.vaultingest.core.mappings.vocabulary.ORE;
+import org.apache.jena.graph.Triple;
 import org.apache.jena.rdf.model.Model;
 import org.apache.jena.rdf.model.ModelFactory;
 import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.riot.system.StreamRDF;
+import org.apache.jena.riot.system.StreamRDFLib;
 import org.apache.jena.sparql.vocabulary.FOAF;
 import org.apache.jena.vocabulary.DCTerms;
 import org.apache.jena.vocabulary.RDF;
-import org.apache.jena.vocabulary.SchemaDO;
 
 import java.time.OffsetDateTime;
+import java.util.HashSet;
+import java.util.Set;
 
 public class OaiOreConverter {
 
@@ -69,10 +74,45 @@ public class OaiOreConverter {
     }
 
     public Model convert(Deposit deposit) {
-        var model = ModelFactory.createDefaultModel();
+        var model = createModel();
+        var accessRights = AccessRights.of(deposit);
+
+        convert(deposit, model, accessRights, true);
+
+        return model;
+    }
+
+    // Converts the metadata of the deposit only; its aggregated resources, which make up most of the OAI-ORE of a deposit with
+    // many files, are produced one file at a time while the document is written (see OaiOreSerializer)
+    public StreamingOaiOre convertForStreaming(Deposit deposit) {
+        var model = createModel();
+        var accessRights = AccessRights.of(deposit);
+        var aggregation = convert(deposit, model, accessRights, false);
+
+        return new StreamingOaiOre(model, aggregation, stream -> sendAggregatedResources(deposit, aggregation, accessRights, stream),
+            getAggregatedResourceNamespaces(deposit));
+    }
+
+    // The namespaces used by sendAggregatedResources: the type and ore:aggregates, and the properties of the files
+    private Set<String> getAggregatedResourceNamespaces(Deposit deposit) {
+        if (deposit.getPayloadFiles() == null || deposit.getPayloadFiles().isEmpty()) {
+            return Set.of();
+        }
+
+        var namespaces = new HashSet<>(DataFile.NAMESPACES);
+        namespaces.add(ORE.NS);
+        return namespaces;
+    }
+
+    // The model has the prefixes of OaiOreSerializer from the start, so serializing it does not change it
+    private Model createModel() {
+        return ModelFactory.createDefaultModel()
+            .setNsPrefixes(OaiOreSerializer.getNamespaces());
+    }
 
+    private Resource convert(Deposit deposit, Model model, AccessRights accessRights, boolean withAggregatedResources) {
         var resourceMap = createResourceMap(deposit, model);
-        var resource = createAggregation(deposit, model);
+        var resource = createAggregation(deposit, model, accessRights, withAggregatedResources);
 
         model.add(Titles.toRDF(resource, deposit));
         AlternativeTitles.toRDF(resource, deposit)
@@ -102,7 +142,6 @@ public class OaiOreConverter {
 
         model.add(RightsHolders.toRDF(resource, deposit));
         model.add(PersonalData.toRDF(resource, deposit));
-        model.add(Languages.toRDF(resource, deposit, languageResolver));
 
         model.add(Audiences.toRDF(resource, deposit));
         model.add(InCollection.toRDF(resource, deposit));
@@ -115,7 +154,7 @@ public class OaiOreConverter {
         model.add(MetadataLanguages.toRDF(resource, deposit, languageResolver));
         License.toRDF(resource, deposit).ifPresent(model::add);
 
-        model.add(Terms.toRDF(resource, deposit));
+        model.add(Terms.toRDF(resource, deposit, accessRights));
 
         model.add(model.createStatement(
             resourceMap,
@@ -123,7 +162,7 @@ public class OaiOreConverter {
             resource
         ));
 
-        return model;
+        return resource;
     }
 
     Resource createResourceMap(Deposit deposit, Model model) {
@@ -153,32 +192,36 @@ public class OaiOreConverter {
         return resourceMap;
     }
 
-    Resource createAggregatedResource(Model model, DepositFile depositFile) {
-        var resource = model.createResource("urn:uuid:" + depositFile.getId());
+    // Sends the triples of each aggregated resource, followed by the ore:aggregates triple that links it to the aggregation
+    void sendAggregatedResources(Deposit deposit, Resource aggregation, AccessRights accessRights, StreamRDF stream) {
+        if (deposit.getPayloadFiles() == null) {
+            return;
+        }
 
-        model.add(model.createStatement(resource, RDF.type, ORE.AggregatedResource));
-        model.add(model.createStatement(resource, SchemaDO.name, depositFile.getPath().toString()));
-        model.add(DataFile.toRDF(resource, depositFile));
+        // the statements are only created, not added, so the model stays empty
+        var model = ModelFactory.createDefaultModel();
 
-        return resource;
+        for (var file : deposit.getPayloadFiles()) {
+            var resource = model.createResource("urn:uuid:" + file.getId());
+
+            stream.triple(Triple.create(resource.asNode(), RDF.type.asNode(), ORE.AggregatedResource.asNode()));
+
+            for (var statement : DataFile.toRDF(resource, file, accessRights)) {
+                stream.triple(statement.asTriple());
+            }
+
+            stream.triple(Triple.create(aggregation.asNode(), ORE.aggregates.asNode(), resource.asNode()));
+        }
     }
 
-    Resource createAggregation(Deposit deposit, Model model) {
+    Resource createAggregation(Deposit deposit, Model model, AccessRights accessRights, boolean withAggregatedResources) {
         var resource = model.createResource(deposit.getNbn());
         var type = model.createStatement(resource, RDF.type, ORE.Aggregation);
 
         model.add(type);
 
-        if (deposit.getPayloadFiles() != null) {
-            for (var file : deposit.getPayloadFiles()) {
-                var fileResource = createAggregatedResource(model, file);
-
-                model.add(model.createStatement(
-                    resource,
-                    ORE.aggregates,
-                    fileResource
-                ));
-            }
+        if (withAggregatedResources) {
+            sendAggregatedResources(deposit, resource, accessRights, StreamRDFLib.graph(model.getGraph()));
         }
 
         return resource;
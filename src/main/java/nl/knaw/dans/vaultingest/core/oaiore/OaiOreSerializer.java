@@ -15,7 +15,9 @@
  */
 package nl.knaw.dans.vaultingest.core.oaiore;
 
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.extern.slf4j.Slf4j;
 import nl.knaw.dans.vaultingest.core.mappings.vocabulary.DVCitation;
@@ -30,26 +32,38 @@ import nl.knaw.dans.vaultingest.core.mappings.vocabulary.ORE;
 import nl.knaw.dans.vaultingest.core.mappings.vocabulary.PROV;
 import org.apache.jena.query.DatasetFactory;
 import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.rdf.model.RDFNode;
 import org.apache.jena.rdf.model.Resource;
 import org.apache.jena.riot.RDFFormat;
 import org.apache.jena.riot.RDFWriter;
 import org.apache.jena.riot.SysRIOT;
+import org.apache.jena.riot.system.StreamRDF;
 import org.apache.jena.riot.writer.JsonLD10Writer;
 import org.apache.jena.sparql.util.Context;
 import org.apache.jena.sparql.vocabulary.FOAF;
 import org.apache.jena.vocabulary.DCTerms;
 import org.apache.jena.vocabulary.DC_11;
+import org.apache.jena.vocabulary.RDF;
 import org.apache.jena.vocabulary.SchemaDO;
 
+import java.io.BufferedWriter;
 import java.io.ByteArrayOutputStream;
-import java.io.StringWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 @Slf4j
 public class OaiOreSerializer {
+    // the name of the aggregated resources in the JSON-LD frame
+    static final String AGGREGATES = "aggregates";
 
     private final ObjectMapper objectMapper;
 
@@ -57,7 +71,8 @@ public class OaiOreSerializer {
         this.objectMapper = objectMapper;
     }
 
-    public String serializeAsRdf(Model model) {
+    // Writes RDF/XML (in UTF-8) to the output stream, without building the document in memory first. The stream is not closed.
+    public void serializeAsRdf(Model model, OutputStream outputStream) {
         var topLevelResources = new Resource[] {
             ORE.AggregatedResource,
             ORE.Aggregation,
@@ -70,48 +85,192 @@ public class OaiOreSerializer {
         properties.put("prettyTypes", topLevelResources);
         properties.put("showXmlDeclaration", "true");
 
-        var output = new ByteArrayOutputStream();
-
         RDFWriter.create()
             .format(RDFFormat.RDFXML_ABBREV)
             .set(SysRIOT.sysRdfWriterProperties, properties)
             .source(model)
-            .output(output);
+            .output(outputStream);
+    }
+
+    // Writes JSON-LD (in UTF-8) to the output stream. The stream is not closed.
+    public void serializeAsJsonLd(Model model, OutputStream outputStream) {
+        applyNamespaces(model);
+        writeJsonLd(model, getFrame(getUsedNamespaces(model)), outputStream);
+    }
+
+    // Writes RDF/XML like serializeAsRdf(Model, OutputStream), except that the aggregated resources are written while they are
+    // produced. Jena writes the document for the metadata; the aggregated resources are added before its closing tag.
+    public void serializeAsRdf(StreamingOaiOre oaiOre, OutputStream outputStream) throws IOException {
+        var metadata = oaiOre.getMetadata();
+        var document = new ByteArrayOutputStream();
+        serializeAsRdf(metadata, document);
+
+        var rdf = document.toString(StandardCharsets.UTF_8);
+        var end = rdf.lastIndexOf("</rdf:RDF>");
+
+        if (end < 0) {
+            throw new IllegalStateException("Jena did not write an rdf:RDF element");
+        }
+
+        var writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+        writer.write(rdf, 0, end);
+        sendAggregatedResources(oaiOre, new RdfXmlAggregatedResourceWriter(writer, oaiOre.getAggregation().asNode(), metadata));
+        writer.write(rdf, end, rdf.length() - end);
+        writer.flush();
+    }
+
+    // Writes JSON-LD like serializeAsJsonLd(Model, OutputStream), except that the aggregated resources are written while they
+    // are produced. Jena frames the metadata; the aggregated resources are added to the aggregation in it.
+    public void serializeAsJsonLd(StreamingOaiOre oaiOre, OutputStream outputStream) throws IOException {
+        var metadata = oaiOre.getMetadata();
+        var aggregation = oaiOre.getAggregation();
+
+        applyNamespaces(metadata);
+
+        var frame = getFrame(getUsedNamespaces(oaiOre));
+        var document = frame(metadata, frame);
+        var aggregationNode = findNode(document, aggregation.getURI());
+
+        if (aggregationNode == null) {
+            throw new IllegalStateException(String.format("Jena did not write the aggregation %s", aggregation.getURI()));
+        }
+
+        try (var generator = objectMapper.getFactory().createGenerator(outputStream)) {
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            generator.useDefaultPrettyPrinter();
+
+            var writer = new JsonLdAggregatedResourceWriter(objectMapper, generator, aggregation.asNode(), getTemplateModel(metadata, aggregation),
+                model -> frame(model, frame));
+
 
-        return output.toString();
+            writeJson(generator, document, aggregationNode, oaiOre, writer);
+        }
+
+        // like Jena
+        outputStream.write('\n');
+    }
+
+    // The node with the given @id in a JSON-LD document, or null
+    static JsonNode findNode(JsonNode node, String id) {
+        if (node.isObject() && id.equals(node.path("@id").asText(null))) {
+            return node;
+        }
+
+        for (var child : node) {
+            var result = findNode(child, id);
+
+            if (result != null) {
+                return result;
+            }
+        }
+
+        return null;
+    }
+
+    private void writeJson(JsonGenerator generator, JsonNode node, JsonNode aggregationNode, StreamingOaiOre oaiOre, StreamRDF aggregatedResources)
+        throws IOException {
+        if (node.isObject()) {
+            var aggregatesWritten = false;
+            generator.writeStartObject();
+
+            for (var fields = node.fields(); fields.hasNext(); ) {
+                var field = fields.next();
+                generator.writeFieldName(field.getKey());
+
+                // the frame has no aggregated resources to embed, so Jena writes null in their place
+                if (node == aggregationNode && AGGREGATES.equals(field.getKey()) && field.getValue().isNull()) {
+                    sendAggregatedResources(oaiOre, aggregatedResources);
+                    aggregatesWritten = true;
+                }
+                else {
+                    writeJson(generator, field.getValue(), aggregationNode, oaiOre, aggregatedResources);
+                }
+            }
+
+            if (node == aggregationNode && !aggregatesWritten) {
+                generator.writeFieldName(AGGREGATES);
+                sendAggregatedResources(oaiOre, aggregatedResources);
+            }
+
+            generator.writeEndObject();
+        }
+        else if (node.isArray()) {
+            generator.writeStartArray();
+
+            for (var element : node) {
+                writeJson(generator, element, aggregationNode, oaiOre, aggregatedResources);
+            }
+
+            generator.writeEndArray();
+        }
+        else {
+            objectMapper.writeTree(generator, node);
+        }
     }
 
-    public String serializeAsJsonLd(Model model) {
+    private void sendAggregatedResources(StreamingOaiOre oaiOre, StreamRDF stream) throws IOException {
+        try {
+            stream.start();
+            oaiOre.sendAggregatedResources(stream);
+            stream.finish();
+        }
+        catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    // The smallest model that is framed like the whole document: the resource map and the aggregation that it describes
+    private Model getTemplateModel(Model metadata, Resource aggregation) {
+        var model = ModelFactory.createDefaultModel()
+            .setNsPrefixes(metadata);
+
+        for (var statement : metadata.listStatements(null, ORE.describes, aggregation).toList()) {
+            model.add(statement);
+            model.add(metadata.listStatements(statement.getSubject(), RDF.type, (RDFNode) null));
+        }
+
+        model.add(metadata.listStatements(aggregation, RDF.type, (RDFNode) null));
+        return model;
+    }
+
+    private JsonNode frame(Model model, String frame) {
+        var output = new ByteArrayOutputStream();
+        writeJsonLd(model, frame, output);
+
+        try {
+            return objectMapper.readTree(output.toByteArray());
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void writeJsonLd(Model model, String frame, OutputStream outputStream) {
         var context = new Context();
+        context.set(JsonLD10Writer.JSONLD_FRAME, frame);
 
-        applyNamespaces(model);
+        var writer = RDFWriter.create()
+            .format(RDFFormat.JSONLD10_FRAME_PRETTY)
+            .source(DatasetFactory.wrap(model).asDatasetGraph())
+            .context(context)
+            .build();
+
+        writer.output(outputStream);
+    }
 
-        var namespaces = namespacesAsJsonObject(getUsedNamespaces(model));
-        var contextStr = "{ \"@context\": [\n" +
+    private String getFrame(Map<String, String> namespaces) {
+        return "{ \"@context\": [\n" +
             "    \"https://w3id.org/ore/context\",\n" +
-            namespaces +
+            namespacesAsJsonObject(namespaces) +
             "  ],\n" +
             "\n" +
             "   \"describes\": {\n" +
             "     \"@type\": \"Aggregation\",\n" +
             "     \"isDescribedBy\":  { \"@embed\": false } ,\n" +
-            "     \"aggregates\":  { \"@embed\": true }  ,\n" +
+            "     \"" + AGGREGATES + "\":  { \"@embed\": true }  ,\n" +
             "     \"proxies\":  { \"@embed\": true }\n" +
             "   }\n" +
             " }";
-
-        context.set(JsonLD10Writer.JSONLD_FRAME, contextStr);
-
-        var writer = RDFWriter.create()
-            .format(RDFFormat.JSONLD10_FRAME_PRETTY)
-            .source(DatasetFactory.wrap(model).asDatasetGraph())
-            .context(context)
-            .build();
-
-        var outputWriter = new StringWriter();
-        writer.output(outputWriter);
-
-        return outputWriter.toString();
     }
 
     private String namespacesAsJsonObject(Map<String, String> namespaces) {
@@ -124,7 +283,8 @@ public class OaiOreSerializer {
         }
     }
 
-    private Map<String, String> getNamespaces() {
+    // the prefixes of both serializations
+    static Map<String, String> getNamespaces() {
         var namespaces = new HashMap<String, String>();
         namespaces.put("cit", DVCitation.NS);
         namespaces.put("dcterms", DCTerms.NS);
@@ -148,6 +308,19 @@ public class OaiOreSerializer {
         var usedNamespaces = new HashSet<String>();
         model.listNameSpaces().forEachRemaining(usedNamespaces::add);
 
+        return getNamespaces(usedNamespaces);
+    }
+
+    // Like getUsedNamespaces(Model) for the metadata and the aggregated resources together, without producing the aggregated
+    // resources; the frame is needed before they are written
+    private Map<String, String> getUsedNamespaces(StreamingOaiOre oaiOre) {
+        var usedNamespaces = new HashSet<>(oaiOre.getAggregatedResourceNamespaces());
+        oaiOre.getMetadata().listNameSpaces().forEachRemaining(usedNamespaces::add);
+
+        return getNamespaces(usedNamespaces);
+    }
+
+    private Map<String, String> getNamespaces(Set<String> usedNamespaces) {
         return getNamespaces()
             .entrySet().stream()
             .filter(e -> usedNamespaces.contains(e.getValue()))
@@ -158,7 +331,10 @@ public class OaiOreSerializer {
         var namespaces = getNamespaces();
 
         for (var namespace : namespaces.entrySet()) {
-            model.setNsPrefix(namespace.getKey(), namespace.getValue());
+            // the models of OaiOreConverter already have them; these are left unchanged, so they can be serialized by several threads
+            if (!namespace.getValue().equals(model.getNsPrefixURI(namespace.getKey()))) {
+                model.setNsPrefix(namespace.getKey(), namespace.getValue());
+            }
         }
     }
 }
@@ -0,0 +1,158 @@
+/*
+ * Copyright (C) 2023 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.vaultingest.core.oaiore;
+
+import nl.knaw.dans.vaultingest.core.mappings.vocabulary.ORE;
+import org.apache.jena.datatypes.xsd.XSDDatatype;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.rdf.model.impl.Util;
+import org.apache.jena.shared.PrefixMapping;
+import org.apache.jena.vocabulary.RDF;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.util.Collection;
+
+// Writes the aggregated resources as RDF/XML inside an rdf:Description of the aggregation, each nested in an ore:aggregates
+// element. The rest of the document, including the declarations of the prefixes, is written by Jena.
+class RdfXmlAggregatedResourceWriter extends AggregatedResourceWriter {
+    private final Writer writer;
+    private final Node aggregation;
+    private final PrefixMapping prefixes;
+    private boolean started;
+
+    RdfXmlAggregatedResourceWriter(Writer writer, Node aggregation, PrefixMapping prefixes) {
+        super(aggregation);
+        this.writer = writer;
+        this.aggregation = aggregation;
+        this.prefixes = prefixes;
+    }
+
+    @Override
+    protected void writeAggregatedResource(Node resource, Collection<Triple> triples) throws IOException {
+        if (!started) {
+            writer.write("  <rdf:Description rdf:about=\"" + attribute(aggregation.getURI()) + "\">\n");
+            started = true;
+        }
+
+        writer.write("    <" + startTag(ORE.aggregates.getURI()) + ">\n");
+
+        // like the prettyTypes of Jena's writer, the resource becomes a typed element if one of its types has a prefix
+        var type = triples.stream()
+            .filter(triple -> triple.getPredicate().equals(RDF.type.asNode()) && triple.getObject().isURI())
+            .filter(triple -> prefixes.getNsURIPrefix(namespace(triple.getObject().getURI())) != null)
+            .findFirst()
+            .orElse(null);
+
+        var element = type != null ? startTag(type.getObject().getURI()) : "rdf:Description";
+        writer.write("      <" + element + " rdf:about=\"" + attribute(uri(resource)) + "\">\n");
+
+        for (var triple : triples) {
+            if (triple != type) {
+                writeProperty(triple);
+            }
+        }
+
+        writer.write("      </" + element + ">\n");
+        writer.write("    </" + endTag(ORE.aggregates.getURI()) + ">\n");
+    }
+
+    @Override
+    public void finish() {
+        super.finish();
+
+        try {
+            if (started) {
+                writer.write("  </rdf:Description>\n");
+            }
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void writeProperty(Triple triple) throws IOException {
+        var predicate = triple.getPredicate().getURI();
+        var object = triple.getObject();
+
+        if (object.isURI()) {
+            writer.write("        <" + startTag(predicate) + " rdf:resource=\"" + attribute(object.getURI()) + "\"/>\n");
+        }
+        else if (object.isLiteral()) {
+            var attributes = "";
+
+            if (!object.getLiteralLanguage().isEmpty()) {
+                attributes = " xml:lang=\"" + attribute(object.getLiteralLanguage()) + "\"";
+            }
+            else if (!XSDDatatype.XSDstring.getURI().equals(object.getLiteralDatatypeURI())) {
+                attributes = " rdf:datatype=\"" + attribute(object.getLiteralDatatypeURI()) + "\"";
+            }
+
+            writer.write("        <" + startTag(predicate) + attributes + ">"
+                + Util.substituteEntitiesInElementContent(object.getLiteralLexicalForm())
+                + "</" + endTag(predicate) + ">\n");
+        }
+        else {
+            throw new IllegalArgumentException(String.format("Blank nodes are not supported in aggregated resources: %s", triple));
+        }
+    }
+
+    // prefix:name, or the name with a default namespace declaration if the namespace has no prefix
+    private String startTag(String uri) {
+        var prefix = prefixes.getNsURIPrefix(namespace(uri));
+
+        return prefix != null
+            ? prefix + ":" + localName(uri)
+            : localName(uri) + " xmlns=\"" + attribute(namespace(uri)) + "\"";
+    }
+
+    private String endTag(String uri) {
+        var prefix = prefixes.getNsURIPrefix(namespace(uri));
+        return prefix != null ? prefix + ":" + localName(uri) : localName(uri);
+    }
+
+    private static String namespace(String uri) {
+        return uri.substring(0, split(uri));
+    }
+
+    private static String localName(String uri) {
+        return uri.substring(split(uri));
+    }
+
+    private static int split(String uri) {
+        var index = Util.splitNamespaceXML(uri);
+
+        if (index == uri.length()) {
+            throw new IllegalArgumentException(String.format("Cannot write %s as an XML element name", uri));
+        }
+
+        return index;
+    }
+
+    private static String uri(Node node) {
+        if (!node.isURI()) {
+            throw new IllegalArgumentException(String.format("Aggregated resources must be URIs: %s", node));
+        }
+
+        return node.getURI();
+    }
+
+    private static String attribute(String value) {
+        return Util.substituteStandardEntities(value);
+    }
+}
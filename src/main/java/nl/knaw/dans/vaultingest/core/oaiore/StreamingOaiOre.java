@@ -0,0 +1,70 @@
+/*
+ * Copyright (C) 2023 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.vaultingest.core.oaiore;
+
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.riot.system.StreamRDF;
+import org.apache.jena.riot.system.StreamRDFLib;
+
+import java.util.Set;
+import java.util.function.Consumer;
+
+// The OAI-ORE of a deposit with the metadata in a Model, but without its aggregated resources. These are produced again every
+// time they are sent to a stream, so a serialization only holds the triples of one aggregated resource at a time.
+public class StreamingOaiOre {
+    private final Model metadata;
+    private final Resource aggregation;
+    private final Consumer<StreamRDF> aggregatedResources;
+    private final Set<String> aggregatedResourceNamespaces;
+
+    StreamingOaiOre(Model metadata, Resource aggregation, Consumer<StreamRDF> aggregatedResources, Set<String> aggregatedResourceNamespaces) {
+        this.metadata = metadata;
+        this.aggregation = aggregation;
+        this.aggregatedResources = aggregatedResources;
+        this.aggregatedResourceNamespaces = aggregatedResourceNamespaces;
+    }
+
+    public Model getMetadata() {
+        return metadata;
+    }
+
+    public Resource getAggregation() {
+        return aggregation;
+    }
+
+    // The namespaces of the predicates and types of the aggregated resources, so a serialization can declare them without
+    // producing the aggregated resources first
+    public Set<String> getAggregatedResourceNamespaces() {
+        return aggregatedResourceNamespaces;
+    }
+
+    // For each aggregated resource its triples are sent, followed by the ore:aggregates triple that links it to the aggregation
+    public void sendAggregatedResources(StreamRDF stream) {
+        aggregatedResources.accept(stream);
+    }
+
+    // The metadata together with all aggregated resources, like OaiOreConverter.convert
+    public Model toModel() {
+        var model = ModelFactory.createDefaultModel()
+            .setNsPrefixes(metadata)
+            .add(metadata);
+
+        sendAggregatedResources(StreamRDFLib.graph(model.getGraph()));
+        return model;
+    }
+}
@@ -25,6 +25,8 @@ import nl.knaw.dans.vaultingest.core.oaiore.OaiOreSerializer;
 import nl.knaw.dans.vaultingest.core.pidmapping.PidMappingConverter;
 import nl.knaw.dans.vaultingest.core.pidmapping.PidMappingSerializer;
 
+import java.util.concurrent.ExecutorService;
+
 public class DefaultRdaBagWriterFactory implements RdaBagWriterFactory {
 
     private final DataciteSerializer dataciteSerializer;
@@ -34,14 +36,27 @@ public class DefaultRdaBagWriterFactory implements RdaBagWriterFactory {
     private final DataciteConverter dataciteConverter;
     private final PidMappingConverter pidMappingConverter;
     private final OaiOreConverter oaiOreConverter;
+    private final ChecksumVerificationPolicy checksumVerificationPolicy;
+    private final PayloadReader payloadReader;
+    private final int oaiOreStreamingThreshold;
+    private final ExecutorService metadataExecutor;
 
     public DefaultRdaBagWriterFactory(ObjectMapper objectMapper, LanguageResolver languageResolver, CountryResolver countryResolver) {
+        this(objectMapper, languageResolver, countryResolver, ChecksumVerificationPolicy.VERIFY_CHEAPEST, new PayloadReader(), 0, null);
+    }
+
+    public DefaultRdaBagWriterFactory(ObjectMapper objectMapper, LanguageResolver languageResolver, CountryResolver countryResolver,
+        ChecksumVerificationPolicy checksumVerificationPolicy, PayloadReader payloadReader, int oaiOreStreamingThreshold, ExecutorService metadataExecutor) {
         this.dataciteSerializer = new DataciteSerializer();
         this.pidMappingSerializer = new PidMappingSerializer();
         this.oaiOreSerializer = new OaiOreSerializer(objectMapper);
         this.dataciteConverter = new DataciteConverter();
         this.pidMappingConverter = new PidMappingConverter();
         this.oaiOreConverter = new OaiOreConverter(languageResolver, countryResolver);
+        this.checksumVerificationPolicy = checksumVerificationPolicy;
+        this.payloadReader = payloadReader;
+        this.oaiOreStreamingThreshold = oaiOreStreamingThreshold;
+        this.metadataExecutor = metadataExecutor;
     }
 
     @Override
@@ -52,7 +67,11 @@ public class DefaultRdaBagWriterFactory implements RdaBagWriterFactory {
             oaiOreSerializer,
             dataciteConverter,
             pidMappingConverter,
-            oaiOreConverter
+            oaiOreConverter,
+            checksumVerificationPolicy,
+            payloadReader,
+            oaiOreStreamingThreshold,
+            metadataExecutor
         );
     }
 }
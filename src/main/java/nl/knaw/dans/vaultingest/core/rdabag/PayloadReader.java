@@ -0,0 +1,177 @@
+/*
+ * Copyright (C) 2023 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.vaultingest.core.rdabag;
+
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import lombok.extern.slf4j.Slf4j;
+import nl.knaw.dans.vaultingest.core.deposit.DepositFile;
+import nl.knaw.dans.vaultingest.core.rdabag.output.ChannelInputStream;
+import nl.knaw.dans.vaultingest.core.rdabag.output.PipelinedInputStream;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+// Decides how payload files are read while they are written to the bag, and measures how fast that goes
+@Slf4j
+public class PayloadReader {
+    private static final int DEFAULT_BUFFER_SIZE = 8192;
+
+    private final PayloadReadStrategy readStrategy;
+    private final int bufferSize;
+    private final Executor readAheadExecutor;
+    private final int readAheadBuffers;
+    private final long prefetchSize;
+    private final Meter bytesRead;
+    // bytes per second per file, counting only the time spent waiting for the file system
+    private final Histogram readThroughput;
+
+    // reads payload files on the thread that writes the bag
+    public PayloadReader() {
+        this(PayloadReadStrategy.BUFFERED, DEFAULT_BUFFER_SIZE, null, 0, 0, new MetricRegistry());
+    }
+
+    public PayloadReader(Executor readAheadExecutor, int readAheadBuffers, int bufferSize) {
+        this(PayloadReadStrategy.BUFFERED, bufferSize, readAheadExecutor, readAheadBuffers, 0, new MetricRegistry());
+    }
+
+    public PayloadReader(PayloadReadStrategy readStrategy, int bufferSize, Executor readAheadExecutor, int readAheadBuffers, long prefetchSize,
+        MetricRegistry metricRegistry) {
+        this.readStrategy = readStrategy;
+        this.bufferSize = bufferSize;
+        this.readAheadExecutor = readAheadExecutor;
+        this.readAheadBuffers = readAheadBuffers;
+        this.prefetchSize = prefetchSize;
+        this.bytesRead = metricRegistry.meter(MetricRegistry.name(PayloadReader.class, "bytes-read"));
+        this.readThroughput = metricRegistry.histogram(MetricRegistry.name(PayloadReader.class, "read-throughput"));
+    }
+
+    public InputStream open(DepositFile file) throws IOException {
+        InputStream inputStream;
+
+        if (readStrategy == PayloadReadStrategy.CHANNEL) {
+            inputStream = new ChannelInputStream(FileChannel.open(file.getPhysicalPath(), StandardOpenOption.READ), bufferSize);
+        }
+        else {
+            inputStream = file.openInputStream(bufferSize);
+        }
+
+        return new MeteredInputStream(inputStream);
+    }
+
+    // Returns a stream that reads (and digests) the payload ahead on another thread, so reading overlaps with compressing and
+    // writing, or the stream itself if read-ahead is disabled.
+    public InputStream readAhead(InputStream inputStream) {
+        if (readAheadExecutor == null || readAheadBuffers < 2) {
+            return inputStream;
+        }
+
+        return new PipelinedInputStream(inputStream, readAheadExecutor, readAheadBuffers, bufferSize);
+    }
+
+    // Starts reading the beginning of a file that will be opened next, so the first reads of that file are served from the page cache
+    // instead of waiting for a slow volume. The data itself is discarded.
+    public void prefetch(DepositFile file) {
+        if (readAheadExecutor == null || prefetchSize <= 0) {
+            return;
+        }
+
+        try {
+            readAheadExecutor.execute(() -> prefetchFile(file));
+        }
+        catch (RejectedExecutionException e) {
+            log.debug("Not prefetching {}", file.getPath(), e);
+        }
+    }
+
+    private void prefetchFile(DepositFile file) {
+        try (var channel = FileChannel.open(file.getPhysicalPath(), StandardOpenOption.READ)) {
+            var buffer = ByteBuffer.allocateDirect(bufferSize);
+            var remaining = prefetchSize;
+
+            while (remaining > 0) {
+                buffer.clear();
+                buffer.limit((int) Math.min(buffer.capacity(), remaining));
+                var count = channel.read(buffer);
+
+                if (count < 0) {
+                    break;
+                }
+
+                remaining -= count;
+            }
+        }
+        catch (IOException e) {
+            // the file is read again when it is written, which will report the problem
+            log.debug("Unable to prefetch {}", file.getPath(), e);
+        }
+    }
+
+    private class MeteredInputStream extends FilterInputStream {
+        private long count = 0;
+        private long nanos = 0;
+        private boolean closed = false;
+
+        private MeteredInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            var start = System.nanoTime();
+            var value = in.read();
+            nanos += System.nanoTime() - start;
+
+            if (value >= 0) {
+                count++;
+                bytesRead.mark();
+            }
+
+            return value;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            var start = System.nanoTime();
+            var length = in.read(b, off, len);
+            nanos += System.nanoTime() - start;
+
+            if (length > 0) {
+                count += length;
+                bytesRead.mark(length);
+            }
+
+            return length;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (!closed && count > 0 && nanos > 0) {
+                readThroughput.update((long) (count * 1e9 / nanos));
+            }
+
+            closed = true;
+            super.close();
+        }
+    }
+}
@@ -26,23 +26,42 @@ import nl.knaw.dans.vaultingest.core.oaiore.OaiOreConverter;
 import nl.knaw.dans.vaultingest.core.oaiore.OaiOreSerializer;
 import nl.knaw.dans.vaultingest.core.pidmapping.PidMappingConverter;
 import nl.knaw.dans.vaultingest.core.pidmapping.PidMappingSerializer;
+import nl.knaw.dans.vaultingest.core.rdabag.output.BagItemContent;
 import nl.knaw.dans.vaultingest.core.rdabag.output.BagOutputWriter;
 import nl.knaw.dans.vaultingest.core.rdabag.output.MultiDigestInputStream;
+import nl.knaw.dans.vaultingest.core.rdabag.output.MultiDigestOutputStream;
+import nl.knaw.dans.vaultingest.core.validator.InvalidDepositException;
 
+import java.io.BufferedOutputStream;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.security.NoSuchAlgorithmException;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
 import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
 import java.util.stream.Collectors;
 
 @Slf4j
 public class RdaBagWriter {
+    // ordered from cheapest to most expensive to calculate
+    private static final List<SupportedAlgorithm> ALGORITHMS_BY_COST = List.of(
+        StandardSupportedAlgorithms.MD5,
+        StandardSupportedAlgorithms.SHA1,
+        StandardSupportedAlgorithms.SHA256,
+        StandardSupportedAlgorithms.SHA512
+    );
 
     private final DataciteSerializer dataciteSerializer;
     private final PidMappingSerializer pidMappingSerializer;
@@ -51,6 +70,10 @@ public class RdaBagWriter {
     private final DataciteConverter dataciteConverter;
     private final PidMappingConverter pidMappingConverter;
     private final OaiOreConverter oaiOreConverter;
+    private final ChecksumVerificationPolicy checksumVerificationPolicy;
+    private final PayloadReader payloadReader;
+    private final int oaiOreStreamingThreshold;
+    private final ExecutorService metadataExecutor;
 
     private final Map<Path, Map<SupportedAlgorithm, String>> checksums;
     private Set<SupportedAlgorithm> requiredAlgorithms;
@@ -61,7 +84,25 @@ public class RdaBagWriter {
         OaiOreSerializer oaiOreSerializer,
         DataciteConverter dataciteConverter,
         PidMappingConverter pidMappingConverter,
-        OaiOreConverter oaiOreConverter
+        OaiOreConverter oaiOreConverter,
+        ChecksumVerificationPolicy checksumVerificationPolicy,
+        PayloadReader payloadReader
+    ) {
+        this(dataciteSerializer, pidMappingSerializer, oaiOreSerializer, dataciteConverter, pidMappingConverter, oaiOreConverter, checksumVerificationPolicy,
+            payloadReader, 0, null);
+    }
+
+    RdaBagWriter(
+        DataciteSerializer dataciteSerializer,
+        PidMappingSerializer pidMappingSerializer,
+        OaiOreSerializer oaiOreSerializer,
+        DataciteConverter dataciteConverter,
+        PidMappingConverter pidMappingConverter,
+        OaiOreConverter oaiOreConverter,
+        ChecksumVerificationPolicy checksumVerificationPolicy,
+        PayloadReader payloadReader,
+        int oaiOreStreamingThreshold,
+        ExecutorService metadataExecutor
     ) {
         this.dataciteSerializer = dataciteSerializer;
         this.pidMappingSerializer = pidMappingSerializer;
@@ -69,24 +110,25 @@ public class RdaBagWriter {
         this.dataciteConverter = dataciteConverter;
         this.pidMappingConverter = pidMappingConverter;
         this.oaiOreConverter = oaiOreConverter;
+        this.checksumVerificationPolicy = checksumVerificationPolicy;
+        this.payloadReader = payloadReader;
+        this.oaiOreStreamingThreshold = oaiOreStreamingThreshold;
+        this.metadataExecutor = metadataExecutor;
 
         this.checksums = new HashMap<>();
     }
 
-    public void write(Deposit deposit, BagOutputWriter outputWriter) throws IOException {
+    public void write(Deposit deposit, BagOutputWriter outputWriter) throws IOException, InvalidDepositException {
+        if (!checksums.isEmpty()) {
+            throw new IllegalStateException("RdaBagWriter has already been used to write a deposit, create a new one for every deposit");
+        }
+
         this.requiredAlgorithms = getAlgorithms(deposit);
 
         log.info("Writing payload files");
         writePayloadFiles(deposit, outputWriter);
 
-        log.info("Writing metadata/datacite.xml");
-        writeDatacite(deposit, outputWriter);
-
-        log.info("Writing metadata/oai-ore");
-        writeOaiOre(deposit, outputWriter);
-
-        log.info("Writing metadata/pid-mapping.txt");
-        writePidMappings(deposit, outputWriter);
+        writeMetadata(deposit, outputWriter);
 
         log.info("Writing bag-info.txt");
         writeBagInfo(deposit, outputWriter);
@@ -107,8 +149,20 @@ public class RdaBagWriter {
         writeTagManifest(deposit, outputWriter);
     }
 
-    private void writePayloadFiles(Deposit deposit, BagOutputWriter outputWriter) throws IOException {
-        for (var file : deposit.getPayloadFiles()) {
+    private void writePayloadFiles(Deposit deposit, BagOutputWriter outputWriter) throws IOException, InvalidDepositException {
+        // the files are not copied into a list of their own, as that would keep all of them on the heap
+        var files = deposit.getPayloadFiles().iterator();
+        var next = files.hasNext() ? files.next() : null;
+
+        while (next != null) {
+            var file = next;
+            next = files.hasNext() ? files.next() : null;
+
+            if (next != null) {
+                // the next file can be read from the volume while this one is compressed and written
+                payloadReader.prefetch(next);
+            }
+
             var targetPath = file.getPath();
             var existingChecksums = file.getChecksums();
             var allChecksums = new HashMap<>(existingChecksums);
@@ -116,25 +170,51 @@ public class RdaBagWriter {
             log.debug("Checksums already present: {}", existingChecksums);
             log.debug("Checksums to calculate: {}", checksumsToCalculate);
 
-            try (var inputStream = file.openInputStream();
-                var digestInputStream = new MultiDigestInputStream(inputStream, checksumsToCalculate)) {
-
+            if (checksumsToCalculate.isEmpty()) {
+                // nothing needs to be read, so let the output writer copy (or link) the file in the most efficient way
                 log.info("Writing payload file {} to output", targetPath);
-                outputWriter.writeBagItem(digestInputStream, targetPath);
+                outputWriter.writeBagItem(file.getPhysicalPath(), targetPath);
+                checksums.put(targetPath, allChecksums);
+                continue;
+            }
 
-                var newChecksums = digestInputStream.getChecksums();
-                log.debug("Newly calculated checksums: {}", newChecksums);
+            Map<SupportedAlgorithm, String> newChecksums;
 
-                allChecksums.putAll(digestInputStream.getChecksums());
+            try (var inputStream = payloadReader.open(file)) {
+                var digestInputStream = new MultiDigestInputStream(inputStream, checksumsToCalculate);
+
+                try (var payloadInputStream = payloadReader.readAhead(digestInputStream)) {
+                    log.info("Writing payload file {} to output", targetPath);
+                    outputWriter.writeBagItem(payloadInputStream, targetPath, file.getSize());
+                }
+
+                // closing the read-ahead stream waits for its thread to finish, so the digests are complete
+                newChecksums = digestInputStream.getChecksums();
             }
             catch (NoSuchAlgorithmException e) {
                 throw new IllegalStateException("Algorithm not supported", e);
             }
 
+            log.debug("Newly calculated checksums: {}", newChecksums);
+            verifyChecksums(targetPath, existingChecksums, newChecksums);
+            allChecksums.putAll(newChecksums);
             checksums.put(targetPath, allChecksums);
         }
     }
 
+    private void verifyChecksums(Path path, Map<SupportedAlgorithm, String> expected, Map<SupportedAlgorithm, String> actual) throws InvalidDepositException {
+        for (var entry : actual.entrySet()) {
+            var expectedChecksum = expected.get(entry.getKey());
+
+            if (expectedChecksum != null && !expectedChecksum.equalsIgnoreCase(entry.getValue())) {
+                throw new InvalidDepositException(String.format(
+                    "Checksum mismatch for %s: manifest-%s.txt lists %s, but the file has %s",
+                    path, entry.getKey().getBagitName(), expectedChecksum, entry.getValue()
+                ));
+            }
+        }
+    }
+
     private void writeTagManifest(Deposit deposit, BagOutputWriter outputWriter) throws IOException {
         // get the metadata, which is everything EXCEPT the data/** and tagmanifest-* files
         // but the deposit does not know about these files, only this class knows
@@ -188,38 +268,153 @@ public class RdaBagWriter {
         }
     }
 
-    private void writeDatacite(Deposit deposit, BagOutputWriter outputWriter) throws IOException {
+    private void writeMetadata(Deposit deposit, BagOutputWriter outputWriter) throws IOException {
+        var metadata = convertMetadata(deposit);
+
+        if (metadataExecutor == null) {
+            for (var entry : metadata.entrySet()) {
+                log.info("Writing {}", entry.getKey());
+                checksummedWriteToOutput(entry.getValue(), entry.getKey(), outputWriter);
+            }
+        }
+        else {
+            writeMetadataInParallel(metadata, outputWriter);
+        }
+    }
+
+    // The converters read the DOM of the deposit, which is not safe to use from several threads, so the deposit is converted here.
+    // The serializations, which take most of the time for a deposit with many files, are returned in the order they are put in the bag.
+    private Map<Path, BagItemContent> convertMetadata(Deposit deposit) {
+        var metadata = new LinkedHashMap<Path, BagItemContent>();
+
+        log.info("Converting metadata/datacite.xml");
         var resource = dataciteConverter.convert(deposit);
-        var dataciteXml = dataciteSerializer.serialize(resource);
+        metadata.put(Path.of("metadata/datacite.xml"), outputStream -> dataciteSerializer.serialize(resource, outputStream));
+
+        log.info("Converting metadata/oai-ore");
+        var files = deposit.getPayloadFiles();
+
+        if (oaiOreStreamingThreshold > 0 && files != null && files.size() >= oaiOreStreamingThreshold) {
+            // only the metadata is converted to a model; the aggregated resources are produced again for each file while it is written
+            log.debug("Writing OAI-ORE of {} payload files while converting them", files.size());
+            var streamingOaiOre = oaiOreConverter.convertForStreaming(deposit);
+
+            metadata.put(Path.of("metadata/oai-ore.rdf"), outputStream -> oaiOreSerializer.serializeAsRdf(streamingOaiOre, outputStream));
+            metadata.put(Path.of("metadata/oai-ore.jsonld"), outputStream -> oaiOreSerializer.serializeAsJsonLd(streamingOaiOre, outputStream));
+        }
+        else {
+            var oaiOre = oaiOreConverter.convert(deposit);
 
-        checksummedWriteToOutput(dataciteXml, Path.of("metadata/datacite.xml"), outputWriter);
+            // the serializers write the documents while they produce them, so these are never held in memory as a whole
+            metadata.put(Path.of("metadata/oai-ore.rdf"), outputStream -> oaiOreSerializer.serializeAsRdf(oaiOre, outputStream));
+            metadata.put(Path.of("metadata/oai-ore.jsonld"), outputStream -> oaiOreSerializer.serializeAsJsonLd(oaiOre, outputStream));
+        }
+
+        log.info("Converting metadata/pid-mapping.txt");
+        var pidMappings = pidMappingConverter.convert(deposit);
+        metadata.put(Path.of("metadata/pid-mapping.txt"), outputStream -> outputStream.write(pidMappingSerializer.serialize(pidMappings).getBytes()));
+
+        return metadata;
     }
 
-    private void writeOaiOre(Deposit deposit, BagOutputWriter outputWriter) throws IOException {
-        var oaiOre = oaiOreConverter.convert(deposit);
+    // Every file is serialized into a temporary file on the metadata executor, while its checksums are calculated. The files are
+    // added to the bag in the given order as soon as they are done, so the bag is the same as when they are written one by one.
+    private void writeMetadataInParallel(Map<Path, BagItemContent> metadata, BagOutputWriter outputWriter) throws IOException {
+        var algorithms = requiredAlgorithms;
+        var serializations = new LinkedHashMap<Path, CompletableFuture<SerializedBagItem>>();
+
+        for (var entry : metadata.entrySet()) {
+            serializations.put(entry.getKey(), CompletableFuture.supplyAsync(() -> serialize(entry.getValue(), entry.getKey(), algorithms), metadataExecutor));
+        }
+
+        try {
+            for (var entry : serializations.entrySet()) {
+                var serialized = join(entry.getValue());
+
+                log.info("Writing {}", entry.getKey());
+                outputWriter.writeBagItem(serialized.file, entry.getKey());
 
-        var rdf = oaiOreSerializer.serializeAsRdf(oaiOre);
-        var jsonld = oaiOreSerializer.serializeAsJsonLd(oaiOre);
+                log.trace("Checksums for {}: {}", entry.getKey(), serialized.checksums);
+                checksums.put(entry.getKey(), serialized.checksums);
+            }
+        }
+        finally {
+            // after a failure the other serializations are waited for as well, so none of them leaves a temporary file behind
+            for (var serialization : serializations.values()) {
+                var serialized = serialization.exceptionally(e -> null).join();
 
-        checksummedWriteToOutput(rdf, Path.of("metadata/oai-ore.rdf"), outputWriter);
-        checksummedWriteToOutput(jsonld, Path.of("metadata/oai-ore.jsonld"), outputWriter);
+                if (serialized != null) {
+                    deleteTemporaryFile(serialized.file);
+                }
+            }
+        }
     }
 
-    private void writeMetadataFile(Deposit deposit, Path metadataFile, BagOutputWriter outputWriter) throws IOException {
-        try (var inputStream = deposit.inputStreamForMetadataFile(metadataFile)) {
-            checksummedWriteToOutput(inputStream, metadataFile, outputWriter);
+    private SerializedBagItem serialize(BagItemContent content, Path path, Set<SupportedAlgorithm> algorithms) {
+        Path file = null;
+
+        try {
+            file = Files.createTempFile("rda-bag-", "-" + path.getFileName());
+            log.debug("Serializing {} to {}", path, file);
+
+            try (var outputStream = new MultiDigestOutputStream(new BufferedOutputStream(Files.newOutputStream(file)), algorithms)) {
+                content.writeTo(outputStream);
+                outputStream.flush();
+                return new SerializedBagItem(file, outputStream.getChecksums());
+            }
+        }
+        catch (IOException e) {
+            deleteTemporaryFile(file);
+            throw new UncheckedIOException(e);
+        }
+        catch (NoSuchAlgorithmException e) {
+            deleteTemporaryFile(file);
+            throw new IllegalStateException("Algorithm not supported", e);
+        }
+        catch (RuntimeException | Error e) {
+            deleteTemporaryFile(file);
+            throw e;
         }
     }
 
-    private void writePidMappings(Deposit deposit, BagOutputWriter outputWriter) throws IOException {
-        var pidMappings = pidMappingConverter.convert(deposit);
-        var pidMappingsSerialized = pidMappingSerializer.serialize(pidMappings);
+    private SerializedBagItem join(CompletableFuture<SerializedBagItem> serialization) throws IOException {
+        try {
+            return serialization.join();
+        }
+        catch (CompletionException e) {
+            var cause = e.getCause();
 
-        checksummedWriteToOutput(
-            pidMappingsSerialized,
-            Path.of("metadata/pid-mapping.txt"),
-            outputWriter
-        );
+            if (cause instanceof UncheckedIOException) {
+                throw ((UncheckedIOException) cause).getCause();
+            }
+            else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+
+            throw e;
+        }
+    }
+
+    private void deleteTemporaryFile(Path file) {
+        if (file == null) {
+            return;
+        }
+
+        try {
+            Files.deleteIfExists(file);
+        }
+        catch (IOException e) {
+            log.warn("Unable to delete temporary file {}", file, e);
+        }
+    }
+
+    private void writeMetadataFile(Deposit deposit, Path metadataFile, BagOutputWriter outputWriter) throws IOException {
+        try (var inputStream = deposit.inputStreamForMetadataFile(metadataFile)) {
+            checksummedWriteToOutput(inputStream, metadataFile, outputWriter);
+        }
     }
 
     private void writeBagitFile(Deposit deposit, BagOutputWriter outputWriter) throws IOException {
@@ -250,6 +445,26 @@ public class RdaBagWriter {
         }
     }
 
+    private void checksummedWriteToOutput(BagItemContent content, Path path, BagOutputWriter outputWriter) throws IOException {
+        var result = new HashMap<SupportedAlgorithm, String>();
+
+        // the content is digested while it is written into the bag
+        outputWriter.writeBagItem(outputStream -> {
+            try {
+                var digestOutputStream = new MultiDigestOutputStream(outputStream, requiredAlgorithms);
+                content.writeTo(digestOutputStream);
+                digestOutputStream.flush();
+                result.putAll(digestOutputStream.getChecksums());
+            }
+            catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException("Algorithm not supported", e);
+            }
+        }, path);
+
+        log.trace("Checksums for {}: {}", path, result);
+        checksums.put(path, result);
+    }
+
     private void checksummedWriteToOutput(String string, Path path, BagOutputWriter outputWriter) throws IOException {
         checksummedWriteToOutput(new ByteArrayInputStream(string.getBytes()), path, outputWriter);
     }
@@ -267,10 +482,40 @@ public class RdaBagWriter {
     }
 
     Set<SupportedAlgorithm> getAlgorithmsToCalculate(Set<SupportedAlgorithm> existingChecksums) {
+        var result = new HashSet<SupportedAlgorithm>();
+
         if (existingChecksums.size() <= 1 && existingChecksums.contains(StandardSupportedAlgorithms.MD5)) {
-            return Set.of(StandardSupportedAlgorithms.SHA1);
+            result.add(StandardSupportedAlgorithms.SHA1);
+        }
+
+        switch (checksumVerificationPolicy) {
+            case VERIFY_CHEAPEST:
+                getCheapestAlgorithm(existingChecksums).ifPresent(result::add);
+                break;
+            case VERIFY_ALL:
+                result.addAll(existingChecksums);
+                break;
+            default:
+                break;
         }
 
-        return Set.of();
+        return result;
+    }
+
+    Optional<SupportedAlgorithm> getCheapestAlgorithm(Set<SupportedAlgorithm> algorithms) {
+        return ALGORITHMS_BY_COST.stream()
+            .filter(algorithms::contains)
+            .findFirst()
+            .or(() -> algorithms.stream().findFirst());
+    }
+
+    private static class SerializedBagItem {
+        private final Path file;
+        private final Map<SupportedAlgorithm, String> checksums;
+
+        private SerializedBagItem(Path file, Map<SupportedAlgorithm, String> checksums) {
+            this.file = file;
+            this.checksums = checksums;
+        }
     }
 }
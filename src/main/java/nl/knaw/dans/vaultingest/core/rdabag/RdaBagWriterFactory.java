@@ -16,5 +16,6 @@
 package nl.knaw.dans.vaultingest.core.rdabag;
 
 public interface RdaBagWriterFactory {
+    // writers keep per-deposit state, so a new one must be created for every deposit
     RdaBagWriter createRdaBagWriter();
 }
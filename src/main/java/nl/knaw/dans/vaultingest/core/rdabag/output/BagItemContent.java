@@ -0,0 +1,25 @@
+/*
+ * Copyright (C) 2023 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.vaultingest.core.rdabag.output;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+// Content of a bag item that is produced rather than read, e.g. by a serializer. It must not close the output stream.
+@FunctionalInterface
+public interface BagItemContent {
+    void writeTo(OutputStream outputStream) throws IOException;
+}
@@ -15,11 +15,41 @@
  */
 package nl.knaw.dans.vaultingest.core.rdabag.output;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.Files;
 import java.nio.file.Path;
 
 public interface BagOutputWriter extends AutoCloseable {
     void writeBagItem(InputStream inputStream, Path path) throws IOException;
 
+    // size is the number of bytes the input stream will provide, or -1 if that is not known up front
+    default void writeBagItem(InputStream inputStream, Path path, long size) throws IOException {
+        writeBagItem(inputStream, path);
+    }
+
+    // Writes content that is produced by writing it to a stream. By default it is collected in memory first; writers that can
+    // write it straight into the bag override this.
+    default void writeBagItem(BagItemContent content, Path path) throws IOException {
+        var buffer = new ByteArrayOutputStream();
+        content.writeTo(buffer);
+        writeBagItem(new ByteArrayInputStream(buffer.toByteArray()), path, buffer.size());
+    }
+
+    // writes the file as it is, for when nothing needs to be calculated while reading it
+    default void writeBagItem(Path source, Path path) throws IOException {
+        try (var inputStream = Files.newInputStream(source)) {
+            writeBagItem(inputStream, path, Files.size(source));
+        }
+    }
+
+    // Finishes the bag and moves it to its final location
+    @Override
+    void close() throws IOException;
+
+    // Throws away what has been written instead of closing the writer, so that a bag that could not be completed never reaches
+    // its final location
+    void discard() throws IOException;
 }
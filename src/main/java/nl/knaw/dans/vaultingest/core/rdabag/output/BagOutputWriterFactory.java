@@ -18,8 +18,20 @@ package nl.knaw.dans.vaultingest.core.rdabag.output;
 import nl.knaw.dans.vaultingest.core.deposit.Deposit;
 
 import java.io.IOException;
+import java.util.Objects;
 
 public interface BagOutputWriterFactory {
 
     BagOutputWriter createBagOutputWriter(Deposit deposit) throws IOException;
+
+    // name of the output without an extension, e.g. vaas-<uuid>-v1
+    static String outputName(String bagId, Long objectVersion) {
+        Objects.requireNonNull(bagId);
+        Objects.requireNonNull(objectVersion);
+
+        // strip anything before all colons (if present), and also the colon itself
+        bagId = bagId.toLowerCase().replaceAll(".*:", "");
+
+        return String.format("vaas-%s-v%s", bagId, objectVersion);
+    }
 }
@@ -0,0 +1,117 @@
+/*
+ * Copyright (C) 2023 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.vaultingest.core.rdabag.output;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+// Reads a file in large sequential reads into a direct buffer, which the channel can fill without an intermediate copy.
+// Reads that are at least as large as the buffer skip it altogether.
+public class ChannelInputStream extends InputStream {
+    private final FileChannel channel;
+    private final ByteBuffer buffer;
+    private boolean endOfFile = false;
+
+    public ChannelInputStream(FileChannel channel, int bufferSize) {
+        this.channel = channel;
+        this.buffer = ByteBuffer.allocateDirect(bufferSize);
+        // nothing to read yet
+        this.buffer.flip();
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!fill()) {
+            return -1;
+        }
+
+        return buffer.get() & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+
+        if (!buffer.hasRemaining() && len >= buffer.capacity() && !endOfFile) {
+            var count = channel.read(ByteBuffer.wrap(b, off, len));
+
+            if (count < 0) {
+                endOfFile = true;
+            }
+
+            return count;
+        }
+
+        if (!fill()) {
+            return -1;
+        }
+
+        var count = Math.min(len, buffer.remaining());
+        buffer.get(b, off, count);
+        return count;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        if (n <= 0) {
+            return 0;
+        }
+
+        var skipped = Math.min(n, buffer.remaining());
+        buffer.position(buffer.position() + (int) skipped);
+
+        if (skipped < n) {
+            var position = channel.position();
+            var target = Math.min(channel.size(), position + n - skipped);
+            channel.position(target);
+            skipped += target - position;
+        }
+
+        return skipped;
+    }
+
+    @Override
+    public int available() {
+        return buffer.remaining();
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private boolean fill() throws IOException {
+        while (!buffer.hasRemaining()) {
+            if (endOfFile) {
+                return false;
+            }
+
+            buffer.clear();
+            var count = channel.read(buffer);
+            buffer.flip();
+
+            if (count < 0) {
+                endOfFile = true;
+            }
+        }
+
+        return true;
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright (C) 2023 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.vaultingest.core.rdabag.output;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Comparator;
+
+// Writes the bag as a directory. Files are written to a working directory next to the output, which is renamed to the output when
+// the writer is closed, so a bag directory is either complete or absent.
+@Slf4j
+public class DirectoryBagOutputWriter implements BagOutputWriter {
+    private final Path outputPath;
+    private final Path workingPath;
+    private final boolean linkFiles;
+
+    public DirectoryBagOutputWriter(Path output, boolean linkFiles) throws IOException {
+        this.workingPath = output.getParent().resolve(output.getFileName().toString() + ".tmp");
+        removeDirectoryIfExists(workingPath);
+        Files.createDirectories(workingPath);
+        this.outputPath = output;
+        this.linkFiles = linkFiles;
+    }
+
+    @Override
+    public void writeBagItem(InputStream inputStream, Path path) throws IOException {
+        log.debug("Writing bag item {}", path);
+        var target = getTarget(path);
+
+        try (var outputStream = Files.newOutputStream(target, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            inputStream.transferTo(outputStream);
+        }
+    }
+
+    @Override
+    public void writeBagItem(BagItemContent content, Path path) throws IOException {
+        log.debug("Writing bag item {}", path);
+        var target = getTarget(path);
+
+        try (var outputStream = new BufferedOutputStream(Files.newOutputStream(target, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE))) {
+            content.writeTo(outputStream);
+        }
+    }
+
+    @Override
+    public void writeBagItem(Path source, Path path) throws IOException {
+        log.debug("Writing bag item {} from {}", path, source);
+        var target = getTarget(path);
+
+        if (linkFiles) {
+            try {
+                Files.createLink(target, source);
+                return;
+            }
+            catch (UnsupportedOperationException | FileSystemException e) {
+                // e.g. the source is on another file system
+                log.debug("Unable to link {} to {}, copying it instead", target, source, e);
+            }
+        }
+
+        // transferTo lets the kernel copy the data, without passing it through the heap
+        try (var input = FileChannel.open(source, StandardOpenOption.READ);
+            var output = FileChannel.open(target, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            var size = input.size();
+            var position = 0L;
+
+            while (position < size) {
+                position += input.transferTo(position, size - position, output);
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            removeDirectoryIfExists(outputPath);
+
+            log.debug("Moving directory {} to {}", workingPath, outputPath);
+            Files.move(workingPath, outputPath, StandardCopyOption.ATOMIC_MOVE);
+        }
+        catch (IOException | RuntimeException e) {
+            // the working directory would otherwise be left behind next to the output
+            discard();
+            throw e;
+        }
+    }
+
+    @Override
+    public void discard() throws IOException {
+        log.debug("Deleting incomplete directory {}", workingPath);
+        deleteDirectory(workingPath);
+    }
+
+    private Path getTarget(Path path) throws IOException {
+        // bag paths are relative to the bag root, even if they start with a slash
+        var target = workingPath.resolve(path.toString().replaceFirst("^/+", "")).normalize();
+
+        if (!target.startsWith(workingPath) || target.equals(workingPath)) {
+            throw new IOException(String.format("Bag item %s is outside of the bag", path));
+        }
+
+        Files.createDirectories(target.getParent());
+        return target;
+    }
+
+    void removeDirectoryIfExists(Path path) throws IOException {
+        if (Files.exists(path)) {
+            log.warn("Directory {} already exists, removing it", path);
+            deleteDirectory(path);
+        }
+    }
+
+    private static void deleteDirectory(Path path) throws IOException {
+        try (var files = Files.walk(path)) {
+            for (var file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(file);
+            }
+        }
+    }
+}
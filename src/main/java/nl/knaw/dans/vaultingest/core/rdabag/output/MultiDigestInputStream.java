@@ -17,70 +17,121 @@ package nl.knaw.dans.vaultingest.core.rdabag.output;
 
 import gov.loc.repository.bagit.hash.SupportedAlgorithm;
 
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.security.DigestInputStream;
+import java.io.OutputStream;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
-public class MultiDigestInputStream extends InputStream {
-    private final InputStream inputStream;
-    private final Map<SupportedAlgorithm, DigestInputStream> digestInputStreams;
+// Reads the underlying stream once and feeds every digest from the same buffer,
+// instead of chaining a DigestInputStream per algorithm
+public class MultiDigestInputStream extends FilterInputStream {
+    static final int BUFFER_SIZE = 128 * 1024;
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
 
-    public MultiDigestInputStream(InputStream inputStream, Collection<SupportedAlgorithm> algorithms) throws NoSuchAlgorithmException {
-        this.digestInputStreams = new HashMap<>();
+    private final Map<SupportedAlgorithm, MessageDigest> digests;
+    private final MessageDigest[] digestArray;
 
-        var input = inputStream;
+    public MultiDigestInputStream(InputStream inputStream, Collection<SupportedAlgorithm> algorithms) throws NoSuchAlgorithmException {
+        super(inputStream);
+        this.digests = new LinkedHashMap<>();
 
         for (var alg : algorithms) {
-            var digestInputStream = new DigestInputStream(input, MessageDigest.getInstance(alg.getMessageDigestName()));
-            digestInputStreams.put(alg, digestInputStream);
-            input = digestInputStream;
+            digests.put(alg, MessageDigest.getInstance(alg.getMessageDigestName()));
         }
 
-        this.inputStream = input;
+        this.digestArray = digests.values().toArray(new MessageDigest[0]);
     }
 
     public Map<SupportedAlgorithm, String> getChecksums() {
         var result = new HashMap<SupportedAlgorithm, String>();
 
-        for (var entry : digestInputStreams.entrySet()) {
-            result.put(entry.getKey(), bytesToHex(entry.getValue().getMessageDigest().digest()));
+        for (var entry : digests.entrySet()) {
+            result.put(entry.getKey(), bytesToHex(entry.getValue().digest()));
         }
 
         return result;
     }
 
-    private String bytesToHex(byte[] digest) {
-        var sb = new StringBuilder();
-        for (var b : digest) {
-            sb.append(String.format("%02x", b));
+    static String bytesToHex(byte[] digest) {
+        var chars = new char[digest.length * 2];
+
+        for (var i = 0; i < digest.length; ++i) {
+            var value = digest[i] & 0xff;
+            chars[i * 2] = HEX_DIGITS[value >>> 4];
+            chars[i * 2 + 1] = HEX_DIGITS[value & 0x0f];
         }
-        return sb.toString();
+
+        return new String(chars);
     }
 
     @Override
     public int read() throws IOException {
-        return this.inputStream.read();
+        var value = in.read();
+
+        if (value != -1) {
+            for (var digest : digestArray) {
+                digest.update((byte) value);
+            }
+        }
+
+        return value;
     }
 
     @Override
-    // Overriding this method has significant performance benefits for the DigestInputStream
     public int read(byte[] b, int off, int len) throws IOException {
-        return this.inputStream.read(b, off, len);
+        var count = in.read(b, off, len);
+
+        if (count > 0) {
+            for (var digest : digestArray) {
+                digest.update(b, off, count);
+            }
+        }
+
+        return count;
     }
 
     @Override
-    public void close() throws IOException {
-        super.close();
+    public long skip(long n) throws IOException {
+        // skipped bytes would not be digested, so read them instead
+        var buffer = new byte[(int) Math.min(BUFFER_SIZE, Math.max(n, 0))];
+        var remaining = n;
 
-        this.inputStream.close();
+        while (remaining > 0) {
+            var count = read(buffer, 0, (int) Math.min(buffer.length, remaining));
 
-        for (var value : digestInputStreams.values()) {
-            value.close();
+            if (count < 0) {
+                break;
+            }
+
+            remaining -= count;
+        }
+
+        return n - remaining;
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    @Override
+    public long transferTo(OutputStream out) throws IOException {
+        // the default implementation uses an 8 KB buffer, which means a lot of small reads and digest updates for large files
+        var buffer = new byte[BUFFER_SIZE];
+        var transferred = 0L;
+        int count;
+
+        while ((count = read(buffer, 0, buffer.length)) >= 0) {
+            out.write(buffer, 0, count);
+            transferred += count;
         }
+
+        return transferred;
     }
 }
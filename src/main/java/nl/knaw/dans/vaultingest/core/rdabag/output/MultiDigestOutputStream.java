@@ -0,0 +1,74 @@
+/*
+ * Copyright (C) 2023 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.vaultingest.core.rdabag.output;
+
+import gov.loc.repository.bagit.hash.SupportedAlgorithm;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// The counterpart of MultiDigestInputStream, for content that is written instead of read
+public class MultiDigestOutputStream extends FilterOutputStream {
+    private final Map<SupportedAlgorithm, MessageDigest> digests;
+    private final MessageDigest[] digestArray;
+
+    public MultiDigestOutputStream(OutputStream outputStream, Collection<SupportedAlgorithm> algorithms) throws NoSuchAlgorithmException {
+        super(outputStream);
+        this.digests = new LinkedHashMap<>();
+
+        for (var alg : algorithms) {
+            digests.put(alg, MessageDigest.getInstance(alg.getMessageDigestName()));
+        }
+
+        this.digestArray = digests.values().toArray(new MessageDigest[0]);
+    }
+
+    public Map<SupportedAlgorithm, String> getChecksums() {
+        var result = new HashMap<SupportedAlgorithm, String>();
+
+        for (var entry : digests.entrySet()) {
+            result.put(entry.getKey(), MultiDigestInputStream.bytesToHex(entry.getValue().digest()));
+        }
+
+        return result;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        out.write(b);
+
+        for (var digest : digestArray) {
+            digest.update((byte) b);
+        }
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        // FilterOutputStream writes arrays one byte at a time
+        out.write(b, off, len);
+
+        for (var digest : digestArray) {
+            digest.update(b, off, len);
+        }
+    }
+}
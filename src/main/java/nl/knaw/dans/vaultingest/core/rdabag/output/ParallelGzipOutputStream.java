@@ -0,0 +1,156 @@
+/*
+ * Copyright (C) 2023 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.vaultingest.core.rdabag.output;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.zip.CRC32;
+
+// Gzip stream that deflates fixed size blocks on an executor, in the same way as ParallelZipBagOutputWriter does for zip entries.
+// The blocks form a single deflate stream, so the result is a regular gzip file with one member.
+class ParallelGzipOutputStream extends OutputStream {
+    private static final int DICTIONARY_SIZE = 32 * 1024;
+    private static final byte[] HEADER = {
+        0x1f, (byte) 0x8b,
+        // deflate, no flags
+        8, 0,
+        // no modification time
+        0, 0, 0, 0,
+        // no extra flags, unknown OS
+        0, (byte) 0xff
+    };
+
+    private final OutputStream out;
+    private final Executor executor;
+    private final int blockSize;
+    private final int maxPendingBlocks;
+    private final Deque<CompletableFuture<byte[]>> pendingBlocks = new ArrayDeque<>();
+    private final CRC32 crc = new CRC32();
+    private byte[] block;
+    private int blockLength = 0;
+    private byte[] dictionary;
+    private long size = 0;
+    private boolean closed = false;
+
+    ParallelGzipOutputStream(OutputStream out, Executor executor, int parallelism) throws IOException {
+        this(out, executor, parallelism, ParallelZipBagOutputWriter.DEFAULT_BLOCK_SIZE);
+    }
+
+    ParallelGzipOutputStream(OutputStream out, Executor executor, int parallelism, int blockSize) throws IOException {
+        if (blockSize < DICTIONARY_SIZE) {
+            throw new IllegalArgumentException("Block size must be at least " + DICTIONARY_SIZE + " bytes");
+        }
+
+        this.out = out;
+        this.executor = executor;
+        this.blockSize = blockSize;
+        this.maxPendingBlocks = Math.max(2, parallelism * 2);
+        this.block = new byte[blockSize];
+        out.write(HEADER);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        write(new byte[] { (byte) b }, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] data, int offset, int length) throws IOException {
+        while (length > 0) {
+            var count = Math.min(length, blockSize - blockLength);
+            System.arraycopy(data, offset, block, blockLength, count);
+            blockLength += count;
+            offset += count;
+            length -= count;
+
+            if (blockLength == blockSize) {
+                submitBlock(false);
+                writePending(maxPendingBlocks);
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+
+        closed = true;
+
+        try {
+            submitBlock(true);
+            writePending(0);
+
+            // trailer: crc and size modulo 2^32
+            out.write(intToBytes(crc.getValue()));
+            out.write(intToBytes(size));
+        }
+        finally {
+            out.close();
+        }
+    }
+
+    // Stops the stream without finishing it: blocks that are still being deflated are cancelled and nothing more is written. The
+    // underlying stream is not closed, as closing it may flush buffered data; the caller closes the file itself.
+    void abort() {
+        closed = true;
+
+        for (var pendingBlock : pendingBlocks) {
+            pendingBlock.cancel(false);
+        }
+
+        pendingBlocks.clear();
+    }
+
+    private void submitBlock(boolean last) {
+        var data = block;
+        var length = blockLength;
+        var blockDictionary = dictionary;
+
+        crc.update(data, 0, length);
+        size += length;
+
+        pendingBlocks.add(CompletableFuture.supplyAsync(() -> ParallelZipBagOutputWriter.deflate(data, length, blockDictionary, last), executor));
+
+        if (!last) {
+            dictionary = Arrays.copyOfRange(data, blockSize - DICTIONARY_SIZE, blockSize);
+            block = new byte[blockSize];
+            blockLength = 0;
+        }
+    }
+
+    private void writePending(int allowedPendingBlocks) throws IOException {
+        while (pendingBlocks.size() > allowedPendingBlocks) {
+            try {
+                out.write(pendingBlocks.remove().join());
+            }
+            catch (CompletionException e) {
+                throw new IOException("Error compressing block: " + e.getCause().getMessage(), e.getCause());
+            }
+        }
+    }
+
+    private static byte[] intToBytes(long value) {
+        return new byte[] { (byte) value, (byte) (value >> 8), (byte) (value >> 16), (byte) (value >> 24) };
+    }
+}
@@ -0,0 +1,364 @@
+/*
+ * Copyright (C) 2023 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.vaultingest.core.rdabag.output;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+
+// Splits every entry in fixed size blocks and deflates the blocks on an executor. Each block is primed with the last 32 KB of the
+// previous block and ends with a sync flush, so the concatenated blocks form a single valid deflate stream (the same approach as pigz).
+// Blocks are written to the zip in the order they were read, so the order of the entries is the order of writeBagItem calls.
+// Entries that the ZipCompressionPolicy considers incompressible are stored as they are.
+@Slf4j
+public class ParallelZipBagOutputWriter implements BagOutputWriter {
+    static final int DEFAULT_BLOCK_SIZE = 1024 * 1024;
+    private static final int DICTIONARY_SIZE = 32 * 1024;
+    private static final ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+
+    private final ZipArchiveOutput archive;
+    private final Path outputPath;
+    private final Path workingPath;
+    private final Executor executor;
+    private final ZipCompressionPolicy compressionPolicy;
+    private final int blockSize;
+    private final int maxPendingBlocks;
+    private final Deque<PendingWrite> pendingWrites = new ArrayDeque<>();
+    private int pendingBlocks = 0;
+
+    // statistics for the whole bag, the compression time is added by the compressing threads
+    private final LongAdder compressionCpuNanos = new LongAdder();
+    private long deflatedBytes = 0;
+    private final LongAdder deflatedCompressedBytes = new LongAdder();
+    private long storedBytes = 0;
+    private int storedEntries = 0;
+    private int deflatedEntries = 0;
+
+    public ParallelZipBagOutputWriter(Path output, Executor executor, int parallelism, ZipCompressionPolicy compressionPolicy) throws IOException {
+        this(output, executor, parallelism, compressionPolicy, DEFAULT_BLOCK_SIZE);
+    }
+
+    ParallelZipBagOutputWriter(Path output, Executor executor, int parallelism, ZipCompressionPolicy compressionPolicy, int blockSize) throws IOException {
+        if (blockSize < DICTIONARY_SIZE) {
+            throw new IllegalArgumentException("Block size must be at least " + DICTIONARY_SIZE + " bytes");
+        }
+
+        this.workingPath = output.getParent().resolve(output.getFileName().toString() + ".tmp");
+        removeFileIfExists(workingPath);
+        this.archive = new ZipArchiveOutput(FileChannel.open(workingPath, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE));
+        this.outputPath = output;
+        this.executor = executor;
+        this.compressionPolicy = compressionPolicy;
+        this.blockSize = blockSize;
+        // keep every thread busy while the oldest block is being waited for, without buffering the whole file
+        this.maxPendingBlocks = Math.max(2, parallelism * 2);
+    }
+
+    @Override
+    public void writeBagItem(InputStream inputStream, Path path) throws IOException {
+        writeBagItem(inputStream, path, -1);
+    }
+
+    @Override
+    public void writeBagItem(InputStream inputStream, Path path, long expectedSize) throws IOException {
+        log.debug("Writing bag item {}", path);
+        var entry = new EntryWriter(path, expectedSize);
+
+        while (true) {
+            var block = new byte[blockSize];
+            var length = inputStream.readNBytes(block, 0, blockSize);
+            var last = length < blockSize;
+            entry.addBlock(block, length, last);
+
+            if (last) {
+                break;
+            }
+        }
+    }
+
+    @Override
+    public void writeBagItem(BagItemContent content, Path path) throws IOException {
+        log.debug("Writing bag item {}", path);
+        var outputStream = new EntryOutputStream(new EntryWriter(path, -1));
+        content.writeTo(outputStream);
+        outputStream.close();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            writePending(0);
+            archive.close();
+        }
+        catch (IOException | RuntimeException e) {
+            // an incomplete archive must not end up in the output directory
+            discard();
+            throw e;
+        }
+
+        log.info("Compression statistics for {}: {} entries deflated from {} to {} bytes ({} bytes saved) using {} ms CPU time, "
+                + "{} entries with {} bytes stored without compression",
+            outputPath.getFileName(), deflatedEntries, deflatedBytes, deflatedCompressedBytes.sum(), deflatedBytes - deflatedCompressedBytes.sum(),
+            compressionCpuNanos.sum() / 1_000_000, storedEntries, storedBytes);
+
+        removeFileIfExists(outputPath);
+
+        log.debug("Moving file {} to {}", workingPath, outputPath);
+        Files.move(workingPath, outputPath);
+    }
+
+    private byte[] timedDeflate(byte[] data, int length, byte[] dictionary, boolean last) {
+        var start = threadMXBean.getCurrentThreadCpuTime();
+        var result = deflate(data, length, dictionary, last);
+        var end = threadMXBean.getCurrentThreadCpuTime();
+
+        // -1 if CPU time measurement is not supported
+        if (start >= 0 && end >= 0) {
+            compressionCpuNanos.add(end - start);
+        }
+
+        deflatedCompressedBytes.add(result.length);
+        return result;
+    }
+
+    static byte[] deflate(byte[] data, int length, byte[] dictionary, boolean last) {
+        var deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+
+        try {
+            if (dictionary != null) {
+                deflater.setDictionary(dictionary);
+            }
+
+            deflater.setInput(data, 0, length);
+
+            var output = new ByteArrayOutputStream(length / 2 + 64);
+            var buffer = new byte[64 * 1024];
+
+            if (last) {
+                deflater.finish();
+
+                while (!deflater.finished()) {
+                    var count = deflater.deflate(buffer);
+                    output.write(buffer, 0, count);
+                }
+            }
+            else {
+                int count;
+
+                // a full buffer means there may be more output pending for this flush
+                do {
+                    count = deflater.deflate(buffer, 0, buffer.length, Deflater.SYNC_FLUSH);
+                    output.write(buffer, 0, count);
+                }
+                while (count == buffer.length);
+            }
+
+            return output.toByteArray();
+        }
+        finally {
+            deflater.end();
+        }
+    }
+
+    private void writePending(int allowedPendingBlocks) throws IOException {
+        while (!pendingWrites.isEmpty()) {
+            var next = pendingWrites.peek();
+
+            if (next.compressed != null) {
+                if (pendingBlocks <= allowedPendingBlocks) {
+                    return;
+                }
+
+                var data = waitFor(next.compressed);
+                archive.write(data, 0, data.length);
+                pendingBlocks--;
+            }
+            else {
+                next.action.run(archive);
+            }
+
+            pendingWrites.remove();
+        }
+    }
+
+    private byte[] waitFor(CompletableFuture<byte[]> future) throws IOException {
+        try {
+            return future.join();
+        }
+        catch (CompletionException e) {
+            throw new IOException("Error compressing block: " + e.getCause().getMessage(), e.getCause());
+        }
+    }
+
+    @Override
+    public void discard() throws IOException {
+        archive.abort();
+        log.debug("Deleting incomplete file {}", workingPath);
+        Files.deleteIfExists(workingPath);
+    }
+
+    void removeFileIfExists(Path path) throws IOException {
+        if (Files.exists(path)) {
+            log.warn("File {} already exists, removing it", path);
+            Files.delete(path);
+        }
+    }
+
+    // Splits one entry in blocks, which are compressed (or stored) and written in order
+    private class EntryWriter {
+        private final Path path;
+        private final String name;
+        private final long expectedSize;
+        private final CRC32 crc = new CRC32();
+        private long size = 0;
+        private byte[] dictionary = null;
+        private int method = -1;
+
+        private EntryWriter(Path path, long expectedSize) {
+            this.path = path;
+            this.name = path.toString();
+            this.expectedSize = expectedSize;
+        }
+
+        // a block must be full, except for the last one; the writer takes ownership of the block
+        private void addBlock(byte[] block, int length, boolean last) throws IOException {
+            var blockDictionary = dictionary;
+
+            if (method == -1) {
+                // the first block doubles as the sample for the compression policy
+                method = compressionPolicy.getMethod(path, block, length);
+                var entryMethod = method;
+                // an entry that fits in its first block has a known size, so e.g. small tag files do not get a Zip64 extra field
+                var entrySize = expectedSize < 0 && last ? length : expectedSize;
+                pendingWrites.add(new PendingWrite(null, a -> a.startEntry(name, entryMethod, entrySize)));
+            }
+
+            crc.update(block, 0, length);
+            size += length;
+
+            CompletableFuture<byte[]> data;
+
+            if (method == ZipEntry.STORED) {
+                data = CompletableFuture.completedFuture(length == blockSize ? block : Arrays.copyOf(block, length));
+            }
+            else {
+                data = CompletableFuture.supplyAsync(() -> timedDeflate(block, length, blockDictionary, last), executor);
+            }
+
+            pendingWrites.add(new PendingWrite(data, null));
+            pendingBlocks++;
+
+            if (!last) {
+                dictionary = Arrays.copyOfRange(block, blockSize - DICTIONARY_SIZE, blockSize);
+                writePending(maxPendingBlocks);
+                return;
+            }
+
+            var crcValue = crc.getValue();
+            var totalSize = size;
+            pendingWrites.add(new PendingWrite(null, a -> a.finishEntry(crcValue, totalSize)));
+            writePending(maxPendingBlocks);
+
+            if (method == ZipEntry.STORED) {
+                storedBytes += size;
+                storedEntries++;
+            }
+            else {
+                deflatedBytes += size;
+                deflatedEntries++;
+            }
+        }
+    }
+
+    // Collects what is written in blocks for an EntryWriter; closing it finishes the entry
+    private class EntryOutputStream extends OutputStream {
+        private final EntryWriter entry;
+        private byte[] block = new byte[blockSize];
+        private int length = 0;
+        private boolean closed = false;
+
+        private EntryOutputStream(EntryWriter entry) {
+            this.entry = entry;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] { (byte) b }, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (closed) {
+                throw new IOException("Stream closed");
+            }
+
+            while (len > 0) {
+                var count = Math.min(len, blockSize - length);
+                System.arraycopy(b, off, block, length, count);
+                length += count;
+                off += count;
+                len -= count;
+
+                if (length == blockSize) {
+                    entry.addBlock(block, length, false);
+                    block = new byte[blockSize];
+                    length = 0;
+                }
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (!closed) {
+                closed = true;
+                entry.addBlock(block, length, true);
+            }
+        }
+    }
+
+    private interface ArchiveAction {
+        void run(ZipArchiveOutput archive) throws IOException;
+    }
+
+    private static class PendingWrite {
+        private final CompletableFuture<byte[]> compressed;
+        private final ArchiveAction action;
+
+        private PendingWrite(CompletableFuture<byte[]> compressed, ArchiveAction action) {
+            this.compressed = compressed;
+            this.action = action;
+        }
+    }
+}
@@ -0,0 +1,188 @@
+/*
+ * Copyright (C) 2023 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.vaultingest.core.rdabag.output;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+// Reads the underlying stream on another thread into a small ring of reusable buffers, so that reading from a slow volume (and any
+// digesting done by the underlying stream) overlaps with whatever the consumer of this stream does with the data. The reader never
+// gets more than the number of buffers ahead of the consumer. The executor must run the reader on a thread other than the
+// consumer's, and must not queue it behind other readers' consumers.
+public class PipelinedInputStream extends InputStream {
+    private static final Chunk END = new Chunk(null, 0, null);
+
+    private final InputStream in;
+    private final BlockingQueue<byte[]> freeBuffers;
+    private final BlockingQueue<Chunk> filledBuffers;
+    private final CompletableFuture<Void> reader;
+    private volatile boolean closed = false;
+    private Chunk current;
+    private int position;
+
+    public PipelinedInputStream(InputStream in, Executor executor, int bufferCount, int bufferSize) {
+        if (bufferCount < 2) {
+            throw new IllegalArgumentException("At least 2 buffers are needed, got " + bufferCount);
+        }
+
+        this.in = in;
+        this.freeBuffers = new ArrayBlockingQueue<>(bufferCount);
+        // one extra slot for the end marker
+        this.filledBuffers = new ArrayBlockingQueue<>(bufferCount + 1);
+
+        for (var i = 0; i < bufferCount; ++i) {
+            freeBuffers.add(new byte[bufferSize]);
+        }
+
+        this.reader = CompletableFuture.runAsync(this::readAll, executor);
+    }
+
+    private void readAll() {
+        try {
+            while (!closed) {
+                var buffer = freeBuffers.take();
+                var length = in.readNBytes(buffer, 0, buffer.length);
+
+                if (length > 0) {
+                    filledBuffers.put(new Chunk(buffer, length, null));
+                }
+
+                if (length < buffer.length) {
+                    break;
+                }
+            }
+
+            filledBuffers.put(END);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            filledBuffers.offer(new Chunk(null, 0, new IOException("Interrupted while reading ahead", e)));
+        }
+        catch (IOException | RuntimeException e) {
+            // there is always room for the marker, because every buffer in use is either free or filled
+            filledBuffers.offer(new Chunk(null, 0, e));
+        }
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!fill()) {
+            return -1;
+        }
+
+        return current.data[position++] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+
+        if (!fill()) {
+            return -1;
+        }
+
+        var count = Math.min(len, current.length - position);
+        System.arraycopy(current.data, position, b, off, count);
+        position += count;
+        return count;
+    }
+
+    @Override
+    public int available() {
+        return current != null && current.data != null ? current.length - position : 0;
+    }
+
+    // makes sure the current chunk has unread data; returns false at the end of the stream
+    private boolean fill() throws IOException {
+        if (current != null && current.data != null && position < current.length) {
+            return true;
+        }
+
+        if (current == END) {
+            return false;
+        }
+
+        if (current != null) {
+            freeBuffers.add(current.data);
+        }
+
+        current = take();
+        position = 0;
+
+        if (current.error != null) {
+            var error = current.error;
+            current = END;
+            throw error instanceof IOException ? (IOException) error : new IOException(error);
+        }
+
+        return current != END;
+    }
+
+    private Chunk take() throws IOException {
+        try {
+            return filledBuffers.take();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for data", e);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+
+        closed = true;
+
+        try {
+            // hand all buffers back, so a reader waiting for one sees that it must stop
+            while (current == null || (current != END && current.error == null)) {
+                if (current != null && current.data != null) {
+                    freeBuffers.add(current.data);
+                }
+
+                current = take();
+            }
+
+            // after this the reader is done with the underlying stream, and all its writes are visible to this thread
+            reader.join();
+        }
+        finally {
+            current = END;
+            in.close();
+        }
+    }
+
+    private static class Chunk {
+        private final byte[] data;
+        private final int length;
+        private final Exception error;
+
+        private Chunk(byte[] data, int length, Exception error) {
+            this.data = data;
+            this.length = length;
+            this.error = error;
+        }
+    }
+}
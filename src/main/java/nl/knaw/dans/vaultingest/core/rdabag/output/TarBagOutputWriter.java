@@ -0,0 +1,275 @@
+/*
+ * Copyright (C) 2023 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.vaultingest.core.rdabag.output;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+// Writes the bag as a POSIX (pax) tar stream, optionally gzip compressed. The archive is written strictly sequentially, which suits
+// tape backed storage. A tar header contains the size of the entry, so entries without a known size are read into memory first;
+// these are only the tag files, payload files always have a size. Content written by a serializer, which can be large (e.g. the
+// OAI-ORE of a deposit with many files), is written to a temporary file next to the archive first.
+@Slf4j
+public class TarBagOutputWriter implements BagOutputWriter {
+    private static final int BLOCK_SIZE = 512;
+    // tar archives are written in records of 20 blocks
+    private static final int RECORD_SIZE = 20 * BLOCK_SIZE;
+    private static final int BUFFER_SIZE = 1024 * 1024;
+    private static final int NAME_LENGTH = 100;
+    // largest size that fits in the 11 octal digits of the size field
+    private static final long MAX_USTAR_SIZE = 077777777777L;
+
+    private final OutputStream fileOutputStream;
+    private final OutputStream outputStream;
+    private final Path outputPath;
+    private final Path workingPath;
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private long written = 0;
+
+    public TarBagOutputWriter(Path output, TarCompression compression, Executor executor, int parallelism) throws IOException {
+        this.workingPath = output.getParent().resolve(output.getFileName().toString() + ".tmp");
+        removeFileIfExists(workingPath);
+
+        this.fileOutputStream = Files.newOutputStream(workingPath, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+
+        if (compression == TarCompression.GZIP) {
+            // the gzip stream collects the data in blocks, which are written in large chunks
+            this.outputStream = new ParallelGzipOutputStream(new BufferedOutputStream(fileOutputStream, BUFFER_SIZE), executor, parallelism);
+        }
+        else {
+            this.outputStream = new BufferedOutputStream(fileOutputStream, BUFFER_SIZE);
+        }
+
+        this.outputPath = output;
+    }
+
+    @Override
+    public void writeBagItem(InputStream inputStream, Path path) throws IOException {
+        writeBagItem(inputStream, path, -1);
+    }
+
+    @Override
+    public void writeBagItem(InputStream inputStream, Path path, long size) throws IOException {
+        log.debug("Writing bag item {}", path);
+        var name = path.toString().replaceFirst("^/+", "");
+
+        if (size < 0) {
+            var data = inputStream.readAllBytes();
+            size = data.length;
+            inputStream = new ByteArrayInputStream(data);
+        }
+
+        writeHeader(name, size);
+
+        var remaining = size;
+
+        while (remaining > 0) {
+            var count = inputStream.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+
+            if (count < 0) {
+                throw new IOException(String.format("Bag item %s has %d bytes instead of the announced %d", path, size - remaining, size));
+            }
+
+            write(buffer, 0, count);
+            remaining -= count;
+        }
+
+        if (inputStream.read() != -1) {
+            throw new IOException(String.format("Bag item %s has more than the announced %d bytes", path, size));
+        }
+
+        writePadding();
+    }
+
+    @Override
+    public void writeBagItem(BagItemContent content, Path path) throws IOException {
+        var spoolFile = Files.createTempFile(workingPath.getParent(), workingPath.getFileName().toString(), ".entry");
+
+        try {
+            try (var spoolOutputStream = new BufferedOutputStream(Files.newOutputStream(spoolFile, StandardOpenOption.WRITE), BUFFER_SIZE)) {
+                content.writeTo(spoolOutputStream);
+            }
+
+            writeBagItem(spoolFile, path);
+        }
+        finally {
+            Files.deleteIfExists(spoolFile);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            // two empty blocks mark the end of the archive, the last record is filled up with zeros
+            write(new byte[2 * BLOCK_SIZE], 0, 2 * BLOCK_SIZE);
+            var recordRemainder = (int) (written % RECORD_SIZE);
+
+            if (recordRemainder > 0) {
+                write(new byte[RECORD_SIZE - recordRemainder], 0, RECORD_SIZE - recordRemainder);
+            }
+
+            outputStream.close();
+        }
+        catch (IOException | RuntimeException e) {
+            // an incomplete archive must not end up in the output directory
+            discard();
+            throw e;
+        }
+
+        removeFileIfExists(outputPath);
+
+        log.debug("Moving file {} to {}", workingPath, outputPath);
+        Files.move(workingPath, outputPath);
+    }
+
+    @Override
+    public void discard() throws IOException {
+        try {
+            // the pending data is thrown away, so there is no point in compressing or flushing it
+            if (outputStream instanceof ParallelGzipOutputStream) {
+                ((ParallelGzipOutputStream) outputStream).abort();
+            }
+
+            fileOutputStream.close();
+        }
+        finally {
+            log.debug("Deleting incomplete file {}", workingPath);
+            Files.deleteIfExists(workingPath);
+        }
+    }
+
+    private void writeHeader(String name, long size) throws IOException {
+        var nameBytes = name.getBytes(StandardCharsets.UTF_8);
+        var paxRecords = new LinkedHashMap<String, String>();
+
+        if (nameBytes.length > NAME_LENGTH) {
+            paxRecords.put("path", name);
+        }
+
+        if (size > MAX_USTAR_SIZE) {
+            paxRecords.put("size", String.valueOf(size));
+        }
+
+        if (!paxRecords.isEmpty()) {
+            var paxData = getPaxData(paxRecords);
+            write(createHeader(getTruncatedName(nameBytes, "PaxHeaders/"), paxData.length, 'x'), 0, BLOCK_SIZE);
+            write(paxData, 0, paxData.length);
+            writePadding();
+        }
+
+        write(createHeader(getTruncatedName(nameBytes, ""), Math.min(size, MAX_USTAR_SIZE), '0'), 0, BLOCK_SIZE);
+    }
+
+    private byte[] createHeader(byte[] name, long size, char type) {
+        var header = new byte[BLOCK_SIZE];
+        System.arraycopy(name, 0, header, 0, name.length);
+        putOctal(header, 100, 8, 0644);
+        putOctal(header, 108, 8, 0);
+        putOctal(header, 116, 8, 0);
+        putOctal(header, 124, 12, size);
+        putOctal(header, 136, 12, System.currentTimeMillis() / 1000);
+        header[156] = (byte) type;
+        System.arraycopy("ustar\u000000".getBytes(StandardCharsets.US_ASCII), 0, header, 257, 8);
+
+        // the checksum is calculated with the checksum field filled with spaces
+        for (var i = 148; i < 156; ++i) {
+            header[i] = ' ';
+        }
+
+        var checksum = 0L;
+
+        for (var b : header) {
+            checksum += b & 0xff;
+        }
+
+        putOctal(header, 148, 7, checksum);
+        return header;
+    }
+
+    private static byte[] getTruncatedName(byte[] name, String prefix) {
+        var prefixBytes = prefix.getBytes(StandardCharsets.US_ASCII);
+        var length = Math.min(name.length, NAME_LENGTH - prefixBytes.length);
+
+        // do not cut a multibyte character in half
+        while (length < name.length && (name[length] & 0xc0) == 0x80) {
+            length--;
+        }
+
+        var result = new byte[prefixBytes.length + length];
+        System.arraycopy(prefixBytes, 0, result, 0, prefixBytes.length);
+        System.arraycopy(name, 0, result, prefixBytes.length, length);
+        return result;
+    }
+
+    // every record is "<length> <key>=<value>\n", where the length includes the length field itself
+    static byte[] getPaxData(Map<String, String> records) {
+        var result = new StringBuilder();
+
+        for (var record : records.entrySet()) {
+            var line = " " + record.getKey() + "=" + record.getValue() + "\n";
+            var lineLength = line.getBytes(StandardCharsets.UTF_8).length;
+            var length = lineLength + String.valueOf(lineLength).length();
+
+            // adding the length can make the length one digit longer
+            if (String.valueOf(length).length() > String.valueOf(lineLength).length()) {
+                length++;
+            }
+
+            result.append(length).append(line);
+        }
+
+        return result.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static void putOctal(byte[] header, int offset, int length, long value) {
+        // zero padded, followed by a NUL
+        var octal = String.format("%0" + (length - 1) + "o", value);
+        System.arraycopy(octal.getBytes(StandardCharsets.US_ASCII), 0, header, offset, length - 1);
+        header[offset + length - 1] = 0;
+    }
+
+    private void writePadding() throws IOException {
+        var remainder = (int) (written % BLOCK_SIZE);
+
+        if (remainder > 0) {
+            write(new byte[BLOCK_SIZE - remainder], 0, BLOCK_SIZE - remainder);
+        }
+    }
+
+    private void write(byte[] data, int offset, int length) throws IOException {
+        outputStream.write(data, offset, length);
+        written += length;
+    }
+
+    void removeFileIfExists(Path path) throws IOException {
+        if (Files.exists(path)) {
+            log.warn("File {} already exists, removing it", path);
+            Files.delete(path);
+        }
+    }
+}
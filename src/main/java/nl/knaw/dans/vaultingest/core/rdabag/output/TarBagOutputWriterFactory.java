@@ -0,0 +1,48 @@
+/*
+ * Copyright (C) 2023 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.vaultingest.core.rdabag.output;
+
+import nl.knaw.dans.vaultingest.core.deposit.Deposit;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.Executor;
+
+public class TarBagOutputWriterFactory implements BagOutputWriterFactory {
+    private final Path outputDir;
+    private final TarCompression compression;
+    private final Executor compressionExecutor;
+    private final int compressionThreads;
+
+    public TarBagOutputWriterFactory(Path outputDir, TarCompression compression, Executor compressionExecutor, int compressionThreads) {
+        this.outputDir = outputDir;
+        this.compression = compression;
+        this.compressionExecutor = compressionExecutor;
+        this.compressionThreads = compressionThreads;
+    }
+
+    @Override
+    public BagOutputWriter createBagOutputWriter(Deposit deposit) throws IOException {
+        var output = outputDir.resolve(BagOutputWriterFactory.outputName(deposit.getBagId(), deposit.getObjectVersion()) + compression.getExtension());
+
+        if (compressionExecutor != null) {
+            return new TarBagOutputWriter(output, compression, compressionExecutor, compressionThreads);
+        }
+
+        // compress on the current thread
+        return new TarBagOutputWriter(output, compression, Runnable::run, 1);
+    }
+}
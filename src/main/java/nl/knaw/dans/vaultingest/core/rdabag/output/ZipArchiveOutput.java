@@ -0,0 +1,363 @@
+/*
+ * Copyright (C) 2023 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.vaultingest.core.rdabag.output;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.ZipException;
+
+// Low level zip writer for entries whose (compressed) data is produced elsewhere. The local header of every entry is patched with the
+// CRC and sizes once the entry is finished, so no data descriptors are written and readers can go from one local header to the next
+// without scanning the data. When an entry may grow beyond 4 GB a Zip64 extra field is reserved in its local header, and the sizes in
+// the header itself are then set to 0xFFFFFFFF; the expected size decides this, so an entry must not exceed the size it announced.
+// Zip64 end records are added when the central directory needs them.
+class ZipArchiveOutput implements Closeable {
+    private static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+    private static final int CENTRAL_HEADER_SIGNATURE = 0x02014b50;
+    private static final int ZIP64_END_SIGNATURE = 0x06064b50;
+    private static final int ZIP64_LOCATOR_SIGNATURE = 0x07064b50;
+    private static final int END_SIGNATURE = 0x06054b50;
+
+    private static final int VERSION_DEFAULT = 20;
+    private static final int VERSION_ZIP64 = 45;
+    // bit 11: names are UTF-8
+    private static final int FLAG_UTF8 = 0x0800;
+    private static final int ZIP64_EXTRA_ID = 0x0001;
+    // header id, data size, size and compressed size
+    private static final int LOCAL_ZIP64_EXTRA_LENGTH = 20;
+    private static final int LOCAL_HEADER_CRC_OFFSET = 14;
+    private static final int LOCAL_HEADER_LENGTH = 30;
+    private static final long ZIP64_MAGIC = 0xFFFFFFFFL;
+    private static final int ZIP64_MAGIC_COUNT = 0xFFFF;
+    // deflate can make incompressible data slightly larger, so leave some room below 4 GB
+    private static final long ZIP64_THRESHOLD = 0xF0000000L;
+
+    static final int DEFAULT_BUFFER_SIZE = 1024 * 1024;
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer;
+    private final List<Entry> entries = new ArrayList<>();
+    private long written = 0;
+    private Entry current;
+
+    ZipArchiveOutput(FileChannel channel) {
+        this(channel, DEFAULT_BUFFER_SIZE);
+    }
+
+    ZipArchiveOutput(FileChannel channel, int bufferSize) {
+        this.channel = channel;
+        this.buffer = ByteBuffer.allocateDirect(bufferSize).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    // expectedSize is the uncompressed size of the entry, or -1 if it is not known and the entry may grow beyond 4 GB
+    void startEntry(String name, int method, long expectedSize) throws IOException {
+        if (current != null) {
+            throw new IllegalStateException("Entry " + current.getName() + " has not been finished");
+        }
+
+        var zip64 = expectedSize < 0 || expectedSize >= ZIP64_THRESHOLD;
+        current = new Entry(name.getBytes(StandardCharsets.UTF_8), method, zip64, toDosTime(System.currentTimeMillis()), written);
+
+        writeInt(LOCAL_HEADER_SIGNATURE);
+        writeShort(zip64 ? VERSION_ZIP64 : VERSION_DEFAULT);
+        writeShort(FLAG_UTF8);
+        writeShort(method);
+        writeInt(current.dosTime);
+        // crc, compressed size and size are patched when the entry is finished
+        writeInt(0);
+        writeInt(0);
+        writeInt(0);
+        writeShort(current.name.length);
+        writeShort(zip64 ? LOCAL_ZIP64_EXTRA_LENGTH : 0);
+        writeBytes(current.name, 0, current.name.length);
+
+        if (zip64) {
+            writeShort(ZIP64_EXTRA_ID);
+            writeShort(LOCAL_ZIP64_EXTRA_LENGTH - 4);
+            writeLong(0);
+            writeLong(0);
+        }
+
+        current.dataOffset = written;
+    }
+
+    void write(byte[] data, int offset, int length) throws IOException {
+        if (current == null) {
+            throw new IllegalStateException("No entry has been started");
+        }
+
+        writeBytes(data, offset, length);
+    }
+
+    void finishEntry(long crc, long size) throws IOException {
+        if (current == null) {
+            throw new IllegalStateException("No entry has been started");
+        }
+
+        current.crc = crc;
+        current.size = size;
+        current.compressedSize = written - current.dataOffset;
+
+        var sizesInZip64 = current.size >= ZIP64_MAGIC || current.compressedSize >= ZIP64_MAGIC;
+
+        if (sizesInZip64 && !current.zip64) {
+            throw new ZipException(String.format("Entry %s is larger than announced and does not fit without a Zip64 header", current.getName()));
+        }
+
+        // with a Zip64 extra field the sizes are only in the extra field (APPNOTE 4.5.3)
+        var header = ByteBuffer.allocate(12).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt((int) crc);
+        header.putInt((int) (current.zip64 ? ZIP64_MAGIC : current.compressedSize));
+        header.putInt((int) (current.zip64 ? ZIP64_MAGIC : current.size));
+        patch(header, current.headerOffset + LOCAL_HEADER_CRC_OFFSET);
+
+        if (current.zip64) {
+            var extra = ByteBuffer.allocate(16).order(ByteOrder.LITTLE_ENDIAN);
+            extra.putLong(current.size);
+            extra.putLong(current.compressedSize);
+            patch(extra, current.headerOffset + LOCAL_HEADER_LENGTH + current.name.length + 4);
+        }
+
+        entries.add(current);
+        current = null;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            finish();
+        }
+        finally {
+            channel.close();
+        }
+    }
+
+    // closes the file without finishing the archive, e.g. after an error
+    void abort() throws IOException {
+        channel.close();
+    }
+
+    private void finish() throws IOException {
+        if (current != null) {
+            throw new IllegalStateException("Entry " + current.getName() + " has not been finished");
+        }
+
+        var centralDirectoryOffset = written;
+
+        for (var entry : entries) {
+            writeCentralDirectoryHeader(entry);
+        }
+
+        var centralDirectorySize = written - centralDirectoryOffset;
+        var needsZip64 = entries.size() >= ZIP64_MAGIC_COUNT
+            || centralDirectoryOffset >= ZIP64_MAGIC
+            || centralDirectorySize >= ZIP64_MAGIC;
+
+        if (needsZip64) {
+            var zip64EndOffset = written;
+
+            writeInt(ZIP64_END_SIGNATURE);
+            // size of the remainder of this record
+            writeLong(44);
+            writeShort(VERSION_ZIP64);
+            writeShort(VERSION_ZIP64);
+            writeInt(0);
+            writeInt(0);
+            writeLong(entries.size());
+            writeLong(entries.size());
+            writeLong(centralDirectorySize);
+            writeLong(centralDirectoryOffset);
+
+            writeInt(ZIP64_LOCATOR_SIGNATURE);
+            writeInt(0);
+            writeLong(zip64EndOffset);
+            writeInt(1);
+        }
+
+        writeInt(END_SIGNATURE);
+        writeShort(0);
+        writeShort(0);
+        writeShort(Math.min(entries.size(), ZIP64_MAGIC_COUNT));
+        writeShort(Math.min(entries.size(), ZIP64_MAGIC_COUNT));
+        writeInt(Math.min(centralDirectorySize, ZIP64_MAGIC));
+        writeInt(Math.min(centralDirectoryOffset, ZIP64_MAGIC));
+        writeShort(0);
+
+        flush();
+        channel.force(false);
+    }
+
+    private void writeCentralDirectoryHeader(Entry entry) throws IOException {
+        var sizeInZip64 = entry.size >= ZIP64_MAGIC;
+        var compressedSizeInZip64 = entry.compressedSize >= ZIP64_MAGIC;
+        var offsetInZip64 = entry.headerOffset >= ZIP64_MAGIC;
+        var extraLength = (sizeInZip64 ? 8 : 0) + (compressedSizeInZip64 ? 8 : 0) + (offsetInZip64 ? 8 : 0);
+        var version = extraLength > 0 ? VERSION_ZIP64 : VERSION_DEFAULT;
+
+        writeInt(CENTRAL_HEADER_SIGNATURE);
+        writeShort(version);
+        writeShort(version);
+        writeShort(FLAG_UTF8);
+        writeShort(entry.method);
+        writeInt(entry.dosTime);
+        writeInt(entry.crc);
+        writeInt(compressedSizeInZip64 ? ZIP64_MAGIC : entry.compressedSize);
+        writeInt(sizeInZip64 ? ZIP64_MAGIC : entry.size);
+        writeShort(entry.name.length);
+        writeShort(extraLength > 0 ? extraLength + 4 : 0);
+        // comment length, disk number, internal and external attributes
+        writeShort(0);
+        writeShort(0);
+        writeShort(0);
+        writeInt(0);
+        writeInt(offsetInZip64 ? ZIP64_MAGIC : entry.headerOffset);
+        writeBytes(entry.name, 0, entry.name.length);
+
+        if (extraLength > 0) {
+            // the order of these fields is fixed by the specification
+            writeShort(ZIP64_EXTRA_ID);
+            writeShort(extraLength);
+
+            if (sizeInZip64) {
+                writeLong(entry.size);
+            }
+
+            if (compressedSizeInZip64) {
+                writeLong(entry.compressedSize);
+            }
+
+            if (offsetInZip64) {
+                writeLong(entry.headerOffset);
+            }
+        }
+    }
+
+    static long toDosTime(long millis) {
+        var date = LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneId.systemDefault());
+
+        if (date.getYear() < 1980) {
+            return (1 << 21) | (1 << 16);
+        }
+
+        return (long) (date.getYear() - 1980) << 25
+            | (long) date.getMonthValue() << 21
+            | (long) date.getDayOfMonth() << 16
+            | (long) date.getHour() << 11
+            | (long) date.getMinute() << 5
+            | (long) date.getSecond() >> 1;
+    }
+
+    private void writeShort(int value) throws IOException {
+        ensureRemaining(2);
+        buffer.putShort((short) value);
+        written += 2;
+    }
+
+    private void writeInt(long value) throws IOException {
+        ensureRemaining(4);
+        buffer.putInt((int) value);
+        written += 4;
+    }
+
+    private void writeLong(long value) throws IOException {
+        ensureRemaining(8);
+        buffer.putLong(value);
+        written += 8;
+    }
+
+    private void writeBytes(byte[] data, int offset, int length) throws IOException {
+        while (length > 0) {
+            ensureRemaining(1);
+            var count = Math.min(length, buffer.remaining());
+            buffer.put(data, offset, count);
+            offset += count;
+            length -= count;
+            written += count;
+        }
+    }
+
+    private void ensureRemaining(int length) throws IOException {
+        if (buffer.remaining() < length) {
+            flush();
+        }
+    }
+
+    private void flush() throws IOException {
+        buffer.flip();
+
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+
+        buffer.clear();
+    }
+
+    private void patch(ByteBuffer data, long position) throws IOException {
+        data.flip();
+        var flushed = written - buffer.position();
+
+        if (position >= flushed) {
+            // still in the buffer, which is the common case for small entries
+            var index = (int) (position - flushed);
+
+            for (var i = 0; i < data.limit(); ++i) {
+                buffer.put(index + i, data.get(i));
+            }
+
+            return;
+        }
+
+        // make sure the part of the header that may still be buffered is not written over the patch later
+        flush();
+
+        while (data.hasRemaining()) {
+            position += channel.write(data, position);
+        }
+    }
+
+    private static class Entry {
+        private final byte[] name;
+        private final int method;
+        private final boolean zip64;
+        private final long dosTime;
+        private final long headerOffset;
+        private long dataOffset;
+        private long crc;
+        private long size;
+        private long compressedSize;
+
+        private Entry(byte[] name, int method, boolean zip64, long dosTime, long headerOffset) {
+            this.name = name;
+            this.method = method;
+            this.zip64 = zip64;
+            this.dosTime = dosTime;
+            this.headerOffset = headerOffset;
+        }
+
+        private String getName() {
+            return new String(name, StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -19,28 +19,39 @@ import nl.knaw.dans.vaultingest.core.deposit.Deposit;
 
 import java.io.IOException;
 import java.nio.file.Path;
-import java.util.Objects;
+import java.util.concurrent.Executor;
 
 public class ZipBagOutputWriterFactory implements BagOutputWriterFactory {
     private final Path outputDir;
+    private final Executor compressionExecutor;
+    private final int compressionThreads;
+    private final ZipCompressionPolicy compressionPolicy;
 
     public ZipBagOutputWriterFactory(Path outputDir) {
+        this(outputDir, null, 1, ZipCompressionPolicy.DEFLATE_ALL);
+    }
+
+    public ZipBagOutputWriterFactory(Path outputDir, Executor compressionExecutor, int compressionThreads, ZipCompressionPolicy compressionPolicy) {
         this.outputDir = outputDir;
+        this.compressionExecutor = compressionExecutor;
+        this.compressionThreads = compressionThreads;
+        this.compressionPolicy = compressionPolicy;
     }
 
     @Override
     public BagOutputWriter createBagOutputWriter(Deposit deposit) throws IOException {
         var output = outputDir.resolve(outputFilename(deposit.getBagId(), deposit.getObjectVersion()));
-        return new ZipBagOutputWriter(output);
-    }
 
-    String outputFilename(String bagId, Long objectVersion) {
-        Objects.requireNonNull(bagId);
-        Objects.requireNonNull(objectVersion);
+        if (compressionExecutor != null) {
+            return new ParallelZipBagOutputWriter(output, compressionExecutor, compressionThreads, compressionPolicy);
+        }
 
-        // strip anything before all colons (if present), and also the colon itself
-        bagId = bagId.toLowerCase().replaceAll(".*:", "");
+        // without an executor the blocks are compressed on the current thread; the archive still gets sizes in its local headers
+        // instead of data descriptors, which ZipOutputStream cannot do for deflated entries
+        return new ParallelZipBagOutputWriter(output, Runnable::run, 1, compressionPolicy);
+    }
 
-        return String.format("vaas-%s-v%s.zip", bagId, objectVersion);
+    String outputFilename(String bagId, Long objectVersion) {
+        return BagOutputWriterFactory.outputName(bagId, objectVersion) + ".zip";
     }
 }
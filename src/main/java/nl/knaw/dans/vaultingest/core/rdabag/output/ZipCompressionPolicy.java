@@ -0,0 +1,95 @@
+/*
+ * Copyright (C) 2023 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.vaultingest.core.rdabag.output;
+
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.Locale;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+
+// Decides per entry whether it is worth deflating. Tag files (everything outside data/) are always deflated. Payload files are stored
+// when their extension is known to be compressed already, or when a sample of their content does not deflate well.
+public class ZipCompressionPolicy {
+    public static final ZipCompressionPolicy DEFLATE_ALL = new ZipCompressionPolicy(Set.of(), 1.0);
+
+    static final int SAMPLE_SIZE = 64 * 1024;
+    // below this size the overhead of deflating is negligible, so do not bother sampling
+    private static final int MIN_SAMPLE_SIZE = 4 * 1024;
+
+    private final Set<String> storedExtensions;
+    private final double maxCompressionRatio;
+
+    public ZipCompressionPolicy(Collection<String> storedExtensions, double maxCompressionRatio) {
+        this.storedExtensions = storedExtensions.stream()
+            .map(e -> e.toLowerCase(Locale.ROOT))
+            .collect(Collectors.toSet());
+        this.maxCompressionRatio = maxCompressionRatio;
+    }
+
+    public boolean isDeflateAll() {
+        return storedExtensions.isEmpty() && maxCompressionRatio >= 1.0;
+    }
+
+    int getMethod(Path path, byte[] sample, int length) {
+        if (!path.startsWith("data")) {
+            return ZipEntry.DEFLATED;
+        }
+
+        if (storedExtensions.contains(getExtension(path))) {
+            return ZipEntry.STORED;
+        }
+
+        if (maxCompressionRatio < 1.0 && length >= MIN_SAMPLE_SIZE && getCompressionRatio(sample, Math.min(length, SAMPLE_SIZE)) > maxCompressionRatio) {
+            return ZipEntry.STORED;
+        }
+
+        return ZipEntry.DEFLATED;
+    }
+
+    String getExtension(Path path) {
+        var filename = path.getFileName().toString();
+        var index = filename.lastIndexOf('.');
+
+        if (index < 0) {
+            return "";
+        }
+
+        return filename.substring(index + 1).toLowerCase(Locale.ROOT);
+    }
+
+    double getCompressionRatio(byte[] sample, int length) {
+        var deflater = new Deflater(Deflater.BEST_SPEED, true);
+
+        try {
+            deflater.setInput(sample, 0, length);
+            deflater.finish();
+
+            var buffer = new byte[SAMPLE_SIZE];
+
+            while (!deflater.finished()) {
+                deflater.deflate(buffer);
+            }
+
+            return (double) deflater.getBytesWritten() / length;
+        }
+        finally {
+            deflater.end();
+        }
+    }
+}
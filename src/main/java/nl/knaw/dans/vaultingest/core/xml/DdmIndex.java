@@ -0,0 +1,159 @@
+/*
+ * Copyright (C) 2023 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.vaultingest.core.xml;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+// Index of the metadata elements of a DDM document, built in a single walk over the document.
+// Almost every mapping selects direct children of /ddm:DDM/ddm:profile or /ddm:DDM/ddm:dcmiMetadata by name,
+// so looking them up here replaces evaluating dozens of absolute XPath expressions against the whole document.
+public final class DdmIndex implements XmlNamespaces {
+
+    private static final String USER_DATA_KEY = DdmIndex.class.getName();
+
+    private static final Map<String, String> prefixes = Map.of(
+        "dc", NAMESPACE_DC,
+        "dcterms", NAMESPACE_DCTERMS,
+        "dcx-dai", NAMESPACE_DCX_DAI,
+        "dcx-gml", NAMESPACE_DCX_GML,
+        "ddm", NAMESPACE_DDM
+    );
+
+    private final Section profile = new Section();
+    private final Section dcmiMetadata = new Section();
+    private final Set<String> xmlLangs = new LinkedHashSet<>();
+
+    private DdmIndex(Document document) {
+        var root = document.getDocumentElement();
+
+        if (root != null) {
+            collectXmlLangs(root);
+
+            if (isElement(root, NAMESPACE_DDM, "DDM")) {
+                for (var child = root.getFirstChild(); child != null; child = child.getNextSibling()) {
+                    if (isElement(child, NAMESPACE_DDM, "profile")) {
+                        profile.addChildren((Element) child);
+                    }
+                    else if (isElement(child, NAMESPACE_DDM, "dcmiMetadata")) {
+                        dcmiMetadata.addChildren((Element) child);
+                    }
+                }
+            }
+        }
+    }
+
+    // The index is kept on the document itself, so it is built only once however many mappings read from it
+    public static DdmIndex of(Node node) {
+        var document = node instanceof Document ? (Document) node : node.getOwnerDocument();
+
+        synchronized (document) {
+            var index = (DdmIndex) document.getUserData(USER_DATA_KEY);
+
+            if (index == null) {
+                index = new DdmIndex(document);
+                document.setUserData(USER_DATA_KEY, index, null);
+            }
+
+            return index;
+        }
+    }
+
+    // Children of /ddm:DDM/ddm:profile with any of the given prefixed names, in document order
+    public Stream<Element> profile(String... names) {
+        return profile.get(names);
+    }
+
+    // Children of /ddm:DDM/ddm:dcmiMetadata with any of the given prefixed names, in document order
+    public Stream<Element> dcmiMetadata(String... names) {
+        return dcmiMetadata.get(names);
+    }
+
+    // Distinct values of //@xml:lang, in document order
+    public Stream<String> xmlLangs() {
+        return xmlLangs.stream();
+    }
+
+    private void collectXmlLangs(Element element) {
+        if (element.hasAttributeNS(NAMESPACE_XML, "lang")) {
+            xmlLangs.add(element.getAttributeNS(NAMESPACE_XML, "lang"));
+        }
+
+        for (var child = element.getFirstChild(); child != null; child = child.getNextSibling()) {
+            if (child.getNodeType() == Node.ELEMENT_NODE) {
+                collectXmlLangs((Element) child);
+            }
+        }
+    }
+
+    private static boolean isElement(Node node, String namespace, String localName) {
+        return node.getNodeType() == Node.ELEMENT_NODE
+            && namespace.equals(node.getNamespaceURI())
+            && localName.equals(node.getLocalName());
+    }
+
+    private static String key(String namespace, String localName) {
+        return "{" + namespace + "}" + localName;
+    }
+
+    private static String key(String prefixedName) {
+        var parts = prefixedName.split(":", 2);
+
+        if (parts.length != 2 || !prefixes.containsKey(parts[0])) {
+            throw new IllegalArgumentException(String.format("Unsupported element name: %s", prefixedName));
+        }
+
+        return key(prefixes.get(parts[0]), parts[1]);
+    }
+
+    private static class Section {
+        private final List<Element> children = new ArrayList<>();
+        private final Map<String, List<Element>> childrenByName = new HashMap<>();
+
+        private void addChildren(Element parent) {
+            for (var child = parent.getFirstChild(); child != null; child = child.getNextSibling()) {
+                if (child.getNodeType() == Node.ELEMENT_NODE && child.getNamespaceURI() != null) {
+                    var element = (Element) child;
+                    children.add(element);
+                    childrenByName.computeIfAbsent(key(element.getNamespaceURI(), element.getLocalName()), k -> new ArrayList<>())
+                        .add(element);
+                }
+            }
+        }
+
+        private Stream<Element> get(String... names) {
+            if (names.length == 1) {
+                return childrenByName.getOrDefault(key(names[0]), Collections.emptyList()).stream();
+            }
+
+            // like an XPath union, elements with any of the names are returned in document order
+            var keys = Stream.of(names).map(DdmIndex::key).collect(Collectors.toSet());
+            return children.stream()
+                .filter(element -> keys.contains(key(element.getNamespaceURI(), element.getLocalName())));
+        }
+    }
+}
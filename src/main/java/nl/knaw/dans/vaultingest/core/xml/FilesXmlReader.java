@@ -0,0 +1,160 @@
+/*
+ * Copyright (C) 2023 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.vaultingest.core.xml;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+
+// Reads the /files:files/files:file elements of files.xml with a streaming parser. For deposits with millions of files
+// the DOM of files.xml takes gigabytes of heap; this reader only holds the element it is reading, and passes on just
+// the values that are used when converting the deposit.
+public class FilesXmlReader implements XmlNamespaces {
+    private final XMLInputFactory factory;
+
+    public FilesXmlReader() {
+        factory = XMLInputFactory.newFactory();
+        factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, true);
+        // same restrictions as XmlReader, which disallows doctype declarations
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+    }
+
+    public void readFiles(Path path, Consumer<FilesXmlFile> consumer) throws IOException, XMLStreamException {
+        try (var input = new BufferedInputStream(Files.newInputStream(path))) {
+            readFiles(input, consumer);
+        }
+    }
+
+    public void readFiles(InputStream input, Consumer<FilesXmlFile> consumer) throws XMLStreamException {
+        var reader = factory.createXMLStreamReader(input);
+
+        try {
+            reader.nextTag();
+
+            if (!isElement(reader, NAMESPACE_FILES_XML, "files")) {
+                return;
+            }
+
+            // accessibleToRights has only a few distinct values, share those instead of keeping a copy per file
+            var values = new HashMap<String, String>();
+
+            while (reader.next() != XMLStreamConstants.END_ELEMENT) {
+                if (reader.getEventType() != XMLStreamConstants.START_ELEMENT) {
+                    continue;
+                }
+
+                if (isElement(reader, NAMESPACE_FILES_XML, "file")) {
+                    consumer.accept(readFile(reader, values));
+                }
+                else {
+                    skipElement(reader);
+                }
+            }
+        }
+        finally {
+            reader.close();
+        }
+    }
+
+    private FilesXmlFile readFile(XMLStreamReader reader, Map<String, String> values) throws XMLStreamException {
+        var filepath = reader.getAttributeValue(null, "filepath");
+
+        if (filepath == null) {
+            throw new XMLStreamException("files:file element without filepath attribute", reader.getLocation());
+        }
+
+        String description = null;
+        String accessibleToRights = null;
+
+        while (reader.next() != XMLStreamConstants.END_ELEMENT) {
+            if (reader.getEventType() != XMLStreamConstants.START_ELEMENT) {
+                continue;
+            }
+
+            // like the XPath expressions used before, the first of each element is used
+            if (description == null && isElement(reader, NAMESPACE_DCTERMS, "description")) {
+                description = readText(reader);
+            }
+            else if (accessibleToRights == null && isElement(reader, NAMESPACE_FILES_XML, "accessibleToRights")) {
+                accessibleToRights = values.computeIfAbsent(readText(reader), value -> value);
+            }
+            else {
+                skipElement(reader);
+            }
+        }
+
+        return FilesXmlFile.builder()
+            .filepath(filepath)
+            .description(description)
+            .accessibleToRights(accessibleToRights)
+            .build();
+    }
+
+    // the text content of the current element, including that of nested elements, like Node.getTextContent()
+    private String readText(XMLStreamReader reader) throws XMLStreamException {
+        var text = new StringBuilder();
+        var depth = 1;
+
+        while (depth > 0) {
+            switch (reader.next()) {
+                case XMLStreamConstants.START_ELEMENT:
+                    depth++;
+                    break;
+                case XMLStreamConstants.END_ELEMENT:
+                    depth--;
+                    break;
+                case XMLStreamConstants.CHARACTERS:
+                case XMLStreamConstants.CDATA:
+                case XMLStreamConstants.SPACE:
+                    text.append(reader.getText());
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        return text.toString();
+    }
+
+    private void skipElement(XMLStreamReader reader) throws XMLStreamException {
+        var depth = 1;
+
+        while (depth > 0) {
+            var event = reader.next();
+
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                depth++;
+            }
+            else if (event == XMLStreamConstants.END_ELEMENT) {
+                depth--;
+            }
+        }
+    }
+
+    private boolean isElement(XMLStreamReader reader, String namespace, String localName) {
+        return namespace.equals(reader.getNamespaceURI()) && localName.equals(reader.getLocalName());
+    }
+}
@@ -22,60 +22,57 @@ import org.w3c.dom.NodeList;
 import javax.xml.namespace.NamespaceContext;
 import javax.xml.xpath.XPath;
 import javax.xml.xpath.XPathConstants;
+import javax.xml.xpath.XPathExpression;
 import javax.xml.xpath.XPathExpressionException;
 import javax.xml.xpath.XPathFactory;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
 public final class XPathEvaluator implements XmlNamespaces {
 
-    private static XPath xpath;
-
-    private static XPath getXpath() {
-        if (xpath == null) {
-            xpath = XPathFactory
-                .newInstance()
-                .newXPath();
-
-            final var namespaceMap = new HashMap<String, String>();
-            namespaceMap.put("xml", NAMESPACE_XML);
-            namespaceMap.put("dc", NAMESPACE_DC);
-            namespaceMap.put("dcx-dai", NAMESPACE_DCX_DAI);
-            namespaceMap.put("ddm", NAMESPACE_DDM);
-            namespaceMap.put("dcterms", NAMESPACE_DCTERMS);
-            namespaceMap.put("xsi", NAMESPACE_XSI);
-            namespaceMap.put("id-type", NAMESPACE_ID_TYPE);
-            namespaceMap.put("dcx-gml", NAMESPACE_DCX_GML);
-            namespaceMap.put("files", NAMESPACE_FILES_XML);
-            namespaceMap.put("gml", NAMESPACE_OPEN_GIS);
-            namespaceMap.put("wfs", NAMESPACE_EASY_WORKFLOW);
-            namespaceMap.put("damd", NAMESPACE_DAMD);
-            namespaceMap.put("agreements", NAMESPACE_AGREEMENTS);
-            namespaceMap.put("afm", NAMESPACE_AFM);
-            namespaceMap.put("datacite", NAMESPACE_DATACITE);
-
-            xpath.setNamespaceContext(new NamespaceContext() {
-
-                @Override
-                public String getNamespaceURI(String s) {
-                    return namespaceMap.get(s);
-                }
-
-                @Override
-                public String getPrefix(String s) {
-                    return null;
-                }
-
-                @Override
-                public Iterator<String> getPrefixes(String s) {
-                    return null;
-                }
-            });
-        }
-
-        return xpath;
+    // XPath and XPathExpression objects are not thread-safe, so every thread compiles and caches its own expressions
+    private static final ThreadLocal<CompiledExpressions> compiledExpressions = ThreadLocal.withInitial(CompiledExpressions::new);
+    private static final NamespaceContext namespaceContext = createNamespaceContext();
+
+    private static NamespaceContext createNamespaceContext() {
+        final var namespaceMap = new HashMap<String, String>();
+        namespaceMap.put("xml", NAMESPACE_XML);
+        namespaceMap.put("dc", NAMESPACE_DC);
+        namespaceMap.put("dcx-dai", NAMESPACE_DCX_DAI);
+        namespaceMap.put("ddm", NAMESPACE_DDM);
+        namespaceMap.put("dcterms", NAMESPACE_DCTERMS);
+        namespaceMap.put("xsi", NAMESPACE_XSI);
+        namespaceMap.put("id-type", NAMESPACE_ID_TYPE);
+        namespaceMap.put("dcx-gml", NAMESPACE_DCX_GML);
+        namespaceMap.put("files", NAMESPACE_FILES_XML);
+        namespaceMap.put("gml", NAMESPACE_OPEN_GIS);
+        namespaceMap.put("wfs", NAMESPACE_EASY_WORKFLOW);
+        namespaceMap.put("damd", NAMESPACE_DAMD);
+        namespaceMap.put("agreements", NAMESPACE_AGREEMENTS);
+        namespaceMap.put("afm", NAMESPACE_AFM);
+        namespaceMap.put("datacite", NAMESPACE_DATACITE);
+
+        return new NamespaceContext() {
+
+            @Override
+            public String getNamespaceURI(String s) {
+                return namespaceMap.get(s);
+            }
+
+            @Override
+            public String getPrefix(String s) {
+                return null;
+            }
+
+            @Override
+            public Iterator<String> getPrefixes(String s) {
+                return null;
+            }
+        };
     }
 
     public static Stream<Node> nodes(Node node, String... expressions) {
@@ -98,8 +95,8 @@ public final class XPathEvaluator implements XmlNamespaces {
         }
     }
 
-    private static synchronized Object evaluateXpath(Node node, String expr) throws XPathExpressionException {
-        return getXpath().compile(expr).evaluate(node, XPathConstants.NODESET);
+    private static Object evaluateXpath(Node node, String expr) throws XPathExpressionException {
+        return compiledExpressions.get().get(expr).evaluate(node, XPathConstants.NODESET);
     }
 
     private static Stream<Node> xpathToStream(Node node, String expression) throws XPathExpressionException {
@@ -117,4 +114,34 @@ public final class XPathEvaluator implements XmlNamespaces {
     private static Stream<String> xpathsToStreamOfStrings(Node node, String... expressions) throws XPathExpressionException {
         return xpathsToStream(node, expressions).map(Node::getTextContent);
     }
+
+    private static class CompiledExpressions {
+        // expressions are constants in the code, apart from a few with a namespace prefix filled in, but keep it bounded anyway
+        private static final int MAX_SIZE = 1000;
+
+        private final XPath xpath;
+        private final Map<String, XPathExpression> expressions = new LinkedHashMap<>(64, 0.75f, true) {
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, XPathExpression> eldest) {
+                return size() > MAX_SIZE;
+            }
+        };
+
+        private CompiledExpressions() {
+            xpath = XPathFactory.newInstance().newXPath();
+            xpath.setNamespaceContext(namespaceContext);
+        }
+
+        private XPathExpression get(String expression) throws XPathExpressionException {
+            var compiled = expressions.get(expression);
+
+            if (compiled == null) {
+                compiled = xpath.compile(expression);
+                expressions.put(expression, compiled);
+            }
+
+            return compiled;
+        }
+    }
 }
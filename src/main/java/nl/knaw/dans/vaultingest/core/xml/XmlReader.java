@@ -20,28 +20,36 @@ import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
 
 import javax.xml.XMLConstants;
+import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
 import java.io.IOException;
 import java.io.StringReader;
 import java.nio.file.Path;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 
 public class XmlReader {
+    // idle builders kept for reuse; more may be in use at the same time
+    private static final int MAX_IDLE_BUILDERS = 16;
 
-    public Document readXmlFile(Path path) throws ParserConfigurationException, IOException, SAXException {
-        var factory = getFactory();
+    // Looking up and configuring a DocumentBuilderFactory is expensive, so the configured builders are reused. A builder
+    // is not thread-safe, so it is used by one thread at a time and reset before it is given to the next.
+    private final BlockingQueue<DocumentBuilder> builders = new ArrayBlockingQueue<>(MAX_IDLE_BUILDERS);
+    private DocumentBuilderFactory factory;
 
-        return factory
-            .newDocumentBuilder()
-            .parse(path.toFile());
+    public Document readXmlFile(Path path) throws ParserConfigurationException, IOException, SAXException {
+        var builder = borrowBuilder();
+        var document = builder.parse(path.toFile());
+        returnBuilder(builder);
+        return document;
     }
 
     public Document readXmlString(String str) throws ParserConfigurationException, IOException, SAXException {
-        var factory = getFactory();
-
-        return factory
-            .newDocumentBuilder()
-            .parse(new InputSource(new StringReader(str)));
+        var builder = borrowBuilder();
+        var document = builder.parse(new InputSource(new StringReader(str)));
+        returnBuilder(builder);
+        return document;
     }
 
     DocumentBuilderFactory getFactory() throws ParserConfigurationException {
@@ -51,4 +59,27 @@ public class XmlReader {
         factory.setNamespaceAware(true);
         return factory;
     }
+
+    private DocumentBuilder borrowBuilder() throws ParserConfigurationException {
+        var builder = builders.poll();
+
+        if (builder != null) {
+            return builder;
+        }
+
+        // the factory itself is not thread-safe
+        synchronized (this) {
+            if (factory == null) {
+                factory = getFactory();
+            }
+
+            return factory.newDocumentBuilder();
+        }
+    }
+
+    // only builders that parsed a document successfully are returned, so a failed parse can not leave state behind
+    private void returnBuilder(DocumentBuilder builder) {
+        builder.reset();
+        builders.offer(builder);
+    }
 }
@@ -0,0 +1,80 @@
+/*
+ * Copyright (C) 2023 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.vaultingest.client;
+
+import com.codahale.metrics.MetricRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ConcurrencyLimiterTest {
+
+    @Test
+    void call_should_not_run_more_than_max_calls_at_the_same_time() throws Exception {
+        var metrics = new MetricRegistry();
+        var limiter = new ConcurrencyLimiter("test", 2, metrics);
+        var executor = Executors.newFixedThreadPool(8);
+        var running = new AtomicInteger();
+        var maxRunning = new AtomicInteger();
+        var done = new CountDownLatch(20);
+
+        try {
+            for (var i = 0; i < 20; i++) {
+                executor.execute(() -> {
+                    try {
+                        limiter.call(() -> {
+                            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                            Thread.sleep(10);
+                            running.decrementAndGet();
+                            return null;
+                        });
+                    }
+                    catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    done.countDown();
+                });
+            }
+
+            assertThat(done.await(10, TimeUnit.SECONDS)).isTrue();
+        }
+        finally {
+            executor.shutdownNow();
+        }
+
+        assertThat(maxRunning.get()).isEqualTo(2);
+        assertThat(metrics.timer(MetricRegistry.name(ConcurrencyLimiter.class, "test", "wait")).getCount()).isEqualTo(20);
+        assertThat(limiter.getWaiting()).isZero();
+    }
+
+    @Test
+    void call_should_release_slot_when_call_fails() throws Exception {
+        var limiter = new ConcurrencyLimiter(1);
+
+        assertThatThrownBy(() -> limiter.call(() -> {
+            throw new IOException("service unavailable");
+        })).isInstanceOf(IOException.class);
+
+        assertThat(limiter.call(() -> "second call")).isEqualTo("second call");
+    }
+}
@@ -34,7 +34,11 @@ import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
 
 import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.ArrayList;
 import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
@@ -137,6 +141,72 @@ class DepositToBagProcessTest {
         assertThat(depositManager.getLastMessage()).isEqualTo("Invalid deposit!");
     }
 
+    @Test
+    void process_should_discard_partial_bag_when_writing_it_fails() throws Exception {
+        var rdaBagWriter = Mockito.mock(RdaBagWriter.class);
+        var output = new InMemoryOutputWriter();
+        var vaultCatalogService = Mockito.mock(VaultCatalogRepository.class);
+        var depositValidator = Mockito.mock(BagValidator.class);
+
+        Mockito.when(vaultCatalogService.registerDeposit(Mockito.any()))
+            .thenReturn(VaultCatalogDeposit.builder().objectVersion(1L).build());
+
+        // e.g. a payload file that does not match its checksum after part of the bag has been written
+        Mockito.doThrow(new InvalidDepositException("Checksum mismatch"))
+            .when(rdaBagWriter).write(Mockito.any(), Mockito.any());
+
+        var deposit = getBasicDeposit();
+        var depositManager = TestDepositManager.ofDeposit(deposit);
+        var depositToBagProcess = new DepositToBagProcess(
+            () -> rdaBagWriter,
+            value -> output,
+            vaultCatalogService,
+            depositValidator,
+            new IdMinter(),
+            depositManager);
+
+        var outbox = Mockito.mock(Outbox.class);
+
+        depositToBagProcess.process(Path.of("input/path/"), outbox);
+        Mockito.verify(outbox).move(Path.of("input/path/"), Deposit.State.REJECTED);
+
+        assertThat(output.isDiscarded()).isTrue();
+        assertThat(output.isClosed()).isFalse();
+    }
+
+    @Test
+    void process_should_discard_partial_bag_when_writing_it_fails_with_an_error() throws Exception {
+        var rdaBagWriter = Mockito.mock(RdaBagWriter.class);
+        var output = new InMemoryOutputWriter();
+        var vaultCatalogService = Mockito.mock(VaultCatalogRepository.class);
+        var depositValidator = Mockito.mock(BagValidator.class);
+
+        Mockito.when(vaultCatalogService.registerDeposit(Mockito.any()))
+            .thenReturn(VaultCatalogDeposit.builder().objectVersion(1L).build());
+
+        // e.g. a large tag file that is read into memory
+        Mockito.doThrow(new OutOfMemoryError("Java heap space"))
+            .when(rdaBagWriter).write(Mockito.any(), Mockito.any());
+
+        var deposit = getBasicDeposit();
+        var depositManager = TestDepositManager.ofDeposit(deposit);
+        var depositToBagProcess = new DepositToBagProcess(
+            () -> rdaBagWriter,
+            value -> output,
+            vaultCatalogService,
+            depositValidator,
+            new IdMinter(),
+            depositManager);
+
+        var outbox = Mockito.mock(Outbox.class);
+
+        depositToBagProcess.process(Path.of("input/path/"), outbox);
+        Mockito.verify(outbox).move(Path.of("input/path/"), Deposit.State.FAILED);
+
+        assertThat(output.isDiscarded()).isTrue();
+        assertThat(output.isClosed()).isFalse();
+    }
+
     @Test
     void process_should_move_deposit_to_REJECTED_outbox_when_vaultCatalog_returns_no_result_for_update() throws Exception {
         var rdaBagWriter = getWriter();
@@ -210,6 +280,61 @@ class DepositToBagProcessTest {
             );
     }
 
+    @Test
+    void processDeposit_should_write_valid_manifests_when_deposits_are_processed_concurrently() throws Exception {
+        var numberOfDeposits = 16;
+        var vaultCatalogService = Mockito.mock(VaultCatalogRepository.class);
+        var depositManager = Mockito.mock(DepositManager.class);
+        var depositValidator = Mockito.mock(BagValidator.class);
+        var rdaBagWriterFactory = new DefaultRdaBagWriterFactory(
+            new ObjectMapper(),
+            LanguageResolverFactory.getInstance(),
+            CountryResolverFactory.getInstance()
+        );
+
+        Mockito.when(vaultCatalogService.registerDeposit(Mockito.any()))
+            .thenReturn(VaultCatalogDeposit.builder().objectVersion(1L).build());
+
+        var outputs = new ArrayList<InMemoryOutputWriter>();
+        var tasks = new ArrayList<Callable<Void>>();
+
+        for (var i = 0; i < numberOfDeposits; ++i) {
+            var output = new InMemoryOutputWriter();
+            var deposit = getBasicDeposit();
+            var depositToBagProcess = new DepositToBagProcess(
+                rdaBagWriterFactory,
+                d -> output,
+                vaultCatalogService,
+                depositValidator,
+                new IdMinter(),
+                depositManager);
+
+            outputs.add(output);
+            tasks.add(() -> {
+                depositToBagProcess.processDeposit(deposit);
+                return null;
+            });
+        }
+
+        var executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+
+        try {
+            for (var result : executor.invokeAll(tasks)) {
+                // rethrows any exception thrown by the task
+                result.get();
+            }
+        }
+        finally {
+            executor.shutdown();
+        }
+
+        for (var output : outputs) {
+            assertThat(output.isClosed()).isTrue();
+            assertManifestMatchesContent(output, Path.of("manifest-sha1.txt"), 4);
+            assertManifestMatchesContent(output, Path.of("tagmanifest-sha1.txt"), 9);
+        }
+    }
+
     @Test
     void process_should_process_nonUpdate_deposit() throws Exception {
         var deposit = getBasicDeposit();
@@ -259,6 +384,26 @@ class DepositToBagProcessTest {
             .isInstanceOf(InvalidDepositException.class);
     }
 
+    private void assertManifestMatchesContent(InMemoryOutputWriter output, Path manifest, int expectedEntries) throws Exception {
+        var lines = output.getData().get(manifest).split("\n");
+        assertThat(lines).hasSize(expectedEntries);
+
+        for (var line : lines) {
+            var parts = line.split("  ", 2);
+            var content = output.getBytes().get(Path.of(parts[1]));
+            assertThat(content).as("content of %s", parts[1]).isNotNull();
+
+            var digest = MessageDigest.getInstance("SHA-1").digest(content);
+            var expected = new StringBuilder();
+
+            for (var b : digest) {
+                expected.append(String.format("%02x", b));
+            }
+
+            assertThat(parts[0]).as("checksum of %s in %s", parts[1], manifest).isEqualTo(expected.toString());
+        }
+    }
+
     private Deposit getBasicDeposit() {
         var manager = new TestDepositManager();
         return manager.loadDeposit(Path.of("/input/integration-test-complete-bag/c169676f-5315-4d86-bde0-a62dbc915228/"));
@@ -0,0 +1,69 @@
+/*
+ * Copyright (C) 2023 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.vaultingest.core.datacite;
+
+import nl.knaw.dans.vaultingest.core.xml.XmlReader;
+import nl.knaw.dans.vaultingest.domain.Resource;
+import nl.knaw.dans.vaultingest.domain.ResourceType;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DataciteSerializerTest {
+
+    @Test
+    void serialize_should_write_same_document_to_stream_as_to_string() throws Exception {
+        var serializer = new DataciteSerializer();
+        var resource = getResource("Title with ë and <markup>");
+
+        var string = serializer.serialize(resource);
+        var outputStream = new ByteArrayOutputStream();
+        serializer.serialize(resource, outputStream);
+
+        var xmlReader = new XmlReader();
+        var expected = xmlReader.readXmlString(string);
+        var actual = xmlReader.readXmlString(outputStream.toString(StandardCharsets.UTF_8));
+
+        assertThat(actual.isEqualNode(expected)).isTrue();
+    }
+
+    @Test
+    void serialize_should_reuse_marshallers() throws Exception {
+        var serializer = new DataciteSerializer();
+
+        assertThat(serializer.serialize(getResource("First"))).contains("<title>First</title>");
+        assertThat(serializer.serialize(getResource("Second"))).contains("<title>Second</title>");
+    }
+
+    private Resource getResource(String titleValue) {
+        var resource = new Resource();
+        var resourceType = new Resource.ResourceType();
+        resourceType.setResourceTypeGeneral(ResourceType.DATASET);
+        resource.setResourceType(resourceType);
+
+        var titles = new Resource.Titles();
+        var title = new Resource.Titles.Title();
+        title.setValue(titleValue);
+        titles.getTitle().add(title);
+        resource.setTitles(titles);
+        resource.setPublicationYear("2023");
+
+        return resource;
+    }
+}
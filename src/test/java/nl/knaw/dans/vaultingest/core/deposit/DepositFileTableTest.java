@@ -0,0 +1,144 @@
+/*
+ * Copyright (C) 2023 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.vaultingest.core.deposit;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.UUID;
+
+import static gov.loc.repository.bagit.hash.StandardSupportedAlgorithms.MD5;
+import static gov.loc.repository.bagit.hash.StandardSupportedAlgorithms.SHA1;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DepositFileTableTest {
+
+    final Path TEST_DIR = Path.of("target/test", getClass().getSimpleName());
+    final Path BAG_DIR = Path.of("/deposit/bag");
+
+    @BeforeEach
+    void setUp() throws IOException {
+        FileUtils.deleteQuietly(TEST_DIR.toFile());
+        Files.createDirectories(TEST_DIR);
+    }
+
+    @Test
+    void get_should_return_files_as_they_were_added() {
+        var table = DepositFileTable.builder(BAG_DIR)
+            .add("data/a/b/file1.txt", "A description", "KNOWN", BAG_DIR.resolve("data/a/b/file1.txt"),
+                Map.of(MD5, "0123456789abcdef0123456789abcdef", SHA1, "0123456789abcdef0123456789abcdef01234567"))
+            .add("file2.txt", null, null, BAG_DIR.resolve("data/renamed"), null)
+            .build();
+
+        assertThat(table).hasSize(2);
+
+        var file1 = table.get(0);
+        assertThat(file1.getPath()).isEqualTo(Path.of("data/a/b/file1.txt"));
+        assertThat(file1.getDescription()).isEqualTo("A description");
+        assertThat(file1.getAccessibleToRights()).isEqualTo("KNOWN");
+        assertThat(file1.getPhysicalPath()).isEqualTo(BAG_DIR.resolve("data/a/b/file1.txt"));
+        assertThat(file1.getChecksums()).containsOnly(
+            Map.entry(MD5, "0123456789abcdef0123456789abcdef"),
+            Map.entry(SHA1, "0123456789abcdef0123456789abcdef01234567"));
+
+        var file2 = table.get(1);
+        assertThat(file2.getPath()).isEqualTo(Path.of("file2.txt"));
+        assertThat(file2.getDescription()).isNull();
+        assertThat(file2.getAccessibleToRights()).isNull();
+        assertThat(file2.getPhysicalPath()).isEqualTo(BAG_DIR.resolve("data/renamed"));
+    }
+
+    @Test
+    void get_should_return_same_id_every_time() {
+        var table = DepositFileTable.builder(BAG_DIR)
+            .add("data/file1.txt", null, null, BAG_DIR.resolve("data/file1.txt"), null)
+            .add("data/file2.txt", null, null, BAG_DIR.resolve("data/file2.txt"), null)
+            .build();
+
+        assertThat(table.get(0).getId()).isEqualTo(table.get(0).getId());
+        assertThat(table.get(0).getId()).isNotEqualTo(table.get(1).getId());
+        assertThat(UUID.fromString(table.get(0).getId()).toString()).isEqualTo(table.get(0).getId());
+    }
+
+    @Test
+    void get_should_return_checksums_that_are_not_lowercase_hex_unchanged() {
+        var table = DepositFileTable.builder(BAG_DIR)
+            .add("data/file1.txt", null, null, BAG_DIR.resolve("data/file1.txt"), Map.of(MD5, "0123456789ABCDEF0123456789ABCDEF"))
+            .add("data/file2.txt", null, null, BAG_DIR.resolve("data/file2.txt"), Map.of(MD5, "too short"))
+            .build();
+
+        assertThat(table.get(0).getChecksums()).containsOnly(Map.entry(MD5, "0123456789ABCDEF0123456789ABCDEF"));
+        assertThat(table.get(1).getChecksums()).containsOnly(Map.entry(MD5, "too short"));
+    }
+
+    @Test
+    void build_should_keep_checksums_off_heap_after_threshold() throws Exception {
+        var count = 70000;
+        var builder = DepositFileTable.builder(BAG_DIR, 1000, TEST_DIR);
+
+        for (var i = 0; i < count; ++i) {
+            var filepath = String.format("data/dir%d/file%d.txt", i % 10, i);
+            builder.add(filepath, null, "ANONYMOUS", BAG_DIR.resolve(filepath), Map.of(MD5, md5(i)));
+        }
+
+        var table = builder.build();
+
+        // the mapped file is removed when the table is built
+        try (var files = Files.list(TEST_DIR)) {
+            assertThat(files).isEmpty();
+        }
+
+        assertThat(table).hasSize(count);
+
+        for (var i = 0; i < count; i += 997) {
+            assertThat(table.get(i).getPath()).isEqualTo(Path.of(String.format("data/dir%d/file%d.txt", i % 10, i)));
+            assertThat(table.get(i).getChecksums()).containsOnly(Map.entry(MD5, md5(i)));
+        }
+
+        assertThat(table.get(count - 1).getChecksums()).containsOnly(Map.entry(MD5, md5(count - 1)));
+    }
+
+    @Test
+    void close_should_close_mapped_file_when_table_is_not_built() throws Exception {
+        var builder = DepositFileTable.builder(BAG_DIR, 1000, TEST_DIR);
+
+        // the second block of checksums is the first that is stored off-heap
+        for (var i = 0; i < 70000; ++i) {
+            var filepath = String.format("data/file%d.txt", i);
+            builder.add(filepath, null, null, BAG_DIR.resolve(filepath), Map.of(MD5, md5(i)));
+        }
+
+        assertThat(builder.isOffHeapStorageOpen()).isTrue();
+
+        // e.g. because files.xml turned out to be invalid
+        builder.close();
+
+        assertThat(builder.isOffHeapStorageOpen()).isFalse();
+
+        try (var files = Files.list(TEST_DIR)) {
+            assertThat(files).isEmpty();
+        }
+    }
+
+    private String md5(int i) {
+        return String.format("%032x", i * 0x9E3779B97F4A7C15L);
+    }
+}
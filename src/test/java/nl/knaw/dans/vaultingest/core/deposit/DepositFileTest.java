@@ -15,9 +15,7 @@
  */
 package nl.knaw.dans.vaultingest.core.deposit;
 
-import nl.knaw.dans.vaultingest.core.xml.XmlReader;
 import org.junit.jupiter.api.Test;
-import org.w3c.dom.Node;
 
 import java.nio.file.Path;
 
@@ -28,7 +26,7 @@ class DepositFileTest {
     @Test
     void getDirectoryLabel_should_return_same_path_for_valid_characters() throws Exception {
         var depositFile = DepositFile.builder()
-            .filesXmlNode(getFilesXmlNode("data/only/valid/characters.txt"))
+            .filepath("data/only/valid/characters.txt")
             .build();
 
         assertThat(depositFile.getDirectoryLabel()).isEqualTo(Path.of("data/only/valid/"));
@@ -37,17 +35,9 @@ class DepositFileTest {
     @Test
     void getFilename_should_return_same_value_for_valid_characters() throws Exception {
         var depositFile = DepositFile.builder()
-            .filesXmlNode(getFilesXmlNode("data/valid/characters.txt"))
+            .filepath("data/valid/characters.txt")
             .build();
 
         assertThat(depositFile.getFilename()).isEqualTo(Path.of("characters.txt"));
     }
-
-    Node getFilesXmlNode(String path) throws Exception {
-        var node = new XmlReader().readXmlString("<file xmlns=\"http://easy.dans.knaw.nl/schemas/bag/metadata/files/\" />");
-        node.getDocumentElement().setAttribute("filepath", path);
-
-        return node.getDocumentElement();
-    }
-
 }
\ No newline at end of file
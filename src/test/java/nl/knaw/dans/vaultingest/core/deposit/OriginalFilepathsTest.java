@@ -16,10 +16,16 @@
 package nl.knaw.dans.vaultingest.core.deposit;
 
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
 
+import java.io.BufferedReader;
+import java.io.StringReader;
 import java.nio.file.Path;
+import java.time.Duration;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
 
 class OriginalFilepathsTest {
 
@@ -81,4 +87,78 @@ class OriginalFilepathsTest {
         var pathOnDisk = Path.of("data/no/mapping/here");
         assertThat(paths.getPhysicalPath(pathOnDisk)).isEqualTo(pathOnDisk);
     }
-}
\ No newline at end of file
+
+    @Test
+    void read_should_split_lines_at_first_whitespace() throws Exception {
+        var content = "data/123456789  data/in/a/nice/way\n"
+            + "\n"
+            + "data/abc-def\tdata/in/another path/ with spaces\n"
+            + "   \n";
+
+        var paths = OriginalFilepaths.read(new BufferedReader(new StringReader(content)), "original-filepaths.txt");
+
+        assertThat(paths.getPhysicalPath(Path.of("data/in/a/nice/way"))).isEqualTo(Path.of("data/123456789"));
+        assertThat(paths.getPhysicalPath(Path.of("data/in/another path/ with spaces"))).isEqualTo(Path.of("data/abc-def"));
+        assertThat(paths.getLogicalPath(Path.of("data/abc-def"))).isEqualTo(Path.of("data/in/another path/ with spaces"));
+    }
+
+    @Test
+    void read_should_reject_line_without_logical_path() {
+        var content = "data/123456789 data/in/a/nice/way\ndata/abc-def\n";
+
+        assertThatThrownBy(() -> OriginalFilepaths.read(new BufferedReader(new StringReader(content)), "original-filepaths.txt"))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessageContaining("Line 2 of original-filepaths.txt");
+    }
+
+    @Test
+    void addMapping_should_keep_first_mapping_of_path() {
+        var paths = new OriginalFilepaths();
+        paths.addMapping(Path.of("data/a.txt"), Path.of("data/1"));
+        paths.addMapping(Path.of("data/a.txt"), Path.of("data/2"));
+
+        assertThat(paths.getPhysicalPath(Path.of("data/a.txt"))).isEqualTo(Path.of("data/1"));
+        assertThat(paths.getLogicalPath(Path.of("data/2"))).isEqualTo(Path.of("data/a.txt"));
+    }
+
+    @Test
+    void read_should_index_every_mapping_of_a_large_file() throws Exception {
+        // a migration bag may have a mapping for every file
+        var numberOfMappings = 50_000;
+        var content = new StringBuilder();
+
+        for (var i = 0; i < numberOfMappings; ++i) {
+            content.append("data/").append(i).append(" data/dir ").append(i % 1000).append("/file ").append(i).append(".txt\n");
+        }
+
+        var paths = OriginalFilepaths.read(new BufferedReader(new StringReader(content.toString())), "original-filepaths.txt");
+
+        for (var i = 0; i < numberOfMappings; ++i) {
+            var logicalPath = Path.of("data/dir " + (i % 1000) + "/file " + i + ".txt");
+            var physicalPath = Path.of("data/" + i);
+            assertThat(paths.getPhysicalPath(logicalPath)).isEqualTo(physicalPath);
+            assertThat(paths.getLogicalPath(physicalPath)).isEqualTo(logicalPath);
+        }
+    }
+
+    // run with -Dbenchmarks=true; with a search through all mappings per file this takes hours instead of seconds
+    @Test
+    @EnabledIfSystemProperty(named = "benchmarks", matches = "true")
+    void getPhysicalPath_should_not_slow_down_with_number_of_mappings() {
+        var numberOfMappings = 1_000_000;
+        var content = new StringBuilder();
+
+        for (var i = 0; i < numberOfMappings; ++i) {
+            content.append("data/").append(i).append(" data/dir ").append(i % 1000).append("/file ").append(i).append(".txt\n");
+        }
+
+        assertTimeoutPreemptively(Duration.ofSeconds(60), () -> {
+            var paths = OriginalFilepaths.read(new BufferedReader(new StringReader(content.toString())), "original-filepaths.txt");
+
+            for (var i = 0; i < numberOfMappings; ++i) {
+                var logicalPath = Path.of("data/dir " + (i % 1000) + "/file " + i + ".txt");
+                assertThat(paths.getPhysicalPath(logicalPath)).isEqualTo(Path.of("data/" + i));
+            }
+        });
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright (C) 2023 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.vaultingest.core.inbox;
+
+import com.codahale.metrics.MetricRegistry;
+import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class IngestAreaItemGateTest {
+
+    private final Path PATH = Path.of("target/" + this.getClass().getSimpleName() + "/inbox");
+
+    @BeforeEach
+    void setUp() throws Exception {
+        FileUtils.deleteQuietly(PATH.toFile());
+        Files.createDirectories(PATH);
+    }
+
+    @Test
+    void onEvent_should_report_item_once_until_it_is_removed() throws Exception {
+        var deposit = Files.createDirectories(PATH.resolve("deposit"));
+        var items = new ArrayList<Path>();
+        var gate = new IngestAreaItemGate(0, items::add, new IngestAreaWatcherMetrics(new MetricRegistry()));
+
+        // e.g. seen when listing the existing items and again by the monitor
+        gate.onEvent(deposit);
+        gate.onEvent(deposit);
+        assertThat(items).containsExactly(deposit);
+
+        gate.onRemoved(deposit);
+        gate.onEvent(deposit);
+        assertThat(items).containsExactly(deposit, deposit);
+    }
+
+    @Test
+    void retainExisting_should_forget_items_that_are_gone() throws Exception {
+        var deposit = Files.createDirectories(PATH.resolve("deposit"));
+        var items = new ArrayList<Path>();
+        var gate = new IngestAreaItemGate(0, items::add, new IngestAreaWatcherMetrics(new MetricRegistry()));
+
+        gate.onEvent(deposit);
+        Files.delete(deposit);
+        gate.retainExisting();
+
+        Files.createDirectories(deposit);
+        gate.onEvent(deposit);
+        assertThat(items).containsExactly(deposit, deposit);
+    }
+
+    @Test
+    void onEvent_should_wait_for_deposit_properties_with_state() throws Exception {
+        var deposit = Files.createDirectories(PATH.resolve("deposit"));
+        Files.createDirectories(deposit.resolve("bag/data"));
+        Files.writeString(deposit.resolve("bag/data/file.txt"), "content");
+
+        var items = new LinkedBlockingQueue<Path>();
+        var gate = new IngestAreaItemGate(300, items::add, new IngestAreaWatcherMetrics(new MetricRegistry()));
+        gate.onEvent(deposit);
+        gate.onEvent(deposit);
+
+        assertThat(items.poll(1000, TimeUnit.MILLISECONDS)).isNull();
+
+        Files.writeString(deposit.resolve("deposit.properties"), "depositor.userId=user001\n");
+        assertThat(items.poll(1000, TimeUnit.MILLISECONDS)).isNull();
+
+        Files.writeString(deposit.resolve("deposit.properties"), "depositor.userId=user001\nstate.label=SUBMITTED\n");
+        assertThat(items.poll(10, TimeUnit.SECONDS)).isEqualTo(deposit);
+        assertThat(items.poll(1000, TimeUnit.MILLISECONDS)).isNull();
+    }
+
+    @Test
+    void onEvent_should_wait_while_files_deep_in_deposit_change() throws Exception {
+        var deposit = Files.createDirectories(PATH.resolve("deposit"));
+        Files.writeString(deposit.resolve("deposit.properties"), "state.label=SUBMITTED\n");
+        var data = Files.createDirectories(deposit.resolve("bag/data"));
+
+        var items = new LinkedBlockingQueue<Path>();
+        var gate = new IngestAreaItemGate(500, items::add, new IngestAreaWatcherMetrics(new MetricRegistry()));
+        gate.onEvent(deposit);
+
+        // these do not change the modification time of the deposit directory itself
+        for (var i = 0; i < 4; ++i) {
+            Thread.sleep(250);
+            Files.writeString(data.resolve("file.txt"), "content ".repeat(i + 1));
+            assertThat(items).isEmpty();
+        }
+
+        assertThat(items.poll(10, TimeUnit.SECONDS)).isEqualTo(deposit);
+    }
+}
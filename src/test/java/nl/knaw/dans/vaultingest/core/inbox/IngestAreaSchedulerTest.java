@@ -0,0 +1,133 @@
+/*
+ * Copyright (C) 2023 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.vaultingest.core.inbox;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class IngestAreaSchedulerTest {
+
+    @Test
+    void schedule_should_keep_items_in_backlog_while_max_in_flight_are_running() throws Exception {
+        var running = new ArrayList<Runnable>();
+        var metrics = new MetricRegistry();
+        var scheduler = new IngestAreaScheduler(running::add, 2, 1000, metrics);
+        var processed = new ArrayList<Path>();
+
+        for (var i = 0; i < 5; i++) {
+            var path = Path.of("deposit-" + i);
+            scheduler.schedule(path, () -> processed.add(path));
+        }
+
+        assertThat(running).hasSize(2);
+        assertThat(scheduler.getBacklogSize()).isEqualTo(3);
+        assertThat(metrics.getGauges().get(MetricRegistry.name(IngestAreaScheduler.class, "backlog")).getValue()).isEqualTo(3);
+
+        // finishing a task admits the next item from the backlog
+        running.remove(0).run();
+        assertThat(running).hasSize(2);
+        assertThat(scheduler.getBacklogSize()).isEqualTo(2);
+
+        while (!running.isEmpty()) {
+            running.remove(0).run();
+        }
+
+        assertThat(processed).containsExactly(
+            Path.of("deposit-0"), Path.of("deposit-1"), Path.of("deposit-2"), Path.of("deposit-3"), Path.of("deposit-4"));
+        assertThat(scheduler.getBacklogSize()).isZero();
+        assertThat(scheduler.getInFlightSize()).isZero();
+    }
+
+    @Test
+    void schedule_should_ignore_item_that_is_already_scheduled() throws Exception {
+        var running = new ArrayList<Runnable>();
+        var scheduler = new IngestAreaScheduler(running::add, 1, 1000, new MetricRegistry());
+
+        scheduler.schedule(Path.of("a"), () -> {});
+        scheduler.schedule(Path.of("b"), () -> {});
+        scheduler.schedule(Path.of("a"), () -> {});
+        scheduler.schedule(Path.of("b"), () -> {});
+
+        assertThat(running).hasSize(1);
+        assertThat(scheduler.getBacklogSize()).isEqualTo(1);
+    }
+
+    @Test
+    void schedule_should_offer_rejected_item_again_before_rest_of_backlog() throws Exception {
+        var rejections = new AtomicInteger(2);
+        var processed = new LinkedBlockingQueue<Path>();
+        var scheduler = new IngestAreaScheduler(runnable -> {
+            if (rejections.getAndDecrement() > 0) {
+                throw new RejectedExecutionException("queue full");
+            }
+            runnable.run();
+        }, 10, 50, new MetricRegistry());
+
+        scheduler.schedule(Path.of("first"), () -> processed.add(Path.of("first")));
+        scheduler.schedule(Path.of("second"), () -> processed.add(Path.of("second")));
+        assertThat(processed).isEmpty();
+        assertThat(scheduler.getBacklogSize()).isEqualTo(2);
+
+        assertThat(processed.poll(5, TimeUnit.SECONDS)).isEqualTo(Path.of("first"));
+        assertThat(processed.poll(5, TimeUnit.SECONDS)).isEqualTo(Path.of("second"));
+        assertThat(scheduler.getBacklogSize()).isZero();
+    }
+
+    @Test
+    void schedule_should_not_overflow_queue_of_thread_pool() throws Exception {
+        var pool = new ThreadPoolExecutor(1, 2, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(1));
+        var latch = new CountDownLatch(1);
+        var done = new CountDownLatch(100);
+
+        try {
+            var scheduler = new IngestAreaScheduler(pool, 0, 1000, new MetricRegistry());
+
+            for (var i = 0; i < 100; i++) {
+                scheduler.schedule(Path.of("deposit-" + i), () -> {
+                    try {
+                        latch.await();
+                    }
+                    catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    done.countDown();
+                });
+            }
+
+            assertThat(scheduler.getInFlightSize()).isEqualTo(2);
+            assertThat(scheduler.getBacklogSize()).isEqualTo(98);
+
+            latch.countDown();
+            assertThat(done.await(10, TimeUnit.SECONDS)).isTrue();
+        }
+        finally {
+            pool.shutdownNow();
+        }
+    }
+}
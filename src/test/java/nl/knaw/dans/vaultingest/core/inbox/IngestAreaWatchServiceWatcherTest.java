@@ -0,0 +1,88 @@
+/*
+ * Copyright (C) 2023 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.vaultingest.core.inbox;
+
+import com.codahale.metrics.MetricRegistry;
+import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class IngestAreaWatchServiceWatcherTest {
+
+    private final Path PATH = Path.of("target/" + this.getClass().getSimpleName() + "/inbox");
+
+    @BeforeEach
+    void setUp() throws Exception {
+        FileUtils.deleteQuietly(PATH.toFile());
+        Files.createDirectories(PATH);
+    }
+
+    @Test
+    void start_should_report_existing_and_new_directories() throws Exception {
+        Files.createDirectories(PATH.resolve("existing"));
+        Files.createFile(PATH.resolve("not-a-directory.txt"));
+
+        var metricRegistry = new MetricRegistry();
+        var watcher = new IngestAreaWatchServiceWatcher(PATH, 0, Mockito.mock(IngestAreaWatcher.class), metricRegistry);
+        var items = new LinkedBlockingQueue<Path>();
+        watcher.start(items::add);
+
+        assertThat(items.poll(10, TimeUnit.SECONDS)).isEqualTo(PATH.resolve("existing").toAbsolutePath());
+
+        Files.createDirectories(PATH.resolve("new"));
+        assertThat(items.poll(10, TimeUnit.SECONDS)).isEqualTo(PATH.resolve("new").toAbsolutePath());
+
+        assertThat(metricRegistry.timer(MetricRegistry.name(IngestAreaWatcher.class, "rescan")).getCount()).isEqualTo(1);
+        assertThat(metricRegistry.timer(MetricRegistry.name(IngestAreaWatcher.class, "pickup-latency")).getCount()).isEqualTo(2);
+    }
+
+    @Test
+    void start_should_report_new_directory_once_it_is_left_unchanged_for_quiet_period() throws Exception {
+        var watcher = new IngestAreaWatchServiceWatcher(PATH, 1000, Mockito.mock(IngestAreaWatcher.class), new MetricRegistry());
+        var items = new LinkedBlockingQueue<Path>();
+        watcher.start(items::add);
+
+        var deposit = Files.createDirectories(PATH.resolve("deposit"));
+        assertThat(items.poll(500, TimeUnit.MILLISECONDS)).isNull();
+
+        // still being copied
+        Files.writeString(deposit.resolve("deposit.properties"), "state.label=SUBMITTED\n");
+        assertThat(items.poll(700, TimeUnit.MILLISECONDS)).isNull();
+
+        assertThat(items.poll(10, TimeUnit.SECONDS)).isEqualTo(deposit.toAbsolutePath());
+        assertThat(items.poll(1500, TimeUnit.MILLISECONDS)).isNull();
+    }
+
+    @Test
+    void start_should_throw_IllegalStateException_if_initial_directory_does_not_exist() {
+        var fallback = Mockito.mock(IngestAreaWatcher.class);
+        var watcher = new IngestAreaWatchServiceWatcher(PATH.resolve("does-not-exist"), 0, fallback, new MetricRegistry());
+
+        assertThatThrownBy(() -> watcher.start(p -> {
+
+        })).isInstanceOf(IllegalStateException.class);
+        Mockito.verifyNoInteractions(fallback);
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright (C) 2023 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.vaultingest.core.mappings;
+
+import nl.knaw.dans.vaultingest.core.deposit.DepositFile;
+import nl.knaw.dans.vaultingest.core.xml.XmlReader;
+import org.junit.jupiter.api.Test;
+import org.w3c.dom.Node;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AccessRightsTest {
+
+    @Test
+    void constructor_should_resolve_rights_of_dataset_and_files() throws Exception {
+        var ddm = getDdmNode("RANDOM_VALUE", "Ask the depositor");
+        var anonymous = getDepositFile("ANONYMOUS");
+        var restricted = getDepositFile("RESTRICTED_REQUEST");
+        var unspecified = getDepositFile(null);
+
+        var accessRights = new AccessRights(ddm, List.of(anonymous, restricted, unspecified));
+
+        assertThat(accessRights.getDatasetAccessRights()).isEqualTo("RANDOM_VALUE");
+        assertThat(accessRights.getTermsOfAccess()).isEqualTo("Ask the depositor");
+        assertThat(accessRights.containsNone()).isFalse();
+        assertThat(accessRights.containsKnownOrRestrictedRequest()).isTrue();
+
+        assertThat(accessRights.isRestricted(anonymous)).isFalse();
+        assertThat(accessRights.isRestricted(restricted)).isTrue();
+        // falls back to the dataset access rights
+        assertThat(accessRights.isRestricted(unspecified)).isTrue();
+    }
+
+    @Test
+    void isRestricted_should_fall_back_to_dataset_access_rights() throws Exception {
+        var accessRights = new AccessRights(getDdmNode("OPEN_ACCESS", null), List.of());
+
+        assertThat(accessRights.isRestricted(getDepositFile("KNOWN"))).isTrue();
+        assertThat(accessRights.isRestricted(getDepositFile(null))).isFalse();
+    }
+
+    @Test
+    void containsNone_should_be_true_when_any_file_has_NONE() throws Exception {
+        var accessRights = new AccessRights(getDdmNode(null, null), List.of(getDepositFile("ANONYMOUS"), getDepositFile("NONE")));
+
+        assertThat(accessRights.containsNone()).isTrue();
+        assertThat(Terms.isRequestAccess(accessRights)).isFalse();
+        assertThat(Terms.getTermsOfAccess(accessRights)).isEqualTo("N/a");
+    }
+
+    DepositFile getDepositFile(String accessibleToRights) {
+        return DepositFile.builder()
+            .filepath("path/to/file.txt")
+            .accessibleToRights(accessibleToRights)
+            .build();
+    }
+
+    Node getDdmNode(String accessRights, String termsOfAccess) throws Exception {
+        var str = "<ddm:DDM xmlns:ddm='http://schemas.dans.knaw.nl/dataset/ddm-v2/' xmlns:dcterms='http://purl.org/dc/terms/'>"
+            + "    <ddm:profile>"
+            + (accessRights != null ? "<ddm:accessRights>" + accessRights + "</ddm:accessRights>" : "")
+            + "    </ddm:profile>"
+            + "    <ddm:dcmiMetadata>"
+            + (termsOfAccess != null ? "<dcterms:accessRights>" + termsOfAccess + "</dcterms:accessRights>" : "")
+            + "    </ddm:dcmiMetadata>"
+            + "</ddm:DDM>";
+
+        return new XmlReader().readXmlString(str).getDocumentElement();
+    }
+}
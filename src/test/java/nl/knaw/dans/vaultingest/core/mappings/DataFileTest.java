@@ -16,90 +16,77 @@
 package nl.knaw.dans.vaultingest.core.mappings;
 
 import nl.knaw.dans.vaultingest.core.deposit.DepositFile;
-import nl.knaw.dans.vaultingest.core.xml.XmlNamespaces;
 import nl.knaw.dans.vaultingest.core.xml.XmlReader;
 import org.junit.jupiter.api.Test;
 import org.w3c.dom.Node;
 
+import java.util.List;
+
 import static org.assertj.core.api.Assertions.assertThat;
 
 class DataFileTest {
 
     @Test
     void isRestricted_should_return_false_when_no_information_is_available() throws Exception {
+        var ddm = getDdmNodeWithAccessRights(null);
         var depositFile = DepositFile.builder()
-            .filesXmlNode(getFilesXmlNode("data/invalid/characters/here:*?\"<>|;#.txt"))
-            .ddmNode(getDdmNodeWithAccessRights(null))
+            .filepath("data/invalid/characters/here:*?\"<>|;#.txt")
             .build();
 
-        assertThat(DataFile.isRestricted(depositFile.getFilesXmlNode(), depositFile.getDdmNode())).isFalse();
+        assertThat(new AccessRights(ddm, List.of(depositFile)).isRestricted(depositFile)).isFalse();
     }
 
     @Test
     void isRestricted_should_return_false_when_getAccessRights_equals_OPEN_ACCESS() throws Exception {
+        var ddm = getDdmNodeWithAccessRights("OPEN_ACCESS");
         var depositFile = DepositFile.builder()
-            .filesXmlNode(getFilesXmlNode("data/invalid/characters/here:*?\"<>|;#.txt"))
-            .ddmNode(getDdmNodeWithAccessRights("OPEN_ACCESS"))
+            .filepath("data/invalid/characters/here:*?\"<>|;#.txt")
             .build();
 
-        assertThat(DataFile.isRestricted(depositFile.getFilesXmlNode(), depositFile.getDdmNode())).isFalse();
+        assertThat(new AccessRights(ddm, List.of(depositFile)).isRestricted(depositFile)).isFalse();
     }
 
     @Test
     void isRestricted_should_return_true_when_getAccessRights_equals_RANDOM_VALUE() throws Exception {
+        var ddm = getDdmNodeWithAccessRights("RANDOM_VALUE");
         var depositFile = DepositFile.builder()
-            .filesXmlNode(getFilesXmlNode("data/invalid/characters/here:*?\"<>|;#.txt"))
-            .ddmNode(getDdmNodeWithAccessRights("RANDOM_VALUE"))
+            .filepath("data/invalid/characters/here:*?\"<>|;#.txt")
             .build();
 
-        assertThat(DataFile.isRestricted(depositFile.getFilesXmlNode(), depositFile.getDdmNode())).isTrue();
+        assertThat(new AccessRights(ddm, List.of(depositFile)).isRestricted(depositFile)).isTrue();
     }
 
     @Test
     void isRestricted_should_return_true_when_getAccessibleToRights_is_empty() throws Exception {
+        var ddm = getDdmNodeWithAccessRights(null);
         var depositFile = DepositFile.builder()
-            .filesXmlNode(getFilesXmlNodeWithAccessibleToRights(""))
-            .ddmNode(getDdmNodeWithAccessRights(null))
+            .filepath("path/to/file.txt")
+            .accessibleToRights("")
             .build();
 
-        assertThat(DataFile.isRestricted(depositFile.getFilesXmlNode(), depositFile.getDdmNode())).isTrue();
+        assertThat(new AccessRights(ddm, List.of(depositFile)).isRestricted(depositFile)).isTrue();
     }
 
     @Test
     void isRestricted_should_return_true_when_getAccessibleToRights_equals_ANYTHING() throws Exception {
+        var ddm = getDdmNodeWithAccessRights(null);
         var depositFile = DepositFile.builder()
-            .filesXmlNode(getFilesXmlNodeWithAccessibleToRights("ANYTHING"))
-            .ddmNode(getDdmNodeWithAccessRights(null))
+            .filepath("path/to/file.txt")
+            .accessibleToRights("ANYTHING")
             .build();
 
-        assertThat(DataFile.isRestricted(depositFile.getFilesXmlNode(), depositFile.getDdmNode())).isTrue();
+        assertThat(new AccessRights(ddm, List.of(depositFile)).isRestricted(depositFile)).isTrue();
     }
 
     @Test
     void isRestricted_should_return_false_when_getAccessibleToRights_equals_ANONYMOUS() throws Exception {
+        var ddm = getDdmNodeWithAccessRights(null);
         var depositFile = DepositFile.builder()
-            .filesXmlNode(getFilesXmlNodeWithAccessibleToRights("ANONYMOUS"))
-            .ddmNode(getDdmNodeWithAccessRights(null))
+            .filepath("path/to/file.txt")
+            .accessibleToRights("ANONYMOUS")
             .build();
 
-        assertThat(DataFile.isRestricted(depositFile.getFilesXmlNode(), depositFile.getDdmNode())).isFalse();
-    }
-
-    Node getFilesXmlNode(String path) throws Exception {
-        var node = new XmlReader().readXmlString("<file  xmlns=\"http://easy.dans.knaw.nl/schemas/bag/metadata/files/\" />");
-        node.getDocumentElement().setAttribute("filepath", path);
-
-        return node.getDocumentElement();
-    }
-
-    Node getFilesXmlNodeWithAccessibleToRights(String accessibleToRights) throws Exception {
-        var node = new XmlReader().readXmlString("<file xmlns=\"http://easy.dans.knaw.nl/schemas/bag/metadata/files/\" />");
-        node.getDocumentElement().setAttribute("filepath", "path/to/file.txt");
-
-        var acc = node.createElementNS(XmlNamespaces.NAMESPACE_FILES_XML, "accessibleToRights");
-        acc.setTextContent(accessibleToRights);
-        node.getDocumentElement().appendChild(acc);
-        return node.getDocumentElement();
+        assertThat(new AccessRights(ddm, List.of(depositFile)).isRestricted(depositFile)).isFalse();
     }
 
     Node getDdmNodeWithAccessRights(String mode) throws Exception {
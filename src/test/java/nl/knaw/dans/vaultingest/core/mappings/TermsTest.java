@@ -16,7 +16,6 @@
 package nl.knaw.dans.vaultingest.core.mappings;
 
 import nl.knaw.dans.vaultingest.core.deposit.DepositFile;
-import nl.knaw.dans.vaultingest.core.xml.XmlNamespaces;
 import nl.knaw.dans.vaultingest.core.xml.XmlReader;
 import org.junit.jupiter.api.Test;
 import org.w3c.dom.Node;
@@ -29,87 +28,73 @@ class TermsTest {
 
     @Test
     void isRequestAccess_should_return_true_when_no_information_is_available() throws Exception {
+        var ddm = getDdmNodeWithAccessRights(null);
         var depositFile = DepositFile.builder()
-            .filesXmlNode(getFilesXmlNode("data/invalid/characters/here:*?\"<>|;#.txt"))
-            .ddmNode(getDdmNodeWithAccessRights(null))
+            .filepath("data/invalid/characters/here:*?\"<>|;#.txt")
             .build();
 
-        var result = Terms.isRequestAccess(depositFile.getDdmNode().getOwnerDocument(), List.of(depositFile));
+        var result = Terms.isRequestAccess(ddm.getOwnerDocument(), List.of(depositFile));
         assertThat(result).isTrue();
     }
 
     @Test
     void isRequestAccess_should_return_false_when_getAccessRights_equals_OPEN_ACCESS() throws Exception {
+        var ddm = getDdmNodeWithAccessRights("OPEN_ACCESS");
         var depositFile = DepositFile.builder()
-            .filesXmlNode(getFilesXmlNode("data/invalid/characters/here:*?\"<>|;#.txt"))
-            .ddmNode(getDdmNodeWithAccessRights("OPEN_ACCESS"))
+            .filepath("data/invalid/characters/here:*?\"<>|;#.txt")
             .build();
 
-        var result = Terms.isRequestAccess(depositFile.getDdmNode().getOwnerDocument(), List.of(depositFile));
+        var result = Terms.isRequestAccess(ddm.getOwnerDocument(), List.of(depositFile));
         assertThat(result).isTrue();
     }
 
     @Test
     void isRequestAccess_should_return_true_when_getAccessRights_equals_RANDOM_VALUE() throws Exception {
+        var ddm = getDdmNodeWithAccessRights("RANDOM_VALUE");
         var depositFile = DepositFile.builder()
-            .filesXmlNode(getFilesXmlNode("data/invalid/characters/here:*?\"<>|;#.txt"))
-            .ddmNode(getDdmNodeWithAccessRights("RANDOM_VALUE"))
+            .filepath("data/invalid/characters/here:*?\"<>|;#.txt")
             .build();
 
-        var result = Terms.isRequestAccess(depositFile.getDdmNode().getOwnerDocument(), List.of(depositFile));
+        var result = Terms.isRequestAccess(ddm.getOwnerDocument(), List.of(depositFile));
         assertThat(result).isTrue();
     }
 
     @Test
     void isRequestAccess_should_return_true_when_getAccessibleToRights_is_empty() throws Exception {
+        var ddm = getDdmNodeWithAccessRights(null);
         var depositFile = DepositFile.builder()
-            .filesXmlNode(getFilesXmlNodeWithAccessibleToRights(""))
-            .ddmNode(getDdmNodeWithAccessRights(null))
+            .filepath("path/to/file.txt")
+            .accessibleToRights("")
             .build();
 
-        var result = Terms.isRequestAccess(depositFile.getDdmNode().getOwnerDocument(), List.of(depositFile));
+        var result = Terms.isRequestAccess(ddm.getOwnerDocument(), List.of(depositFile));
         assertThat(result).isTrue();
     }
 
     @Test
     void isRequestAccess_should_return_true_when_getAccessibleToRights_equals_ANYTHING() throws Exception {
+        var ddm = getDdmNodeWithAccessRights(null);
         var depositFile = DepositFile.builder()
-            .filesXmlNode(getFilesXmlNodeWithAccessibleToRights("ANYTHING"))
-            .ddmNode(getDdmNodeWithAccessRights(null))
+            .filepath("path/to/file.txt")
+            .accessibleToRights("ANYTHING")
             .build();
 
-        var result = Terms.isRequestAccess(depositFile.getDdmNode().getOwnerDocument(), List.of(depositFile));
+        var result = Terms.isRequestAccess(ddm.getOwnerDocument(), List.of(depositFile));
         assertThat(result).isTrue();
     }
 
     @Test
     void isRequestAccess_should_return_false_when_getAccessibleToRights_equals_NONE() throws Exception {
+        var ddm = getDdmNodeWithAccessRights(null);
         var depositFile = DepositFile.builder()
-            .filesXmlNode(getFilesXmlNodeWithAccessibleToRights("NONE"))
-            .ddmNode(getDdmNodeWithAccessRights(null))
+            .filepath("path/to/file.txt")
+            .accessibleToRights("NONE")
             .build();
 
-        var result = Terms.isRequestAccess(depositFile.getDdmNode().getOwnerDocument(), List.of(depositFile));
+        var result = Terms.isRequestAccess(ddm.getOwnerDocument(), List.of(depositFile));
         assertThat(result).isFalse();
     }
 
-    Node getFilesXmlNode(String path) throws Exception {
-        var node = new XmlReader().readXmlString("<file  xmlns=\"http://easy.dans.knaw.nl/schemas/bag/metadata/files/\" />");
-        node.getDocumentElement().setAttribute("filepath", path);
-
-        return node.getDocumentElement();
-    }
-
-    Node getFilesXmlNodeWithAccessibleToRights(String accessibleToRights) throws Exception {
-        var node = new XmlReader().readXmlString("<file xmlns=\"http://easy.dans.knaw.nl/schemas/bag/metadata/files/\" />");
-        node.getDocumentElement().setAttribute("filepath", "path/to/file.txt");
-
-        var acc = node.createElementNS(XmlNamespaces.NAMESPACE_FILES_XML, "accessibleToRights");
-        acc.setTextContent(accessibleToRights);
-        node.getDocumentElement().appendChild(acc);
-        return node.getDocumentElement();
-    }
-
     Node getDdmNodeWithAccessRights(String mode) throws Exception {
         var accessRights = mode != null ? "<ddm:accessRights>" + mode + "</ddm:accessRights>" : "";
         var str = "<ddm:DDM xmlns:ddm='http://schemas.dans.knaw.nl/dataset/ddm-v2/'>"
@@ -0,0 +1,168 @@
+/*
+ * Copyright (C) 2023 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.vaultingest.core.oaiore;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import nl.knaw.dans.vaultingest.core.mappings.vocabulary.ORE;
+import nl.knaw.dans.vaultingest.core.utilities.CountryResolverFactory;
+import nl.knaw.dans.vaultingest.core.utilities.LanguageResolverFactory;
+import nl.knaw.dans.vaultingest.core.utilities.TestDepositManager;
+import org.apache.jena.datatypes.xsd.XSDDatatype;
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.riot.Lang;
+import org.apache.jena.riot.RDFParser;
+import org.apache.jena.vocabulary.DCTerms;
+import org.apache.jena.vocabulary.RDF;
+import org.apache.jena.vocabulary.SchemaDO;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.file.Path;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class OaiOreSerializerTest {
+
+    @Test
+    void serializeAsRdf_should_stream_same_graph_as_converter() throws Exception {
+        var converter = new OaiOreConverter(LanguageResolverFactory.getInstance(), CountryResolverFactory.getInstance());
+        var deposit = new TestDepositManager().loadDeposit(Path.of("/input/integration-test-complete-bag/c169676f-5315-4d86-bde0-a62dbc915228/"));
+        deposit.setNbn("urn:nbn:nl:ui:13-4c-1a2b");
+
+        var oaiOre = converter.convertForStreaming(deposit);
+        var output = new ByteArrayOutputStream();
+        new OaiOreSerializer(new ObjectMapper()).serializeAsRdf(oaiOre, output);
+
+        var expected = oaiOre.toModel();
+        assertThat(parse(output.toByteArray(), Lang.RDFXML).isIsomorphicWith(expected)).isTrue();
+
+        // apart from the time of conversion, the streamed graph is the same as the one built in memory
+        var converted = converter.convert(deposit);
+        assertThat(withoutModified(expected).isIsomorphicWith(withoutModified(converted))).isTrue();
+    }
+
+    @Test
+    void serializeAsJsonLd_should_stream_same_graph_as_converter() throws Exception {
+        var converter = new OaiOreConverter(LanguageResolverFactory.getInstance(), CountryResolverFactory.getInstance());
+        var deposit = new TestDepositManager().loadDeposit(Path.of("/input/integration-test-complete-bag/c169676f-5315-4d86-bde0-a62dbc915228/"));
+        deposit.setNbn("urn:nbn:nl:ui:13-4c-1a2b");
+
+        var oaiOre = converter.convertForStreaming(deposit);
+        var output = new ByteArrayOutputStream();
+        new OaiOreSerializer(new ObjectMapper()).serializeAsJsonLd(oaiOre, output);
+
+        assertThat(parse(output.toByteArray(), Lang.JSONLD).isIsomorphicWith(oaiOre.toModel())).isTrue();
+    }
+
+    @Test
+    void serializeAsJsonLd_should_produce_aggregated_resources_once_and_declare_same_namespaces_as_converter() throws Exception {
+        var converter = new OaiOreConverter(LanguageResolverFactory.getInstance(), CountryResolverFactory.getInstance());
+        var deposit = new TestDepositManager().loadDeposit(Path.of("/input/integration-test-complete-bag/c169676f-5315-4d86-bde0-a62dbc915228/"));
+        deposit.setNbn("urn:nbn:nl:ui:13-4c-1a2b");
+
+        var converted = converter.convertForStreaming(deposit);
+        var sent = new AtomicInteger();
+        var oaiOre = new StreamingOaiOre(converted.getMetadata(), converted.getAggregation(), stream -> {
+            sent.incrementAndGet();
+            converted.sendAggregatedResources(stream);
+        }, converted.getAggregatedResourceNamespaces());
+
+        var serializer = new OaiOreSerializer(new ObjectMapper());
+        var streamed = new ByteArrayOutputStream();
+        serializer.serializeAsJsonLd(oaiOre, streamed);
+        var inMemory = new ByteArrayOutputStream();
+        serializer.serializeAsJsonLd(converter.convert(deposit), inMemory);
+
+        assertThat(sent).hasValue(1);
+
+        var objectMapper = new ObjectMapper();
+        assertThat(objectMapper.readTree(streamed.toByteArray()).get("@context"))
+            .isEqualTo(objectMapper.readTree(inMemory.toByteArray()).get("@context"));
+    }
+
+    @Test
+    void serialize_should_escape_literals_of_aggregated_resources() throws Exception {
+        var oaiOre = createOaiOre(2);
+        var serializer = new OaiOreSerializer(new ObjectMapper());
+
+        var rdf = new ByteArrayOutputStream();
+        serializer.serializeAsRdf(oaiOre, rdf);
+        var jsonLd = new ByteArrayOutputStream();
+        serializer.serializeAsJsonLd(oaiOre, jsonLd);
+
+        assertThat(parse(rdf.toByteArray(), Lang.RDFXML).isIsomorphicWith(oaiOre.toModel())).isTrue();
+        assertThat(parse(jsonLd.toByteArray(), Lang.JSONLD).isIsomorphicWith(oaiOre.toModel())).isTrue();
+    }
+
+    @Test
+    void serialize_should_write_aggregation_without_aggregated_resources() throws Exception {
+        var oaiOre = createOaiOre(0);
+        var serializer = new OaiOreSerializer(new ObjectMapper());
+
+        var rdf = new ByteArrayOutputStream();
+        serializer.serializeAsRdf(oaiOre, rdf);
+        var jsonLd = new ByteArrayOutputStream();
+        serializer.serializeAsJsonLd(oaiOre, jsonLd);
+
+        assertThat(parse(rdf.toByteArray(), Lang.RDFXML).isIsomorphicWith(oaiOre.getMetadata())).isTrue();
+        assertThat(parse(jsonLd.toByteArray(), Lang.JSONLD).isIsomorphicWith(oaiOre.getMetadata())).isTrue();
+    }
+
+    private StreamingOaiOre createOaiOre(int numberOfFiles) {
+        var model = ModelFactory.createDefaultModel();
+        model.setNsPrefix("ore", ORE.NS);
+        model.setNsPrefix("dcterms", DCTerms.NS);
+
+        var resourceMap = model.createResource("urn:uuid:" + UUID.randomUUID());
+        var aggregation = model.createResource("urn:nbn:nl:ui:13-test");
+        model.add(resourceMap, RDF.type, ORE.ResourceMap);
+        model.add(resourceMap, ORE.describes, aggregation);
+        model.add(aggregation, RDF.type, ORE.Aggregation);
+        model.add(aggregation, DCTerms.title, "Title");
+
+        return new StreamingOaiOre(model, aggregation, stream -> {
+            for (var i = 0; i < numberOfFiles; ++i) {
+                var file = NodeFactory.createURI("urn:uuid:" + UUID.nameUUIDFromBytes(("file-" + i).getBytes()));
+                stream.triple(Triple.create(file, RDF.type.asNode(), ORE.AggregatedResource.asNode()));
+                stream.triple(Triple.create(file, SchemaDO.name.asNode(), NodeFactory.createLiteral("a <b> & \"c\"\r\n" + i + ".txt")));
+                stream.triple(Triple.create(file, SchemaDO.description.asNode(), NodeFactory.createLiteral("beschrijving " + i, "nl")));
+                stream.triple(Triple.create(file, DCTerms.extent.asNode(), NodeFactory.createLiteral(String.valueOf(i), XSDDatatype.XSDinteger)));
+                // a namespace that has no prefix
+                stream.triple(Triple.create(file, NodeFactory.createURI("http://example.org/terms/restricted"), NodeFactory.createLiteral("false", XSDDatatype.XSDboolean)));
+                stream.triple(Triple.create(aggregation.asNode(), ORE.aggregates.asNode(), file));
+            }
+        }, numberOfFiles > 0 ? Set.of(ORE.NS, SchemaDO.NS, DCTerms.NS, "http://example.org/terms/") : Set.of());
+    }
+
+    private Model withoutModified(Model model) {
+        return ModelFactory.createDefaultModel()
+            .add(model)
+            .removeAll(null, DCTerms.modified, null);
+    }
+
+    private Model parse(byte[] content, Lang lang) {
+        var model = ModelFactory.createDefaultModel();
+        RDFParser.source(new ByteArrayInputStream(content)).lang(lang).parse(model);
+        return model;
+    }
+}
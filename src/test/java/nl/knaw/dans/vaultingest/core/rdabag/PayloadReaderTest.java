@@ -0,0 +1,74 @@
+/*
+ * Copyright (C) 2023 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.vaultingest.core.rdabag;
+
+import com.codahale.metrics.MetricRegistry;
+import nl.knaw.dans.vaultingest.core.deposit.DepositFile;
+import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PayloadReaderTest {
+
+    final Path TEST_DIR = Path.of("target/test", getClass().getSimpleName());
+    final Path FILE = TEST_DIR.resolve("payload.bin");
+
+    byte[] data;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        FileUtils.deleteQuietly(TEST_DIR.toFile());
+        Files.createDirectories(TEST_DIR);
+
+        data = new byte[100_000];
+        new Random(42).nextBytes(data);
+        Files.write(FILE, data);
+    }
+
+    @Test
+    void open_should_read_file_with_every_strategy() throws Exception {
+        var file = DepositFile.builder().physicalPath(FILE).build();
+
+        for (var strategy : PayloadReadStrategy.values()) {
+            var reader = new PayloadReader(strategy, 4096, null, 0, 0, new MetricRegistry());
+
+            try (var inputStream = reader.open(file)) {
+                assertThat(inputStream.readAllBytes()).as("content read with %s", strategy).isEqualTo(data);
+            }
+        }
+    }
+
+    @Test
+    void open_should_measure_bytes_and_throughput() throws Exception {
+        var file = DepositFile.builder().physicalPath(FILE).build();
+        var metricRegistry = new MetricRegistry();
+        var reader = new PayloadReader(PayloadReadStrategy.CHANNEL, 4096, null, 0, 0, metricRegistry);
+
+        try (var inputStream = reader.open(file)) {
+            inputStream.readAllBytes();
+        }
+
+        assertThat(metricRegistry.meter(MetricRegistry.name(PayloadReader.class, "bytes-read")).getCount()).isEqualTo(data.length);
+        assertThat(metricRegistry.histogram(MetricRegistry.name(PayloadReader.class, "read-throughput")).getCount()).isEqualTo(1);
+    }
+}
@@ -16,8 +16,11 @@
 package nl.knaw.dans.vaultingest.core.rdabag;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import gov.loc.repository.bagit.hash.StandardSupportedAlgorithms;
 import nl.knaw.dans.vaultingest.core.datacite.DataciteConverter;
 import nl.knaw.dans.vaultingest.core.datacite.DataciteSerializer;
+import nl.knaw.dans.vaultingest.core.deposit.DepositFile;
+import nl.knaw.dans.vaultingest.core.mappings.vocabulary.ORE;
 import nl.knaw.dans.vaultingest.core.oaiore.OaiOreConverter;
 import nl.knaw.dans.vaultingest.core.oaiore.OaiOreSerializer;
 import nl.knaw.dans.vaultingest.core.pidmapping.PidMappingConverter;
@@ -26,11 +29,28 @@ import nl.knaw.dans.vaultingest.core.utilities.CountryResolverFactory;
 import nl.knaw.dans.vaultingest.core.utilities.InMemoryOutputWriter;
 import nl.knaw.dans.vaultingest.core.utilities.LanguageResolverFactory;
 import nl.knaw.dans.vaultingest.core.utilities.TestDepositManager;
+import nl.knaw.dans.vaultingest.core.validator.InvalidDepositException;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.rdf.model.RDFNode;
+import org.apache.jena.riot.Lang;
+import org.apache.jena.riot.RDFParser;
 import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 class RdaBagWriterTest {
 
@@ -42,7 +62,9 @@ class RdaBagWriterTest {
             new OaiOreSerializer(new ObjectMapper()),
             new DataciteConverter(),
             new PidMappingConverter(),
-            new OaiOreConverter(LanguageResolverFactory.getInstance(), CountryResolverFactory.getInstance())
+            new OaiOreConverter(LanguageResolverFactory.getInstance(), CountryResolverFactory.getInstance()),
+            ChecksumVerificationPolicy.TRUST,
+            new PayloadReader()
         );
 
         var manager = new TestDepositManager();
@@ -66,7 +88,9 @@ class RdaBagWriterTest {
             new OaiOreSerializer(new ObjectMapper()),
             new DataciteConverter(),
             new PidMappingConverter(),
-            new OaiOreConverter(LanguageResolverFactory.getInstance(), CountryResolverFactory.getInstance())
+            new OaiOreConverter(LanguageResolverFactory.getInstance(), CountryResolverFactory.getInstance()),
+            ChecksumVerificationPolicy.TRUST,
+            new PayloadReader()
         );
 
         var manager = new TestDepositManager();
@@ -86,4 +110,257 @@ class RdaBagWriterTest {
             Path.of("tagmanifest-md5.txt")
         );
     }
-}
\ No newline at end of file
+
+    @Test
+    void write_should_accept_payload_when_cheapest_checksum_matches() throws Exception {
+        var writer = createWriter(ChecksumVerificationPolicy.VERIFY_CHEAPEST);
+
+        var manager = new TestDepositManager();
+        // the sha256 manifest of this bag is not correct, so this also checks that only sha1 is verified
+        var deposit = manager.loadDeposit(Path.of("/input/bag-sha1/c169676f-5315-4d86-bde0-a62dbc915228"));
+        var output = new InMemoryOutputWriter();
+        writer.write(deposit, output);
+
+        assertThat(output.getData().keySet()).contains(
+            Path.of("manifest-sha1.txt"),
+            Path.of("manifest-sha256.txt")
+        );
+    }
+
+    @Test
+    void write_should_throw_InvalidDepositException_when_payload_checksum_does_not_match() throws Exception {
+        var writer = createWriter(ChecksumVerificationPolicy.VERIFY_CHEAPEST);
+
+        var manager = new TestDepositManager();
+        var deposit = Mockito.spy(manager.loadDeposit(Path.of("/input/bag-sha1/c169676f-5315-4d86-bde0-a62dbc915228")));
+
+        var file = Mockito.mock(DepositFile.class);
+        Mockito.when(file.getPath()).thenReturn(Path.of("data/file.txt"));
+        Mockito.when(file.getChecksums()).thenReturn(Map.of(StandardSupportedAlgorithms.SHA1, "0000000000000000000000000000000000000000"));
+        Mockito.when(file.openInputStream(Mockito.anyInt())).thenAnswer(invocation -> new ByteArrayInputStream("test".getBytes()));
+        Mockito.doReturn(List.of(file)).when(deposit).getPayloadFiles();
+
+        assertThatThrownBy(() -> writer.write(deposit, new InMemoryOutputWriter()))
+            .isInstanceOf(InvalidDepositException.class)
+            .hasMessageContaining("data/file.txt");
+    }
+
+    @Test
+    void write_should_produce_same_bag_when_reading_ahead() throws Exception {
+        var executor = Executors.newCachedThreadPool();
+
+        try {
+            var manager = new TestDepositManager();
+            var deposit = manager.loadDeposit(Path.of("/input/bag-sha1/c169676f-5315-4d86-bde0-a62dbc915228"));
+
+            var expected = new InMemoryOutputWriter();
+            createWriter(ChecksumVerificationPolicy.VERIFY_CHEAPEST).write(deposit, expected);
+
+            // small buffers, so the files need several of them
+            var output = new InMemoryOutputWriter();
+            createWriter(ChecksumVerificationPolicy.VERIFY_CHEAPEST, new PayloadReader(executor, 2, 16)).write(deposit, output);
+
+            assertThat(output.getData().get(Path.of("manifest-sha1.txt")))
+                .isEqualTo(expected.getData().get(Path.of("manifest-sha1.txt")));
+
+            for (var path : deposit.getPayloadFiles().stream().map(DepositFile::getPath).collect(Collectors.toList())) {
+                assertThat(output.getBytes().get(path)).as("content of %s", path).isEqualTo(expected.getBytes().get(path));
+            }
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void write_should_throw_InvalidDepositException_when_reading_ahead() throws Exception {
+        var executor = Executors.newCachedThreadPool();
+
+        try {
+            var writer = createWriter(ChecksumVerificationPolicy.VERIFY_CHEAPEST, new PayloadReader(executor, 2, 16));
+
+            var manager = new TestDepositManager();
+            var deposit = Mockito.spy(manager.loadDeposit(Path.of("/input/bag-sha1/c169676f-5315-4d86-bde0-a62dbc915228")));
+
+            var file = Mockito.mock(DepositFile.class);
+            Mockito.when(file.getPath()).thenReturn(Path.of("data/file.txt"));
+            Mockito.when(file.getChecksums()).thenReturn(Map.of(StandardSupportedAlgorithms.SHA1, "0000000000000000000000000000000000000000"));
+            Mockito.when(file.openInputStream(Mockito.anyInt())).thenAnswer(invocation -> new ByteArrayInputStream("some test data".getBytes()));
+            Mockito.doReturn(List.of(file)).when(deposit).getPayloadFiles();
+
+            assertThatThrownBy(() -> writer.write(deposit, new InMemoryOutputWriter()))
+                .isInstanceOf(InvalidDepositException.class)
+                .hasMessageContaining("data/file.txt");
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void write_should_stream_oai_ore_when_deposit_has_many_files() throws Exception {
+        var writer = new RdaBagWriter(
+            new DataciteSerializer(),
+            new PidMappingSerializer(),
+            new OaiOreSerializer(new ObjectMapper()),
+            new DataciteConverter(),
+            new PidMappingConverter(),
+            new OaiOreConverter(LanguageResolverFactory.getInstance(), CountryResolverFactory.getInstance()),
+            ChecksumVerificationPolicy.TRUST,
+            new PayloadReader(),
+            1,
+            null
+        );
+
+        var manager = new TestDepositManager();
+        var deposit = manager.loadDeposit(Path.of("/input/integration-test-complete-bag/c169676f-5315-4d86-bde0-a62dbc915228/"));
+        deposit.setNbn("urn:nbn:nl:ui:13-4c-1a2b");
+
+        var output = new InMemoryOutputWriter();
+        writer.write(deposit, output);
+
+        var rdf = ModelFactory.createDefaultModel();
+        RDFParser.source(new ByteArrayInputStream(output.getBytes().get(Path.of("metadata/oai-ore.rdf")))).lang(Lang.RDFXML).parse(rdf);
+
+        assertThat(rdf.listStatements(null, ORE.aggregates, (RDFNode) null).toList())
+            .hasSize(deposit.getPayloadFiles().size());
+
+        var digest = MessageDigest.getInstance("SHA-1").digest(output.getBytes().get(Path.of("metadata/oai-ore.rdf")));
+        var checksum = new StringBuilder();
+
+        for (var b : digest) {
+            checksum.append(String.format("%02x", b));
+        }
+
+        assertThat(output.getData().get(Path.of("tagmanifest-sha1.txt")))
+            .contains(checksum + "  metadata/oai-ore.rdf");
+    }
+
+    @Test
+    void write_should_add_metadata_files_in_order_when_serializing_them_in_parallel() throws Exception {
+        var executor = Executors.newFixedThreadPool(4);
+
+        try {
+            var manager = new TestDepositManager();
+            var deposit = manager.loadDeposit(Path.of("/input/integration-test-complete-bag/c169676f-5315-4d86-bde0-a62dbc915228/"));
+            deposit.setNbn("urn:nbn:nl:ui:13-4c-1a2b");
+
+            var expected = new InMemoryOutputWriter();
+            createWriter(ChecksumVerificationPolicy.TRUST).write(deposit, expected);
+
+            var output = Mockito.spy(new InMemoryOutputWriter());
+            createWriter(ChecksumVerificationPolicy.TRUST, executor).write(deposit, output);
+
+            var inOrder = Mockito.inOrder(output);
+            inOrder.verify(output).writeBagItem(Mockito.any(Path.class), Mockito.eq(Path.of("metadata/datacite.xml")));
+            inOrder.verify(output).writeBagItem(Mockito.any(Path.class), Mockito.eq(Path.of("metadata/oai-ore.rdf")));
+            inOrder.verify(output).writeBagItem(Mockito.any(Path.class), Mockito.eq(Path.of("metadata/oai-ore.jsonld")));
+            inOrder.verify(output).writeBagItem(Mockito.any(Path.class), Mockito.eq(Path.of("metadata/pid-mapping.txt")));
+
+            assertThat(output.getData().keySet()).containsExactlyInAnyOrderElementsOf(expected.getData().keySet());
+            assertThat(output.getData().get(Path.of("metadata/datacite.xml"))).isEqualTo(expected.getData().get(Path.of("metadata/datacite.xml")));
+            assertThat(output.getData().get(Path.of("metadata/pid-mapping.txt"))).isEqualTo(expected.getData().get(Path.of("metadata/pid-mapping.txt")));
+
+            // the OAI-ORE contains the time of conversion, so only its checksum is checked
+            var digest = MessageDigest.getInstance("SHA-1").digest(output.getBytes().get(Path.of("metadata/oai-ore.jsonld")));
+            var checksum = new StringBuilder();
+
+            for (var b : digest) {
+                checksum.append(String.format("%02x", b));
+            }
+
+            assertThat(output.getData().get(Path.of("tagmanifest-sha1.txt")))
+                .contains(checksum + "  metadata/oai-ore.jsonld");
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void write_should_throw_exception_of_metadata_serialized_in_parallel() throws Exception {
+        var executor = Executors.newFixedThreadPool(4);
+
+        try {
+            var dataciteSerializer = Mockito.mock(DataciteSerializer.class);
+            Mockito.doThrow(new IOException("disk full")).when(dataciteSerializer).serialize(Mockito.any(), Mockito.any(OutputStream.class));
+
+            var writer = new RdaBagWriter(
+                dataciteSerializer,
+                new PidMappingSerializer(),
+                new OaiOreSerializer(new ObjectMapper()),
+                new DataciteConverter(),
+                new PidMappingConverter(),
+                new OaiOreConverter(LanguageResolverFactory.getInstance(), CountryResolverFactory.getInstance()),
+                ChecksumVerificationPolicy.TRUST,
+                new PayloadReader(),
+                0,
+                executor
+            );
+
+            var manager = new TestDepositManager();
+            var deposit = manager.loadDeposit(Path.of("/input/integration-test-complete-bag/c169676f-5315-4d86-bde0-a62dbc915228/"));
+            deposit.setNbn("urn:nbn:nl:ui:13-4c-1a2b");
+
+            var output = new InMemoryOutputWriter();
+
+            assertThatThrownBy(() -> writer.write(deposit, output))
+                .isInstanceOf(IOException.class)
+                .hasMessage("disk full");
+            assertThat(output.getData()).doesNotContainKey(Path.of("metadata/datacite.xml"));
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void getAlgorithmsToCalculate_should_pick_cheapest_algorithm() throws Exception {
+        var writer = createWriter(ChecksumVerificationPolicy.VERIFY_CHEAPEST);
+
+        assertThat(writer.getAlgorithmsToCalculate(Set.of(StandardSupportedAlgorithms.SHA256, StandardSupportedAlgorithms.SHA1)))
+            .containsOnly(StandardSupportedAlgorithms.SHA1);
+        assertThat(writer.getAlgorithmsToCalculate(Set.of(StandardSupportedAlgorithms.MD5)))
+            .containsOnly(StandardSupportedAlgorithms.MD5, StandardSupportedAlgorithms.SHA1);
+    }
+
+    @Test
+    void getAlgorithmsToCalculate_should_not_calculate_anything_when_trusting_sha1() throws Exception {
+        var writer = createWriter(ChecksumVerificationPolicy.TRUST);
+
+        assertThat(writer.getAlgorithmsToCalculate(Set.of(StandardSupportedAlgorithms.SHA256, StandardSupportedAlgorithms.SHA1)))
+            .isEmpty();
+    }
+
+    private RdaBagWriter createWriter(ChecksumVerificationPolicy checksumVerificationPolicy) throws Exception {
+        return createWriter(checksumVerificationPolicy, new PayloadReader());
+    }
+
+    private RdaBagWriter createWriter(ChecksumVerificationPolicy checksumVerificationPolicy, ExecutorService metadataExecutor) throws Exception {
+        return new RdaBagWriter(
+            new DataciteSerializer(),
+            new PidMappingSerializer(),
+            new OaiOreSerializer(new ObjectMapper()),
+            new DataciteConverter(),
+            new PidMappingConverter(),
+            new OaiOreConverter(LanguageResolverFactory.getInstance(), CountryResolverFactory.getInstance()),
+            checksumVerificationPolicy,
+            new PayloadReader(),
+            0,
+            metadataExecutor
+        );
+    }
+
+    private RdaBagWriter createWriter(ChecksumVerificationPolicy checksumVerificationPolicy, PayloadReader payloadReader) throws Exception {
+        return new RdaBagWriter(
+            new DataciteSerializer(),
+            new PidMappingSerializer(),
+            new OaiOreSerializer(new ObjectMapper()),
+            new DataciteConverter(),
+            new PidMappingConverter(),
+            new OaiOreConverter(LanguageResolverFactory.getInstance(), CountryResolverFactory.getInstance()),
+            checksumVerificationPolicy,
+            payloadReader
+        );
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright (C) 2023 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.vaultingest.core.rdabag.output;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ChannelInputStreamTest {
+
+    final Path TEST_DIR = Path.of("target/test", getClass().getSimpleName());
+    final Path FILE = TEST_DIR.resolve("data.bin");
+
+    byte[] data;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        FileUtils.deleteQuietly(TEST_DIR.toFile());
+        Files.createDirectories(TEST_DIR);
+
+        data = new byte[10_000];
+        new Random(42).nextBytes(data);
+        Files.write(FILE, data);
+    }
+
+    @Test
+    void read_should_mix_single_bytes_small_and_large_reads() throws Exception {
+        try (var inputStream = new ChannelInputStream(FileChannel.open(FILE), 1000)) {
+            var first = inputStream.read();
+            var small = inputStream.readNBytes(99);
+            // larger than the buffer, so part of it comes from the buffer and the rest is read directly
+            var large = inputStream.readNBytes(5000);
+            var rest = inputStream.readAllBytes();
+
+            assertThat(first).isEqualTo(data[0] & 0xff);
+            assertThat(small).isEqualTo(Arrays.copyOfRange(data, 1, 100));
+            assertThat(large).isEqualTo(Arrays.copyOfRange(data, 100, 5100));
+            assertThat(rest).isEqualTo(Arrays.copyOfRange(data, 5100, data.length));
+            assertThat(inputStream.read()).isEqualTo(-1);
+        }
+    }
+
+    @Test
+    void skip_should_skip_buffered_and_unbuffered_data() throws Exception {
+        try (var inputStream = new ChannelInputStream(FileChannel.open(FILE), 1000)) {
+            inputStream.read();
+
+            assertThat(inputStream.skip(2999)).isEqualTo(2999);
+            assertThat(inputStream.read()).isEqualTo(data[3000] & 0xff);
+            assertThat(inputStream.skip(100_000)).isEqualTo(data.length - 3001);
+            assertThat(inputStream.read()).isEqualTo(-1);
+        }
+    }
+}
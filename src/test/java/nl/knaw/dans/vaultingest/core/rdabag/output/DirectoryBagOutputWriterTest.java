@@ -0,0 +1,125 @@
+/*
+ * Copyright (C) 2023 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.vaultingest.core.rdabag.output;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class DirectoryBagOutputWriterTest {
+
+    final Path TEST_DIR = Path.of("target/test", getClass().getSimpleName());
+    final Path OUTPUT = TEST_DIR.resolve("output");
+    final Path SOURCE = TEST_DIR.resolve("source.txt");
+
+    @BeforeEach
+    void setUp() throws IOException {
+        FileUtils.deleteQuietly(TEST_DIR.toFile());
+        Files.createDirectories(TEST_DIR);
+        Files.writeString(SOURCE, "payload");
+    }
+
+    @Test
+    void writeBagItem_should_write_files_to_directory() throws Exception {
+        try (var writer = new DirectoryBagOutputWriter(OUTPUT, false)) {
+            writer.writeBagItem(new ByteArrayInputStream("test".getBytes()), Path.of("test.txt"));
+            writer.writeBagItem(new ByteArrayInputStream("in a folder".getBytes()), Path.of("a/folder/test.txt"));
+            writer.writeBagItem(new ByteArrayInputStream("something else".getBytes()), Path.of("/no_extension"));
+            writer.writeBagItem(SOURCE, Path.of("data/copied.txt"));
+
+            assertThat(OUTPUT).doesNotExist();
+        }
+
+        assertThat(OUTPUT.resolve("test.txt")).hasContent("test");
+        assertThat(OUTPUT.resolve("a/folder/test.txt")).hasContent("in a folder");
+        assertThat(OUTPUT.resolve("no_extension")).hasContent("something else");
+        assertThat(OUTPUT.resolve("data/copied.txt")).hasContent("payload");
+        assertThat(Files.isSameFile(SOURCE, OUTPUT.resolve("data/copied.txt"))).isFalse();
+        assertThat(TEST_DIR.resolve("output.tmp")).doesNotExist();
+    }
+
+    @Test
+    void discard_should_delete_working_directory() throws Exception {
+        var writer = new DirectoryBagOutputWriter(OUTPUT, false);
+        writer.writeBagItem(new ByteArrayInputStream("test".getBytes()), Path.of("a/folder/test.txt"));
+        writer.discard();
+
+        assertThat(OUTPUT).doesNotExist();
+        assertThat(TEST_DIR.resolve("output.tmp")).doesNotExist();
+    }
+
+    @Test
+    void close_should_delete_working_directory_when_replacing_output_fails() throws Exception {
+        var writer = new DirectoryBagOutputWriter(OUTPUT, false) {
+            @Override
+            void removeDirectoryIfExists(Path path) throws IOException {
+                if (path.equals(OUTPUT)) {
+                    throw new IOException("disk error");
+                }
+
+                super.removeDirectoryIfExists(path);
+            }
+        };
+        writer.writeBagItem(new ByteArrayInputStream("test".getBytes()), Path.of("a/folder/test.txt"));
+
+        assertThatThrownBy(writer::close)
+            .isInstanceOf(IOException.class);
+
+        assertThat(OUTPUT).doesNotExist();
+        assertThat(TEST_DIR.resolve("output.tmp")).doesNotExist();
+    }
+
+    @Test
+    void writeBagItem_should_link_files_if_enabled() throws Exception {
+        try (var writer = new DirectoryBagOutputWriter(OUTPUT, true)) {
+            writer.writeBagItem(SOURCE, Path.of("data/linked.txt"));
+        }
+
+        assertThat(OUTPUT.resolve("data/linked.txt")).hasContent("payload");
+        assertThat(Files.isSameFile(SOURCE, OUTPUT.resolve("data/linked.txt"))).isTrue();
+    }
+
+    @Test
+    void writeBagItem_should_replace_existing_output() throws Exception {
+        Files.createDirectories(OUTPUT.resolve("data"));
+        Files.writeString(OUTPUT.resolve("data/old.txt"), "old");
+
+        try (var writer = new DirectoryBagOutputWriter(OUTPUT, false)) {
+            writer.writeBagItem(new ByteArrayInputStream("test".getBytes()), Path.of("test.txt"));
+        }
+
+        assertThat(OUTPUT.resolve("test.txt")).hasContent("test");
+        assertThat(OUTPUT.resolve("data/old.txt")).doesNotExist();
+    }
+
+    @Test
+    void writeBagItem_should_not_write_outside_of_bag() throws Exception {
+        try (var writer = new DirectoryBagOutputWriter(OUTPUT, false)) {
+            assertThatThrownBy(() -> writer.writeBagItem(new ByteArrayInputStream("test".getBytes()), Path.of("../escaped.txt")))
+                .isInstanceOf(IOException.class);
+        }
+
+        assertThat(TEST_DIR.resolve("escaped.txt")).doesNotExist();
+    }
+}
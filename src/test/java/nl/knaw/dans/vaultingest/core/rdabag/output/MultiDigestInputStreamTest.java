@@ -0,0 +1,83 @@
+/*
+ * Copyright (C) 2023 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.vaultingest.core.rdabag.output;
+
+import gov.loc.repository.bagit.hash.StandardSupportedAlgorithms;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.security.MessageDigest;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MultiDigestInputStreamTest {
+
+    @Test
+    void transferTo_should_calculate_all_checksums_in_one_pass() throws Exception {
+        // larger than the internal buffer and not a multiple of it
+        var data = new byte[MultiDigestInputStream.BUFFER_SIZE * 3 + 17];
+        new Random(42).nextBytes(data);
+
+        var output = new ByteArrayOutputStream();
+
+        try (var input = new MultiDigestInputStream(new ByteArrayInputStream(data),
+            List.of(StandardSupportedAlgorithms.MD5, StandardSupportedAlgorithms.SHA1, StandardSupportedAlgorithms.SHA256))) {
+            input.transferTo(output);
+
+            var checksums = input.getChecksums();
+
+            assertThat(output.toByteArray()).isEqualTo(data);
+            assertThat(checksums.get(StandardSupportedAlgorithms.MD5)).isEqualTo(expectedChecksum("MD5", data));
+            assertThat(checksums.get(StandardSupportedAlgorithms.SHA1)).isEqualTo(expectedChecksum("SHA-1", data));
+            assertThat(checksums.get(StandardSupportedAlgorithms.SHA256)).isEqualTo(expectedChecksum("SHA-256", data));
+        }
+    }
+
+    @Test
+    void read_should_digest_single_bytes() throws Exception {
+        var data = "single bytes".getBytes();
+
+        try (var input = new MultiDigestInputStream(new ByteArrayInputStream(data), List.of(StandardSupportedAlgorithms.SHA1))) {
+            while (input.read() != -1) {
+                // just read
+            }
+
+            assertThat(input.getChecksums().get(StandardSupportedAlgorithms.SHA1)).isEqualTo(expectedChecksum("SHA-1", data));
+        }
+    }
+
+    @Test
+    void getChecksums_should_return_empty_map_without_algorithms() throws Exception {
+        try (var input = new MultiDigestInputStream(new ByteArrayInputStream("test".getBytes()), List.of())) {
+            input.transferTo(new ByteArrayOutputStream());
+
+            assertThat(input.getChecksums()).isEmpty();
+        }
+    }
+
+    private String expectedChecksum(String algorithm, byte[] data) throws Exception {
+        var result = new StringBuilder();
+
+        for (var b : MessageDigest.getInstance(algorithm).digest(data)) {
+            result.append(String.format("%02x", b));
+        }
+
+        return result.toString();
+    }
+}
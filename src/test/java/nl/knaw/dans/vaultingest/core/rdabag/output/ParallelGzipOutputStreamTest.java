@@ -0,0 +1,89 @@
+/*
+ * Copyright (C) 2023 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.vaultingest.core.rdabag.output;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.Random;
+import java.util.concurrent.Executors;
+import java.util.zip.GZIPInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ParallelGzipOutputStreamTest {
+
+    @Test
+    void write_should_produce_valid_gzip() throws Exception {
+        var executor = Executors.newFixedThreadPool(4);
+        var blockSize = 64 * 1024;
+        var random = new Random(42);
+
+        // partly random, partly repeating data
+        var data = new byte[blockSize * 10 + 123];
+        random.nextBytes(data);
+        System.arraycopy(data, 0, data, blockSize * 5, blockSize * 5);
+
+        var output = new ByteArrayOutputStream();
+
+        try (var gzip = new ParallelGzipOutputStream(output, executor, 4, blockSize)) {
+            gzip.write(data, 0, 1000);
+            gzip.write(data[1000]);
+            gzip.write(data, 1001, data.length - 1001);
+        }
+        finally {
+            executor.shutdownNow();
+        }
+
+        try (var inputStream = new GZIPInputStream(new ByteArrayInputStream(output.toByteArray()))) {
+            assertThat(inputStream.readAllBytes()).isEqualTo(data);
+        }
+    }
+
+    @Test
+    void close_should_write_empty_gzip_without_data() throws Exception {
+        var output = new ByteArrayOutputStream();
+
+        new ParallelGzipOutputStream(output, Runnable::run, 1).close();
+
+        try (var inputStream = new GZIPInputStream(new ByteArrayInputStream(output.toByteArray()))) {
+            assertThat(inputStream.readAllBytes()).isEmpty();
+        }
+    }
+
+    @Test
+    void abort_should_not_write_pending_data() throws Exception {
+        var executor = Executors.newFixedThreadPool(4);
+        var blockSize = 64 * 1024;
+        var output = new ByteArrayOutputStream();
+
+        try {
+            var gzip = new ParallelGzipOutputStream(output, executor, 4, blockSize);
+            gzip.write(new byte[blockSize * 3 + 123]);
+            var headerAndWritten = output.size();
+
+            gzip.abort();
+            gzip.close();
+
+            // no further blocks and no trailer
+            assertThat(output.size()).isEqualTo(headerAndWritten);
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,275 @@
+/*
+ * Copyright (C) 2023 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.vaultingest.core.rdabag.output;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ParallelZipBagOutputWriterTest {
+
+    final Path OUTPUT = Path.of("target/test", getClass().getSimpleName(), "output.zip");
+    final int BLOCK_SIZE = 64 * 1024;
+
+    ExecutorService executor;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        FileUtils.deleteQuietly(OUTPUT.toFile());
+        Files.createDirectories(OUTPUT.getParent());
+        executor = Executors.newFixedThreadPool(4);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void writeBagItem_should_write_entries_in_order() throws Exception {
+        var entries = getTestEntries();
+
+        try (var writer = new ParallelZipBagOutputWriter(OUTPUT, executor, 4, ZipCompressionPolicy.DEFLATE_ALL, BLOCK_SIZE)) {
+            for (var entry : entries.entrySet()) {
+                writer.writeBagItem(new ByteArrayInputStream(entry.getValue()), Path.of(entry.getKey()));
+            }
+        }
+
+        var names = new ArrayList<String>();
+
+        try (var zip = new ZipFile(OUTPUT.toFile())) {
+            for (var entry : zip.stream().toArray(ZipEntry[]::new)) {
+                names.add(entry.getName());
+                assertThat(zip.getInputStream(entry).readAllBytes())
+                    .as("content of %s", entry.getName())
+                    .isEqualTo(entries.get(entry.getName()));
+            }
+        }
+
+        assertThat(names).containsExactlyElementsOf(entries.keySet());
+    }
+
+    @Test
+    void writeBagItem_should_write_content_written_to_stream() throws Exception {
+        var entries = getTestEntries();
+
+        try (var writer = new ParallelZipBagOutputWriter(OUTPUT, executor, 4, ZipCompressionPolicy.DEFLATE_ALL, BLOCK_SIZE)) {
+            for (var entry : entries.entrySet()) {
+                var data = entry.getValue();
+
+                // written in pieces that do not line up with the blocks
+                writer.writeBagItem(outputStream -> {
+                    for (var offset = 0; offset < data.length; offset += 1000) {
+                        outputStream.write(data, offset, Math.min(1000, data.length - offset));
+                    }
+                }, Path.of(entry.getKey()));
+            }
+        }
+
+        try (var zip = new ZipFile(OUTPUT.toFile())) {
+            assertThat(zip.size()).isEqualTo(entries.size());
+
+            for (var entry : entries.entrySet()) {
+                assertThat(zip.getInputStream(zip.getEntry(entry.getKey())).readAllBytes())
+                    .as("content of %s", entry.getKey())
+                    .isEqualTo(entry.getValue());
+            }
+        }
+    }
+
+    @Test
+    void writeBagItem_should_be_readable_as_stream() throws Exception {
+        var entries = getTestEntries();
+
+        try (var writer = new ParallelZipBagOutputWriter(OUTPUT, executor, 4, ZipCompressionPolicy.DEFLATE_ALL, BLOCK_SIZE)) {
+            for (var entry : entries.entrySet()) {
+                writer.writeBagItem(new ByteArrayInputStream(entry.getValue()), Path.of(entry.getKey()));
+            }
+        }
+
+        var result = new HashMap<String, byte[]>();
+
+        try (var zip = new ZipInputStream(new FileInputStream(OUTPUT.toFile()))) {
+            var entry = zip.getNextEntry();
+
+            while (entry != null) {
+                result.put(entry.getName(), zip.readAllBytes());
+                entry = zip.getNextEntry();
+            }
+        }
+
+        assertThat(result).containsOnlyKeys(entries.keySet());
+
+        for (var entry : entries.entrySet()) {
+            assertThat(result.get(entry.getKey())).as("content of %s", entry.getKey()).isEqualTo(entry.getValue());
+        }
+    }
+
+    @Test
+    void writeBagItem_should_store_incompressible_payload() throws Exception {
+        var entries = getTestEntries();
+        var policy = new ZipCompressionPolicy(List.of("bin"), 0.9);
+
+        try (var writer = new ParallelZipBagOutputWriter(OUTPUT, executor, 4, policy, BLOCK_SIZE)) {
+            for (var entry : entries.entrySet()) {
+                writer.writeBagItem(new ByteArrayInputStream(entry.getValue()), Path.of(entry.getKey()));
+            }
+        }
+
+        var methods = new HashMap<String, Integer>();
+
+        try (var zip = new ZipInputStream(new FileInputStream(OUTPUT.toFile()))) {
+            var entry = zip.getNextEntry();
+
+            while (entry != null) {
+                assertThat(zip.readAllBytes()).as("content of %s", entry.getName()).isEqualTo(entries.get(entry.getName()));
+                methods.put(entry.getName(), entry.getMethod());
+                entry = zip.getNextEntry();
+            }
+        }
+
+        assertThat(methods.get("bagit.txt")).isEqualTo(ZipEntry.DEFLATED);
+        assertThat(methods.get("data/compressible.txt")).isEqualTo(ZipEntry.DEFLATED);
+        assertThat(methods.get("data/random.bin")).isEqualTo(ZipEntry.STORED);
+        assertThat(methods.get("data/a/deeper/path/exact.bin")).isEqualTo(ZipEntry.STORED);
+        // not stored because of its extension, but because it does not compress
+        assertThat(methods.get("data/random.dat")).isEqualTo(ZipEntry.STORED);
+    }
+
+    @Test
+    void writeBagItem_should_put_sizes_in_local_headers() throws Exception {
+        var entries = getTestEntries();
+
+        try (var writer = new ParallelZipBagOutputWriter(OUTPUT, executor, 4, ZipCompressionPolicy.DEFLATE_ALL, BLOCK_SIZE)) {
+            var sizeKnown = false;
+
+            for (var entry : entries.entrySet()) {
+                // mix entries with and without a known size, the latter get a Zip64 extra field if they do not fit in one block
+                var size = sizeKnown ? entry.getValue().length : -1;
+                writer.writeBagItem(new ByteArrayInputStream(entry.getValue()), Path.of(entry.getKey()), size);
+                sizeKnown = !sizeKnown;
+            }
+        }
+
+        // walk from one local header to the next, which only works without data descriptors
+        var zip = ByteBuffer.wrap(Files.readAllBytes(OUTPUT)).order(ByteOrder.LITTLE_ENDIAN);
+        var names = new ArrayList<String>();
+        var namesWithZip64 = new ArrayList<String>();
+        var position = 0;
+
+        while (zip.getInt(position) == 0x04034b50) {
+            assertThat(zip.getShort(position + 6) & 0x0008).as("data descriptor flag").isZero();
+
+            var compressedSize = Integer.toUnsignedLong(zip.getInt(position + 18));
+            var size = Integer.toUnsignedLong(zip.getInt(position + 22));
+            var nameLength = zip.getShort(position + 26);
+            var extraLength = zip.getShort(position + 28);
+            var name = new String(zip.array(), position + 30, nameLength, StandardCharsets.UTF_8);
+
+            if (extraLength > 0) {
+                assertThat(size).as("size of %s in header", name).isEqualTo(0xFFFFFFFFL);
+                assertThat(compressedSize).as("compressed size of %s in header", name).isEqualTo(0xFFFFFFFFL);
+                size = zip.getLong(position + 30 + nameLength + 4);
+                compressedSize = zip.getLong(position + 30 + nameLength + 12);
+                namesWithZip64.add(name);
+            }
+
+            assertThat(size).as("size of %s", name).isEqualTo(entries.get(name).length);
+            names.add(name);
+            position += 30 + nameLength + extraLength + (int) compressedSize;
+        }
+
+        assertThat(names).containsExactlyElementsOf(entries.keySet());
+        assertThat(namesWithZip64).containsExactly("data/compressible.txt", "data/a/deeper/path/exact.bin");
+    }
+
+    @Test
+    void close_should_delete_working_file_when_an_entry_is_unfinished() throws Exception {
+        var writer = new ParallelZipBagOutputWriter(OUTPUT, executor, 4, ZipCompressionPolicy.DEFLATE_ALL, BLOCK_SIZE);
+        var data = new ByteArrayInputStream(new byte[BLOCK_SIZE * 2]);
+        // fails after the first block has been added to the entry
+        var failing = new InputStream() {
+
+            @Override
+            public int read() throws IOException {
+                if (data.available() <= BLOCK_SIZE) {
+                    throw new IOException("disk error");
+                }
+
+                return data.read();
+            }
+        };
+
+        assertThatThrownBy(() -> writer.writeBagItem(failing, Path.of("data/file.bin"), BLOCK_SIZE * 2))
+            .isInstanceOf(IOException.class);
+        assertThatThrownBy(writer::close)
+            .isInstanceOf(IllegalStateException.class);
+
+        assertThat(OUTPUT).doesNotExist();
+        assertThat(OUTPUT.resolveSibling(OUTPUT.getFileName() + ".tmp")).doesNotExist();
+    }
+
+    private LinkedHashMap<String, byte[]> getTestEntries() {
+        var random = new Random(42);
+
+        var compressible = new byte[BLOCK_SIZE * 10 + 123];
+        for (var i = 0; i < compressible.length; ++i) {
+            compressible[i] = (byte) ('a' + (i % 7) + (i / 4096 % 3));
+        }
+
+        var incompressible = new byte[BLOCK_SIZE * 3 + 1];
+        random.nextBytes(incompressible);
+
+        // exactly two blocks, so the last block is empty
+        var exactBlocks = new byte[BLOCK_SIZE * 2];
+        random.nextBytes(exactBlocks);
+
+        var entries = new LinkedHashMap<String, byte[]>();
+        entries.put("bagit.txt", "BagIt-Version: 1.0\n".getBytes());
+        entries.put("data/empty.txt", new byte[0]);
+        entries.put("data/compressible.txt", compressible);
+        entries.put("data/random.bin", incompressible);
+        entries.put("data/a/deeper/path/exact.bin", exactBlocks);
+        entries.put("data/random.dat", Arrays.copyOf(incompressible, BLOCK_SIZE / 2));
+        entries.put("metadata/dataset.xml", "<ddm/>".getBytes());
+        return entries;
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright (C) 2023 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.vaultingest.core.rdabag.output;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class PipelinedInputStreamTest {
+
+    ExecutorService executor;
+
+    @BeforeEach
+    void setUp() {
+        executor = Executors.newCachedThreadPool();
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void read_should_return_all_data_in_order() throws Exception {
+        var data = new byte[100_000];
+        new Random(42).nextBytes(data);
+
+        try (var inputStream = new PipelinedInputStream(new ByteArrayInputStream(data), executor, 3, 1000)) {
+            var first = inputStream.read();
+            var rest = inputStream.readAllBytes();
+
+            assertThat(first).isEqualTo(data[0] & 0xff);
+            assertThat(rest.length).isEqualTo(data.length - 1);
+            assertThat(rest[rest.length - 1]).isEqualTo(data[data.length - 1]);
+            assertThat(inputStream.read()).isEqualTo(-1);
+        }
+    }
+
+    @Test
+    void read_should_handle_empty_stream() throws Exception {
+        try (var inputStream = new PipelinedInputStream(new ByteArrayInputStream(new byte[0]), executor, 2, 1000)) {
+            assertThat(inputStream.readAllBytes()).isEmpty();
+        }
+    }
+
+    @Test
+    void read_should_rethrow_error_of_reader() throws Exception {
+        var failing = new InputStream() {
+
+            private int count = 0;
+
+            @Override
+            public int read() throws IOException {
+                if (count++ == 5000) {
+                    throw new IOException("disk on fire");
+                }
+
+                return 1;
+            }
+        };
+
+        try (var inputStream = new PipelinedInputStream(failing, executor, 2, 1000)) {
+            assertThatThrownBy(inputStream::readAllBytes)
+                .isInstanceOf(IOException.class)
+                .hasMessage("disk on fire");
+        }
+    }
+
+    @Test
+    void close_should_stop_reader_and_close_underlying_stream() throws Exception {
+        var closed = new AtomicBoolean(false);
+        var endless = new InputStream() {
+
+            @Override
+            public int read() {
+                return 1;
+            }
+
+            @Override
+            public void close() {
+                closed.set(true);
+            }
+        };
+
+        var inputStream = new PipelinedInputStream(endless, executor, 2, 1000);
+        inputStream.readNBytes(10_000);
+        inputStream.close();
+
+        assertThat(closed).isTrue();
+    }
+}
@@ -0,0 +1,217 @@
+/*
+ * Copyright (C) 2023 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.vaultingest.core.rdabag.output;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class TarBagOutputWriterTest {
+
+    final Path OUTPUT_DIR = Path.of("target/test", getClass().getSimpleName());
+
+    ExecutorService executor;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        FileUtils.deleteQuietly(OUTPUT_DIR.toFile());
+        Files.createDirectories(OUTPUT_DIR);
+        executor = Executors.newFixedThreadPool(4);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void writeBagItem_should_write_tar() throws Exception {
+        var output = OUTPUT_DIR.resolve("output.tar");
+        var entries = getTestEntries();
+        writeEntries(new TarBagOutputWriter(output, TarCompression.NONE, executor, 4), entries);
+
+        assertThat(Files.size(output) % (20 * 512)).isZero();
+
+        try (var inputStream = Files.newInputStream(output)) {
+            assertThat(readTar(inputStream)).containsExactlyEntriesOf(entries);
+        }
+    }
+
+    @Test
+    void writeBagItem_should_write_gzip_compressed_tar() throws Exception {
+        var output = OUTPUT_DIR.resolve("output.tar.gz");
+        var entries = getTestEntries();
+        writeEntries(new TarBagOutputWriter(output, TarCompression.GZIP, executor, 4), entries);
+
+        try (var inputStream = new GZIPInputStream(Files.newInputStream(output))) {
+            assertThat(readTar(inputStream)).containsExactlyEntriesOf(entries);
+        }
+    }
+
+    @Test
+    void writeBagItem_should_write_content_written_to_stream() throws Exception {
+        var output = OUTPUT_DIR.resolve("output.tar");
+        var entries = getTestEntries();
+
+        try (var writer = new TarBagOutputWriter(output, TarCompression.NONE, executor, 4)) {
+            for (var entry : entries.entrySet()) {
+                writer.writeBagItem(outputStream -> outputStream.write(entry.getValue()), Path.of(entry.getKey()));
+            }
+        }
+
+        try (var inputStream = Files.newInputStream(output)) {
+            assertThat(readTar(inputStream)).containsExactlyEntriesOf(entries);
+        }
+
+        // the temporary files with the content are removed
+        try (var files = Files.list(OUTPUT_DIR)) {
+            assertThat(files).containsExactly(output);
+        }
+    }
+
+    @Test
+    void writeBagItem_should_fail_if_size_is_wrong() throws Exception {
+        try (var writer = new TarBagOutputWriter(OUTPUT_DIR.resolve("output.tar"), TarCompression.NONE, executor, 4)) {
+            assertThatThrownBy(() -> writer.writeBagItem(new ByteArrayInputStream("test".getBytes()), Path.of("test.txt"), 5))
+                .isInstanceOf(IOException.class);
+            assertThatThrownBy(() -> writer.writeBagItem(new ByteArrayInputStream("test".getBytes()), Path.of("test.txt"), 3))
+                .isInstanceOf(IOException.class);
+        }
+    }
+
+    @Test
+    void close_should_delete_working_file_when_finishing_archive_fails() throws Exception {
+        var output = OUTPUT_DIR.resolve("output.tar.gz");
+        // the data fits in a single block, which is only deflated when the archive is finished
+        var writer = new TarBagOutputWriter(output, TarCompression.GZIP, r -> {
+            throw new RejectedExecutionException("executor is shut down");
+        }, 4);
+        writer.writeBagItem(new ByteArrayInputStream("test".getBytes()), Path.of("test.txt"), 4);
+
+        assertThatThrownBy(writer::close)
+            .isInstanceOf(RejectedExecutionException.class);
+
+        try (var files = Files.list(OUTPUT_DIR)) {
+            assertThat(files).isEmpty();
+        }
+    }
+
+    @Test
+    void discard_should_delete_working_file_without_compressing_remaining_data() throws Exception {
+        var output = OUTPUT_DIR.resolve("output.tar.gz");
+        var submitted = new AtomicInteger();
+        var writer = new TarBagOutputWriter(output, TarCompression.GZIP, r -> {
+            submitted.incrementAndGet();
+            executor.execute(r);
+        }, 4);
+        writer.writeBagItem(new ByteArrayInputStream("test".getBytes()), Path.of("test.txt"), 4);
+
+        writer.discard();
+
+        assertThat(submitted).hasValue(0);
+
+        try (var files = Files.list(OUTPUT_DIR)) {
+            assertThat(files).isEmpty();
+        }
+    }
+
+    @Test
+    void getPaxData_should_include_length_of_record() {
+        // "12 path=abc\n" is 12 bytes, "11 a=bcdef\n" is 11 bytes
+        var data = TarBagOutputWriter.getPaxData(Map.of("path", "abc"));
+        assertThat(new String(data, StandardCharsets.UTF_8)).isEqualTo("12 path=abc\n");
+
+        data = TarBagOutputWriter.getPaxData(Map.of("a", "bcdef"));
+        assertThat(new String(data, StandardCharsets.UTF_8)).isEqualTo("11 a=bcdef\n");
+    }
+
+    private void writeEntries(TarBagOutputWriter writer, Map<String, byte[]> entries) throws Exception {
+        try (writer) {
+            var sizeKnown = false;
+
+            for (var entry : entries.entrySet()) {
+                var size = sizeKnown ? entry.getValue().length : -1;
+                writer.writeBagItem(new ByteArrayInputStream(entry.getValue()), Path.of(entry.getKey()), size);
+                sizeKnown = !sizeKnown;
+            }
+        }
+    }
+
+    private Map<String, byte[]> readTar(InputStream inputStream) throws IOException {
+        var dataInputStream = new DataInputStream(inputStream);
+        var result = new LinkedHashMap<String, byte[]>();
+        String paxPath = null;
+
+        while (true) {
+            var header = new byte[512];
+            dataInputStream.readFully(header);
+
+            if (header[0] == 0) {
+                return result;
+            }
+
+            var name = new String(header, 0, 100, StandardCharsets.UTF_8).replaceAll("\0.*", "");
+            var size = Long.parseLong(new String(header, 124, 11, StandardCharsets.US_ASCII), 8);
+            var data = new byte[(int) size];
+            dataInputStream.readFully(data);
+            dataInputStream.readFully(new byte[(int) ((512 - size % 512) % 512)]);
+
+            if (header[156] == 'x') {
+                var record = new String(data, StandardCharsets.UTF_8);
+                paxPath = record.substring(record.indexOf("path=") + 5, record.length() - 1);
+            }
+            else {
+                result.put(paxPath != null ? paxPath : name, data);
+                paxPath = null;
+            }
+        }
+    }
+
+    private LinkedHashMap<String, byte[]> getTestEntries() {
+        var random = new Random(42);
+        var large = new byte[3 * 1024 * 1024 + 17];
+        random.nextBytes(large);
+
+        var entries = new LinkedHashMap<String, byte[]>();
+        entries.put("bagit.txt", "BagIt-Version: 1.0\n".getBytes());
+        entries.put("data/empty.txt", new byte[0]);
+        entries.put("data/block.bin", new byte[512]);
+        entries.put("data/" + "a-very-long-directory-name/".repeat(5) + "file.txt", "long name".getBytes());
+        entries.put("data/large.bin", large);
+        entries.put("metadata/dataset.xml", "<ddm/>".getBytes());
+        return entries;
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright (C) 2023 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.vaultingest.core.rdabag.output;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.ZipEntry;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ZipCompressionPolicyTest {
+
+    @Test
+    void getMethod_should_store_payload_with_known_extension() {
+        var policy = new ZipCompressionPolicy(List.of("JPG", "mp4"), 1.0);
+        var sample = new byte[100];
+
+        assertThat(policy.getMethod(Path.of("data/images/photo.jpg"), sample, sample.length)).isEqualTo(ZipEntry.STORED);
+        assertThat(policy.getMethod(Path.of("data/movie.MP4"), sample, sample.length)).isEqualTo(ZipEntry.STORED);
+        assertThat(policy.getMethod(Path.of("data/readme.txt"), sample, sample.length)).isEqualTo(ZipEntry.DEFLATED);
+        assertThat(policy.getMethod(Path.of("data/no_extension"), sample, sample.length)).isEqualTo(ZipEntry.DEFLATED);
+    }
+
+    @Test
+    void getMethod_should_always_deflate_tag_files() {
+        var policy = new ZipCompressionPolicy(List.of("xml", "txt"), 0.0);
+        var sample = new byte[100];
+
+        assertThat(policy.getMethod(Path.of("metadata/dataset.xml"), sample, sample.length)).isEqualTo(ZipEntry.DEFLATED);
+        assertThat(policy.getMethod(Path.of("manifest-sha1.txt"), sample, sample.length)).isEqualTo(ZipEntry.DEFLATED);
+    }
+
+    @Test
+    void getMethod_should_store_payload_that_does_not_compress() {
+        var policy = new ZipCompressionPolicy(List.of(), 0.9);
+        var random = new byte[ZipCompressionPolicy.SAMPLE_SIZE];
+        new Random(42).nextBytes(random);
+        var text = "The quick brown fox jumps over the lazy dog. ".repeat(2000).getBytes();
+
+        assertThat(policy.getMethod(Path.of("data/image.tiff"), random, random.length)).isEqualTo(ZipEntry.STORED);
+        assertThat(policy.getMethod(Path.of("data/image.tiff"), text, text.length)).isEqualTo(ZipEntry.DEFLATED);
+    }
+
+    @Test
+    void isDeflateAll_should_be_true_for_default_policy() {
+        assertThat(ZipCompressionPolicy.DEFLATE_ALL.isDeflateAll()).isTrue();
+        assertThat(new ZipCompressionPolicy(List.of("jpg"), 1.0).isDeflateAll()).isFalse();
+        assertThat(new ZipCompressionPolicy(List.of(), 0.9).isDeflateAll()).isFalse();
+    }
+}
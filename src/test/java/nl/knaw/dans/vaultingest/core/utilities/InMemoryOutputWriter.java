@@ -27,7 +27,9 @@ import java.util.Map;
 public class InMemoryOutputWriter implements BagOutputWriter {
 
     private final Map<Path, String> data = new HashMap<>();
+    private final Map<Path, byte[]> bytes = new HashMap<>();
     private boolean closed = false;
+    private boolean discarded = false;
 
     @Override
     public void writeBagItem(InputStream inputStream, Path path) {
@@ -36,6 +38,7 @@ public class InMemoryOutputWriter implements BagOutputWriter {
         try {
             inputStream.transferTo(output);
             data.put(path, output.toString());
+            bytes.put(path, output.toByteArray());
         }
         catch (IOException e) {
             throw new RuntimeException(e);
@@ -48,11 +51,24 @@ public class InMemoryOutputWriter implements BagOutputWriter {
         // noop
     }
 
+    @Override
+    public void discard() {
+        this.discarded = true;
+    }
+
     public Map<Path, String> getData() {
         return data;
     }
 
+    public Map<Path, byte[]> getBytes() {
+        return bytes;
+    }
+
     public boolean isClosed() {
         return closed;
     }
+
+    public boolean isDiscarded() {
+        return discarded;
+    }
 }
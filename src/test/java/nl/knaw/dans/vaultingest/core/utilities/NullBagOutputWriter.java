@@ -40,4 +40,9 @@ public class NullBagOutputWriter implements BagOutputWriter {
     public void close() {
         // noop
     }
+
+    @Override
+    public void discard() {
+        // noop
+    }
 }
@@ -0,0 +1,83 @@
+/*
+ * Copyright (C) 2023 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.vaultingest.core.xml;
+
+import org.junit.jupiter.api.Test;
+import org.w3c.dom.Node;
+
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class DdmIndexTest {
+
+    private static final String DDM = "<ddm:DDM xmlns:ddm=\"http://schemas.dans.knaw.nl/dataset/ddm-v2/\" xmlns:dc=\"http://purl.org/dc/elements/1.1/\""
+        + " xmlns:dcterms=\"http://purl.org/dc/terms/\" xml:lang=\"en\">"
+        + "<ddm:profile><dc:title>Title</dc:title><dc:description xml:lang=\"nl\">First</dc:description><dcterms:description>Second</dcterms:description></ddm:profile>"
+        + "<ddm:dcmiMetadata><dcterms:title>Alt 1</dcterms:title><dcterms:alternative>Alt 2</dcterms:alternative><dc:title xml:lang=\"en\">Alt 3</dc:title>"
+        + "<ddm:description><dc:title>Nested</dc:title></ddm:description></ddm:dcmiMetadata>"
+        + "</ddm:DDM>";
+
+    @Test
+    void profile_should_return_elements_by_name() throws Exception {
+        var index = DdmIndex.of(new XmlReader().readXmlString(DDM));
+
+        assertThat(index.profile("dc:title").map(Node::getTextContent))
+            .containsExactly("Title");
+        assertThat(index.profile("dc:creator"))
+            .isEmpty();
+    }
+
+    @Test
+    void dcmiMetadata_should_return_elements_with_any_of_the_names_in_document_order() throws Exception {
+        var document = new XmlReader().readXmlString(DDM);
+        var expected = XPathEvaluator.strings(document,
+                "/ddm:DDM/ddm:dcmiMetadata/dc:title",
+                "/ddm:DDM/ddm:dcmiMetadata/dcterms:alternative",
+                "/ddm:DDM/ddm:dcmiMetadata/dcterms:title")
+            .collect(Collectors.toList());
+
+        assertThat(DdmIndex.of(document).dcmiMetadata("dc:title", "dcterms:alternative", "dcterms:title").map(Node::getTextContent))
+            .containsExactlyElementsOf(expected)
+            .containsExactly("Alt 1", "Alt 2", "Alt 3");
+    }
+
+    @Test
+    void xmlLangs_should_return_distinct_languages_of_whole_document() throws Exception {
+        var index = DdmIndex.of(new XmlReader().readXmlString(DDM));
+
+        assertThat(index.xmlLangs()).containsExactly("en", "nl");
+    }
+
+    @Test
+    void of_should_build_index_once_per_document() throws Exception {
+        var document = new XmlReader().readXmlString(DDM);
+        var index = DdmIndex.of(document);
+
+        assertThat(DdmIndex.of(document)).isSameAs(index);
+        assertThat(DdmIndex.of(document.getDocumentElement().getFirstChild())).isSameAs(index);
+        assertThat(DdmIndex.of(new XmlReader().readXmlString(DDM))).isNotSameAs(index);
+    }
+
+    @Test
+    void profile_should_reject_unknown_prefix() throws Exception {
+        var index = DdmIndex.of(new XmlReader().readXmlString(DDM));
+
+        assertThatThrownBy(() -> index.profile("foo:title"))
+            .isInstanceOf(IllegalArgumentException.class);
+    }
+}
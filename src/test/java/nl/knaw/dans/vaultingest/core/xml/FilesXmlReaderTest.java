@@ -0,0 +1,102 @@
+/*
+ * Copyright (C) 2023 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.vaultingest.core.xml;
+
+import org.junit.jupiter.api.Test;
+
+import javax.xml.stream.XMLStreamException;
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class FilesXmlReaderTest {
+
+    private static final String FILES_XML = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>"
+        + "<files xmlns=\"http://easy.dans.knaw.nl/schemas/bag/metadata/files/\" xmlns:dcterms=\"http://purl.org/dc/terms/\">"
+        + "  <file filepath=\"data/a &amp; b.txt\">"
+        + "    <dcterms:format>text/plain</dcterms:format>"
+        + "    <dcterms:description>First <![CDATA[<description>]]></dcterms:description>"
+        + "    <dcterms:description>Second description</dcterms:description>"
+        + "    <accessibleToRights>KNOWN</accessibleToRights>"
+        + "    <visibleToRights>ANONYMOUS</visibleToRights>"
+        + "  </file>"
+        + "  <file filepath=\"data/b.txt\">"
+        + "    <accessibleToRights>KNOWN</accessibleToRights>"
+        + "  </file>"
+        + "  <file filepath=\"data/c.txt\"/>"
+        + "</files>";
+
+    @Test
+    void readFiles_should_return_files_in_document_order() throws Exception {
+        var files = readFiles(FILES_XML);
+
+        assertThat(files)
+            .extracting(FilesXmlFile::getFilepath)
+            .containsExactly("data/a & b.txt", "data/b.txt", "data/c.txt");
+    }
+
+    @Test
+    void readFiles_should_use_first_description_and_accessibleToRights() throws Exception {
+        var files = readFiles(FILES_XML);
+
+        assertThat(files.get(0).getDescription()).isEqualTo("First <description>");
+        assertThat(files.get(0).getAccessibleToRights()).isEqualTo("KNOWN");
+        assertThat(files.get(2).getDescription()).isNull();
+        assertThat(files.get(2).getAccessibleToRights()).isNull();
+    }
+
+    @Test
+    void readFiles_should_share_accessibleToRights_values() throws Exception {
+        var files = readFiles(FILES_XML);
+
+        assertThat(files.get(1).getAccessibleToRights()).isSameAs(files.get(0).getAccessibleToRights());
+    }
+
+    @Test
+    void readFiles_should_ignore_other_root_element() throws Exception {
+        var files = readFiles("<other><file filepath=\"data/a.txt\"/></other>");
+
+        assertThat(files).isEmpty();
+    }
+
+    @Test
+    void readFiles_should_fail_on_file_without_filepath() {
+        var xml = "<files xmlns=\"http://easy.dans.knaw.nl/schemas/bag/metadata/files/\"><file/></files>";
+
+        assertThatThrownBy(() -> readFiles(xml))
+            .isInstanceOf(XMLStreamException.class)
+            .hasMessageContaining("filepath");
+    }
+
+    @Test
+    void readFiles_should_not_accept_doctype() {
+        var xml = "<!DOCTYPE files [<!ENTITY x SYSTEM \"file:///etc/passwd\">]>"
+            + "<files xmlns=\"http://easy.dans.knaw.nl/schemas/bag/metadata/files/\"><file filepath=\"&x;\"/></files>";
+
+        assertThatThrownBy(() -> readFiles(xml))
+            .isInstanceOf(XMLStreamException.class);
+    }
+
+    private List<FilesXmlFile> readFiles(String xml) throws Exception {
+        var result = new ArrayList<FilesXmlFile>();
+        new FilesXmlReader().readFiles(new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)), result::add);
+        return result;
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright (C) 2023 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.vaultingest.core.xml;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class XPathEvaluatorTest {
+
+    private static final String DDM = "<ddm:DDM xmlns:ddm=\"http://schemas.dans.knaw.nl/dataset/ddm-v2/\" xmlns:dc=\"http://purl.org/dc/elements/1.1/\">"
+        + "<ddm:profile><dc:title>Title</dc:title><dc:description>First</dc:description><dc:description>Second</dc:description></ddm:profile>"
+        + "</ddm:DDM>";
+
+    @Test
+    void strings_should_evaluate_same_expression_repeatedly() throws Exception {
+        var document = new XmlReader().readXmlString(DDM);
+
+        for (var i = 0; i < 3; ++i) {
+            assertThat(XPathEvaluator.strings(document, "/ddm:DDM/ddm:profile/dc:description"))
+                .containsExactly("First", "Second");
+        }
+
+        assertThat(XPathEvaluator.strings(document, "/ddm:DDM/ddm:profile/dc:title", "/ddm:DDM/ddm:profile/dc:description"))
+            .containsExactly("Title", "First", "Second");
+    }
+
+    @Test
+    void strings_should_give_same_results_on_concurrent_threads() throws Exception {
+        var executor = Executors.newFixedThreadPool(8);
+
+        try {
+            var tasks = new ArrayList<Callable<List<String>>>();
+
+            for (var i = 0; i < 32; ++i) {
+                tasks.add(() -> {
+                    // like deposits, every thread has its own document
+                    var document = new XmlReader().readXmlString(DDM);
+                    var result = new ArrayList<String>();
+
+                    for (var j = 0; j < 100; ++j) {
+                        result = XPathEvaluator.strings(document, "/ddm:DDM/ddm:profile/dc:title", "/ddm:DDM/ddm:profile/dc:description")
+                            .collect(Collectors.toCollection(ArrayList::new));
+                    }
+
+                    return result;
+                });
+            }
+
+            for (var future : executor.invokeAll(tasks)) {
+                assertThat(future.get()).containsExactly("Title", "First", "Second");
+            }
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+}
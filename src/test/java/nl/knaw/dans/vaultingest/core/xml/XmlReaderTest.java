@@ -0,0 +1,66 @@
+/*
+ * Copyright (C) 2023 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.vaultingest.core.xml;
+
+import org.junit.jupiter.api.Test;
+import org.xml.sax.SAXParseException;
+
+import java.util.ArrayList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class XmlReaderTest {
+
+    @Test
+    void readXmlString_should_still_reject_doctype_when_builder_is_reused() throws Exception {
+        var reader = new XmlReader();
+        reader.readXmlString("<a/>");
+
+        assertThatThrownBy(() -> reader.readXmlString("<!DOCTYPE a [<!ENTITY e SYSTEM \"file:///etc/passwd\">]><a>&e;</a>"))
+            .isInstanceOf(SAXParseException.class);
+
+        // the failed parse does not affect the next one
+        assertThat(reader.readXmlString("<a xmlns=\"urn:test\"/>").getDocumentElement().getNamespaceURI())
+            .isEqualTo("urn:test");
+    }
+
+    @Test
+    void readXmlString_should_parse_documents_on_several_threads() throws Exception {
+        var reader = new XmlReader();
+        var executor = Executors.newFixedThreadPool(4);
+
+        try {
+            var tasks = new ArrayList<Callable<String>>();
+
+            for (var i = 0; i < 100; ++i) {
+                var value = "value " + i;
+                tasks.add(() -> reader.readXmlString("<a><b>" + value + "</b></a>").getDocumentElement().getTextContent());
+            }
+
+            var results = executor.invokeAll(tasks);
+
+            for (var i = 0; i < results.size(); ++i) {
+                assertThat(results.get(i).get()).isEqualTo("value " + i);
+            }
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+}